@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.bench;
+
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.Session;
+import org.sireum.hamr.inspector.services.memory.InMemoryEncodedMsgService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Range;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end latency of a live tail: the time from appending a msg to the backend until a subscriber on another
+ * thread has received it. Sampled, so the JSON results include the p50, p99 and p999 latencies.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LiveTailLatencyBenchmark {
+
+    @Param({"10000"})
+    public int msgsPerSecond;
+
+    @Param({"16"})
+    public int ports;
+
+    @Param({"64", "1024"})
+    public int payloadBytes;
+
+    private final Session session = new Session("1");
+
+    private SyntheticTraffic traffic;
+
+    private InMemoryEncodedMsgService backend;
+
+    private Scheduler scheduler;
+
+    private Disposable subscription;
+
+    private long next;
+
+    // the sequence number of the last msg the subscriber received
+    private volatile long received;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        traffic = new SyntheticTraffic(msgsPerSecond, ports, payloadBytes);
+        backend = new InMemoryEncodedMsgService(traffic);
+        scheduler = Schedulers.newSingle("live-tail");
+        next = 0L;
+        received = -1L;
+        subscription = backend.live(session, Range.unbounded())
+                .publishOn(scheduler)
+                .subscribe(msg -> received = msg.sequence());
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        subscription.dispose();
+        scheduler.dispose();
+    }
+
+    @Benchmark
+    public long appendToDelivery() {
+        final Msg msg = traffic.msg(next++);
+        backend.append(session, msg);
+        while (received != msg.sequence()) {
+            Thread.onSpinWait();
+        }
+        return received;
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.bench;
+
+import org.sireum.hamr.inspector.services.MsgFilter;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.Session;
+import org.sireum.hamr.inspector.services.memory.InMemoryEncodedMsgService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.domain.Range;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replay, reverse replay, header-only replay of views and count of a completed {@link Session} of {@value #MSGS} msgs.
+ *
+ * Replay throughput is reported in msgs per second; count is sampled so its latency percentiles are reported.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MsgServiceBenchmark {
+
+    static final int MSGS = 100_000;
+
+    @Param({"10000"})
+    public int msgsPerSecond;
+
+    @Param({"16"})
+    public int ports;
+
+    @Param({"64", "1024"})
+    public int payloadBytes;
+
+    private final Session session = new Session("1");
+
+    private InMemoryEncodedMsgService backend;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        backend = new SyntheticTraffic(msgsPerSecond, ports, payloadBytes).completedBackend(session, MSGS);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(MSGS)
+    public void replay(Blackhole blackhole) {
+        backend.replay(session, Range.unbounded()).doOnNext(blackhole::consume).blockLast();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(MSGS)
+    public void replayReverse(Blackhole blackhole) {
+        backend.replayReverse(session, Range.<RecordId>unbounded()).doOnNext(blackhole::consume).blockLast();
+    }
+
+    /**
+     * Replays lazily decoded views and reads only their headers, as a timeline does. Compare its allocation rate
+     * with {@link #replay} under {@code -prof gc}.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(MSGS)
+    public void replayViewHeaders(Blackhole blackhole) {
+        backend.replayViews(session, Range.unbounded(), MsgFilter.all())
+                .doOnNext(view -> {
+                    blackhole.consume(view.timestamp());
+                    blackhole.consume(view.srcPortId());
+                })
+                .blockLast();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Long count() {
+        return backend.count(session).block();
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.bench;
+
+import org.sireum.hamr.inspector.services.RecordId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RecordId} comparison, hashing and use as a hash key, over {@value #IDS} ids of which many share a
+ * timestamp (as ids of msgs sent within the same millisecond do). Reported per id.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RecordIdBenchmark {
+
+    static final int IDS = 4096;
+
+    private RecordId[] ids;
+
+    private RecordId[] copies;
+
+    private Map<RecordId, Integer> map;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Random random = new Random(42L);
+        ids = new RecordId[IDS];
+        copies = new RecordId[IDS];
+        map = new HashMap<>();
+        for (int i = 0; i < IDS; i++) {
+            final long timestamp = 1_577_836_800_000L + random.nextInt(IDS / 4);
+            final long sequence = random.nextInt(8);
+            ids[i] = RecordId.of(timestamp, sequence);
+            copies[i] = RecordId.of(timestamp, sequence);
+            map.put(ids[i], i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IDS)
+    public void compareTo(Blackhole blackhole) {
+        for (int i = 0; i < IDS; i++) {
+            blackhole.consume(ids[i].compareTo(ids[(i + 1) & (IDS - 1)]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IDS)
+    public void hash(Blackhole blackhole) {
+        for (int i = 0; i < IDS; i++) {
+            blackhole.consume(ids[i].hashCode());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IDS)
+    public void mapLookup(Blackhole blackhole) {
+        for (int i = 0; i < IDS; i++) {
+            blackhole.consume(map.get(copies[i]));
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.bench;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.MsgCodec;
+import org.sireum.hamr.inspector.services.Session;
+import org.sireum.hamr.inspector.services.memory.InMemoryEncodedMsgService;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Generates deterministic, art-like traffic for benchmarks and acts as its {@link MsgCodec}.
+ *
+ * Ports come in pairs of connected (source, destination) ports, four ports to a component, and each msg travels
+ * along one connection chosen by a hash of its position. Timestamps advance at the configured rate (so a rate of
+ * 10000 msgs/s puts 10 msgs in each millisecond) and every encoded msg is padded to the configured payload size.
+ * Because ports and timestamps are pure functions of a msg's position, the same traffic can be regenerated and
+ * decoded msgs need carry nothing but their id.
+ */
+final class SyntheticTraffic implements MsgCodec {
+
+    private static final int HEADER_BYTES = 2 * Long.BYTES;
+
+    private static final long START_MILLIS = 1_577_836_800_000L;
+
+    private final int msgsPerSecond;
+
+    private final int connections;
+
+    private final int payloadBytes;
+
+    /**
+     * @param msgsPerSecond the simulated send rate, which determines how msgs are spread across timestamps.
+     * @param ports the number of ports in the simulated system. Must be even and at least 2.
+     * @param payloadBytes the encoded size of every msg. Must be at least 16.
+     */
+    SyntheticTraffic(int msgsPerSecond, int ports, int payloadBytes) {
+        if (msgsPerSecond <= 0) {
+            throw new IllegalArgumentException("msgsPerSecond must be positive but was " + msgsPerSecond);
+        }
+        if (ports < 2 || ports % 2 != 0) {
+            throw new IllegalArgumentException("ports must be even and at least 2 but was " + ports);
+        }
+        if (payloadBytes < HEADER_BYTES) {
+            throw new IllegalArgumentException("payloadBytes must be at least " + HEADER_BYTES + " but was "
+                    + payloadBytes);
+        }
+        this.msgsPerSecond = msgsPerSecond;
+        this.connections = ports / 2;
+        this.payloadBytes = payloadBytes;
+    }
+
+    /**
+     * @return the msg at (zero-based) position index of the traffic.
+     */
+    @NotNull
+    Msg msg(long index) {
+        return new Msg(null, null, null, START_MILLIS + index * 1000L / msgsPerSecond, index);
+    }
+
+    /**
+     * Appends msgs [from, from + count) of the traffic to session of backend.
+     */
+    void fill(@NotNull InMemoryEncodedMsgService backend, @NotNull Session session, long from, long count) {
+        for (long i = from; i < from + count; i++) {
+            backend.append(session, msg(i));
+        }
+    }
+
+    /**
+     * @return a new backend holding a single completed {@link Session} of count msgs.
+     */
+    @NotNull
+    InMemoryEncodedMsgService completedBackend(@NotNull Session session, long count) {
+        final InMemoryEncodedMsgService backend = new InMemoryEncodedMsgService(this);
+        fill(backend, session, 0L, count);
+        backend.complete(session);
+        return backend;
+    }
+
+    @Override
+    public int srcPortId(@NotNull Msg msg) {
+        return 2 * connectionOf(msg.sequence());
+    }
+
+    @Override
+    public int dstPortId(@NotNull Msg msg) {
+        return 2 * connectionOf(msg.sequence()) + 1;
+    }
+
+    @Override
+    public int componentIdOf(int portId) {
+        return portId / 4;
+    }
+
+    @NotNull
+    @Override
+    public byte[] encode(@NotNull Msg msg) {
+        final byte[] bytes = new byte[payloadBytes];
+        ByteBuffer.wrap(bytes).putLong(msg.timestamp()).putLong(msg.sequence());
+        return bytes;
+    }
+
+    @NotNull
+    @Override
+    public Msg decode(@NotNull ByteBuffer buffer) {
+        return new Msg(null, null, null, buffer.getLong(buffer.position()),
+                buffer.getLong(buffer.position() + Long.BYTES));
+    }
+
+    @Override
+    public int encodedSize(@NotNull Msg msg) {
+        return payloadBytes;
+    }
+
+    private int connectionOf(long index) {
+        // a cheap mix so that consecutive msgs use unrelated connections
+        long h = index * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int) Math.floorMod(h, (long) connections);
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.common.Msg;
+import org.springframework.data.domain.Range;
+import reactor.core.publisher.Flux;
+
+/**
+ * A {@link MsgService} which can evaluate a {@link MsgFilter} (and, optionally, drop payloads) on the server side.
+ *
+ * Each overload behaves exactly like its unfiltered counterpart in {@link MsgService} restricted to the msgs that
+ * match the filter. The {@code *Headers} variants return the payload-free {@link MsgHeader} projection instead of
+ * whole {@link Msg}s, and the {@code *Views} variants return {@link MsgView}s which decode their payload only when
+ * asked to.
+ *
+ * The default implementations push the filter's time window down into the {@link Range} and test every other
+ * constraint on decoded msgs (and build views from decoded msgs). Backends which store header fields apart from
+ * payloads should override them to test the filter before decoding, so that non-matching payloads are never read,
+ * and to build views over their stored bytes.
+ */
+public interface FilteredMsgService extends MsgService {
+
+    /**
+     * @return the codec describing this service's msgs, used to evaluate port and component constraints.
+     */
+    @NotNull
+    MsgCodec codec();
+
+    /**
+     * Like {@link #live(Session, Range)}, keeping only msgs which match filter. If filter has a time window the
+     * stream completes once the end of the window has passed.
+     */
+    @NotNull
+    default Flux<Msg> live(@NotNull Session session, @NotNull Range<RecordId> range, @NotNull MsgFilter filter) {
+        return filtered(live(session, filter.narrow(range)), filter);
+    }
+
+    /**
+     * Like {@link #replay(Session, Range)}, keeping only msgs which match filter.
+     */
+    @NotNull
+    default Flux<Msg> replay(@NotNull Session session, @NotNull Range<RecordId> range, @NotNull MsgFilter filter) {
+        return filtered(replay(session, filter.narrow(range)), filter);
+    }
+
+    /**
+     * Like {@link #replayReverse(Session, Range)}, keeping only msgs which match filter.
+     */
+    @NotNull
+    default Flux<Msg> replayReverse(@NotNull Session session, @NotNull Range<RecordId> range,
+                                    @NotNull MsgFilter filter) {
+        return filtered(replayReverse(session, filter.narrow(range)), filter);
+    }
+
+    /**
+     * Like {@link #live(Session, Range, MsgFilter)}, projected to {@link MsgHeader}s.
+     */
+    @NotNull
+    default Flux<MsgHeader> liveHeaders(@NotNull Session session, @NotNull Range<RecordId> range,
+                                        @NotNull MsgFilter filter) {
+        final MsgCodec codec = codec();
+        return live(session, range, filter).map(msg -> MsgHeader.of(msg, codec));
+    }
+
+    /**
+     * Like {@link #replay(Session, Range, MsgFilter)}, projected to {@link MsgHeader}s.
+     */
+    @NotNull
+    default Flux<MsgHeader> replayHeaders(@NotNull Session session, @NotNull Range<RecordId> range,
+                                          @NotNull MsgFilter filter) {
+        final MsgCodec codec = codec();
+        return replay(session, range, filter).map(msg -> MsgHeader.of(msg, codec));
+    }
+
+    /**
+     * Like {@link #replayReverse(Session, Range, MsgFilter)}, projected to {@link MsgHeader}s.
+     */
+    @NotNull
+    default Flux<MsgHeader> replayReverseHeaders(@NotNull Session session, @NotNull Range<RecordId> range,
+                                                 @NotNull MsgFilter filter) {
+        final MsgCodec codec = codec();
+        return replayReverse(session, range, filter).map(msg -> MsgHeader.of(msg, codec));
+    }
+
+    /**
+     * Like {@link #live(Session, Range, MsgFilter)}, as lazily decoded {@link MsgView}s.
+     */
+    @NotNull
+    default Flux<MsgView> liveViews(@NotNull Session session, @NotNull Range<RecordId> range,
+                                    @NotNull MsgFilter filter) {
+        final MsgCodec codec = codec();
+        return live(session, range, filter).map(msg -> MsgView.of(msg, codec));
+    }
+
+    /**
+     * Like {@link #replay(Session, Range, MsgFilter)}, as lazily decoded {@link MsgView}s.
+     */
+    @NotNull
+    default Flux<MsgView> replayViews(@NotNull Session session, @NotNull Range<RecordId> range,
+                                      @NotNull MsgFilter filter) {
+        final MsgCodec codec = codec();
+        return replay(session, range, filter).map(msg -> MsgView.of(msg, codec));
+    }
+
+    /**
+     * Like {@link #replayReverse(Session, Range, MsgFilter)}, as lazily decoded {@link MsgView}s.
+     */
+    @NotNull
+    default Flux<MsgView> replayReverseViews(@NotNull Session session, @NotNull Range<RecordId> range,
+                                             @NotNull MsgFilter filter) {
+        final MsgCodec codec = codec();
+        return replayReverse(session, range, filter).map(msg -> MsgView.of(msg, codec));
+    }
+
+    @NotNull
+    private Flux<Msg> filtered(@NotNull Flux<Msg> msgs, @NotNull MsgFilter filter) {
+        if (!filter.hasPortConstraints()) {
+            return msgs;
+        }
+        final MsgCodec codec = codec();
+        return msgs.filter(msg -> filter.test(msg, codec));
+    }
+
+}
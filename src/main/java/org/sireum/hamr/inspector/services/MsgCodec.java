@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.common.Msg;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Describes how a backend lays out {@link Msg}s so that services layered on top of a {@link MsgService} can
+ * inspect, size and store them without knowing the backend's wire format.
+ *
+ * Port ids must be small, non-negative and stable for the lifetime of a {@link Session} (such as the port ids
+ * assigned by art) because they are used to index primitive arrays.
+ */
+public interface MsgCodec {
+
+    /**
+     * @return the id of the port msg was sent from.
+     */
+    int srcPortId(@NotNull Msg msg);
+
+    /**
+     * @return the id of the port msg was sent to.
+     */
+    int dstPortId(@NotNull Msg msg);
+
+    /**
+     * @return the id of the component (bridge) which owns the port with id portId. Like port ids, component ids must
+     *  be small, non-negative and stable for the lifetime of a {@link Session}.
+     */
+    int componentIdOf(int portId);
+
+    /**
+     * Encodes the entire msg (header and payload) into a form which can be read back by {@link #decode(ByteBuffer)}.
+     */
+    @NotNull
+    byte[] encode(@NotNull Msg msg);
+
+    /**
+     * Decodes a msg encoded by {@link #encode(Msg)} from the remaining bytes of buffer.
+     */
+    @NotNull
+    Msg decode(@NotNull ByteBuffer buffer);
+
+    /**
+     * Returns the number of bytes {@link #encode(Msg)} would produce for msg. Implementations which can compute the
+     * size without encoding should override this.
+     */
+    default int encodedSize(@NotNull Msg msg) {
+        return encode(msg).length;
+    }
+
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.common.Msg;
+import org.springframework.data.domain.Range;
+
+import java.util.Arrays;
+
+/**
+ * An immutable description of which {@link Msg}s a {@link FilteredMsgService} should return, expressed purely in
+ * terms of header fields so that backends can evaluate it before (or instead of) decoding payloads.
+ *
+ * A filter is the conjunction of its constraints: a msg matches if its source port, destination port, source
+ * component and destination component are each in the corresponding set, and its timestamp lies within the time
+ * window. An empty set places no constraint on its field. Filters are built from {@link #all()} with the
+ * {@code with*} methods, each of which returns a new filter.
+ */
+public final class MsgFilter {
+
+    private static final int[] ANY = new int[0];
+
+    private static final MsgFilter ALL = new MsgFilter(ANY, ANY, ANY, ANY, Long.MIN_VALUE, Long.MAX_VALUE);
+
+    // sorted and free of duplicates so membership is a binary search
+    @NotNull
+    private final int[] srcPorts;
+
+    @NotNull
+    private final int[] dstPorts;
+
+    @NotNull
+    private final int[] srcComponents;
+
+    @NotNull
+    private final int[] dstComponents;
+
+    private final long fromMillis;
+
+    private final long toMillis;
+
+    private MsgFilter(@NotNull int[] srcPorts, @NotNull int[] dstPorts, @NotNull int[] srcComponents,
+                      @NotNull int[] dstComponents, long fromMillis, long toMillis) {
+        this.srcPorts = srcPorts;
+        this.dstPorts = dstPorts;
+        this.srcComponents = srcComponents;
+        this.dstComponents = dstComponents;
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+    }
+
+    /**
+     * @return the filter which matches every msg.
+     */
+    @NotNull
+    public static MsgFilter all() {
+        return ALL;
+    }
+
+    /**
+     * @param portIds the {@link MsgCodec#srcPortId(Msg)}s to keep, or none to keep every source port.
+     * @return a copy of this filter which only matches msgs sent from one of portIds.
+     */
+    @NotNull
+    public MsgFilter withSrcPorts(@NotNull int... portIds) {
+        return new MsgFilter(normalize(portIds), dstPorts, srcComponents, dstComponents, fromMillis, toMillis);
+    }
+
+    /**
+     * @param portIds the {@link MsgCodec#dstPortId(Msg)}s to keep, or none to keep every destination port.
+     * @return a copy of this filter which only matches msgs sent to one of portIds.
+     */
+    @NotNull
+    public MsgFilter withDstPorts(@NotNull int... portIds) {
+        return new MsgFilter(srcPorts, normalize(portIds), srcComponents, dstComponents, fromMillis, toMillis);
+    }
+
+    /**
+     * @param componentIds the {@link MsgCodec#componentIdOf(int)}s to keep, or none to keep every source component.
+     * @return a copy of this filter which only matches msgs sent from a port of one of componentIds.
+     */
+    @NotNull
+    public MsgFilter withSrcComponents(@NotNull int... componentIds) {
+        return new MsgFilter(srcPorts, dstPorts, normalize(componentIds), dstComponents, fromMillis, toMillis);
+    }
+
+    /**
+     * @param componentIds the {@link MsgCodec#componentIdOf(int)}s to keep, or none to keep every destination
+     *                     component.
+     * @return a copy of this filter which only matches msgs sent to a port of one of componentIds.
+     */
+    @NotNull
+    public MsgFilter withDstComponents(@NotNull int... componentIds) {
+        return new MsgFilter(srcPorts, dstPorts, srcComponents, normalize(componentIds), fromMillis, toMillis);
+    }
+
+    /**
+     * @param fromMillis the earliest timestamp to keep (inclusive).
+     * @param toMillis the timestamp from which msgs are no longer kept (exclusive).
+     * @return a copy of this filter which only matches msgs whose timestamp is in [fromMillis, toMillis).
+     * @throws IllegalArgumentException if toMillis is less than fromMillis.
+     */
+    @NotNull
+    public MsgFilter withTimeWindow(long fromMillis, long toMillis) {
+        if (toMillis < fromMillis) {
+            throw new IllegalArgumentException("time window [" + fromMillis + ", " + toMillis + ") is inverted");
+        }
+        return new MsgFilter(srcPorts, dstPorts, srcComponents, dstComponents, fromMillis, toMillis);
+    }
+
+    /**
+     * @return true if this filter matches every msg.
+     */
+    public boolean isAll() {
+        return srcPorts.length == 0 && dstPorts.length == 0 && srcComponents.length == 0 && dstComponents.length == 0
+                && fromMillis == Long.MIN_VALUE && toMillis == Long.MAX_VALUE;
+    }
+
+    /**
+     * @return true if this filter constrains ports or components, meaning {@link #test(long, int, int, MsgCodec)}
+     *  can reject msgs that {@link #narrow(Range)} does not.
+     */
+    public boolean hasPortConstraints() {
+        return srcPorts.length != 0 || dstPorts.length != 0 || srcComponents.length != 0 || dstComponents.length != 0;
+    }
+
+    /**
+     * Tests a msg by its header fields alone.
+     *
+     * @param timestamp the msg's timestamp.
+     * @param srcPortId the msg's {@link MsgCodec#srcPortId(Msg)}.
+     * @param dstPortId the msg's {@link MsgCodec#dstPortId(Msg)}.
+     * @param codec used to map ports to components, only if a component constraint is present.
+     * @return true if a msg with these header fields matches this filter.
+     */
+    public boolean test(long timestamp, int srcPortId, int dstPortId, @NotNull MsgCodec codec) {
+        return timestamp >= fromMillis && timestamp < toMillis
+                && contains(srcPorts, srcPortId)
+                && contains(dstPorts, dstPortId)
+                && (srcComponents.length == 0 || contains(srcComponents, codec.componentIdOf(srcPortId)))
+                && (dstComponents.length == 0 || contains(dstComponents, codec.componentIdOf(dstPortId)));
+    }
+
+    /**
+     * Tests a decoded msg. Prefer {@link #test(long, int, int, MsgCodec)} when header fields are available without
+     * decoding.
+     *
+     * @return true if msg matches this filter.
+     */
+    public boolean test(@NotNull Msg msg, @NotNull MsgCodec codec) {
+        return test(msg.timestamp(), codec.srcPortId(msg), codec.dstPortId(msg), codec);
+    }
+
+    /**
+     * Narrows range to this filter's time window, so that backends can skip msgs outside of it by seeking rather
+     * than by testing each one.
+     *
+     * @param range a range of {@link RecordId}s.
+     * @return the part of range that lies within this filter's time window.
+     */
+    @NotNull
+    public Range<RecordId> narrow(@NotNull Range<RecordId> range) {
+        if (fromMillis == Long.MIN_VALUE && toMillis == Long.MAX_VALUE) {
+            return range;
+        }
+        final Range.Bound<RecordId> lower = fromMillis == Long.MIN_VALUE
+                ? Range.Bound.unbounded()
+                : Range.Bound.inclusive(RecordId.of(fromMillis, Long.MIN_VALUE));
+        final Range.Bound<RecordId> upper = toMillis == Long.MAX_VALUE
+                ? Range.Bound.unbounded()
+                : Range.Bound.exclusive(RecordId.of(toMillis, Long.MIN_VALUE));
+        return RecordRanges.intersect(range, Range.of(lower, upper));
+    }
+
+    private static boolean contains(@NotNull int[] set, int value) {
+        return set.length == 0 || Arrays.binarySearch(set, value) >= 0;
+    }
+
+    @NotNull
+    private static int[] normalize(@NotNull int[] ids) {
+        return ids.length == 0 ? ANY : Arrays.stream(ids).sorted().distinct().toArray();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final MsgFilter that = (MsgFilter) o;
+        return fromMillis == that.fromMillis && toMillis == that.toMillis
+                && Arrays.equals(srcPorts, that.srcPorts) && Arrays.equals(dstPorts, that.dstPorts)
+                && Arrays.equals(srcComponents, that.srcComponents) && Arrays.equals(dstComponents, that.dstComponents);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Arrays.hashCode(srcPorts);
+        result = 31 * result + Arrays.hashCode(dstPorts);
+        result = 31 * result + Arrays.hashCode(srcComponents);
+        result = 31 * result + Arrays.hashCode(dstComponents);
+        result = 31 * result + Long.hashCode(fromMillis);
+        result = 31 * result + Long.hashCode(toMillis);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "MsgFilter{" +
+                "srcPorts=" + Arrays.toString(srcPorts) +
+                ", dstPorts=" + Arrays.toString(dstPorts) +
+                ", srcComponents=" + Arrays.toString(srcComponents) +
+                ", dstComponents=" + Arrays.toString(dstComponents) +
+                ", fromMillis=" + fromMillis +
+                ", toMillis=" + toMillis +
+                '}';
+    }
+}
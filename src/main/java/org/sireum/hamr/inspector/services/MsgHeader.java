@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.common.Msg;
+
+/**
+ * The payload-free projection of a {@link Msg}: its {@link RecordId} and the ids of the ports it travelled between.
+ * Backends which store headers apart from payloads can produce headers without decoding anything.
+ */
+public final class MsgHeader {
+
+    private final long timestamp;
+
+    private final long sequence;
+
+    private final int srcPortId;
+
+    private final int dstPortId;
+
+    public MsgHeader(long timestamp, long sequence, int srcPortId, int dstPortId) {
+        this.timestamp = timestamp;
+        this.sequence = sequence;
+        this.srcPortId = srcPortId;
+        this.dstPortId = dstPortId;
+    }
+
+    /**
+     * @return the header of a decoded msg.
+     */
+    @NotNull
+    public static MsgHeader of(@NotNull Msg msg, @NotNull MsgCodec codec) {
+        return new MsgHeader(msg.timestamp(), msg.sequence(), codec.srcPortId(msg), codec.dstPortId(msg));
+    }
+
+    public long timestamp() {
+        return timestamp;
+    }
+
+    public long sequence() {
+        return sequence;
+    }
+
+    @NotNull
+    public RecordId recordId() {
+        return RecordId.of(timestamp, sequence);
+    }
+
+    public int srcPortId() {
+        return srcPortId;
+    }
+
+    public int dstPortId() {
+        return dstPortId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final MsgHeader that = (MsgHeader) o;
+        return timestamp == that.timestamp && sequence == that.sequence
+                && srcPortId == that.srcPortId && dstPortId == that.dstPortId;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Long.hashCode(timestamp);
+        result = 31 * result + Long.hashCode(sequence);
+        result = 31 * result + srcPortId;
+        result = 31 * result + dstPortId;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "MsgHeader{" +
+                "id=" + timestamp + "-" + sequence +
+                ", srcPortId=" + srcPortId +
+                ", dstPortId=" + dstPortId +
+                '}';
+    }
+}
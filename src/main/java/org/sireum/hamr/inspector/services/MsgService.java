@@ -31,6 +31,8 @@ import org.springframework.data.domain.Range;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 public interface MsgService {
 
     /**
@@ -80,6 +82,77 @@ public interface MsgService {
     @NotNull
     Flux<Msg> replay(@NotNull Session session, @NotNull Range<RecordId> range);
 
+    /**
+     * Returns a {@link Flux} of {@link Msg} chunks representing the communication occurring in the given
+     * {@link Session}. Flattening the chunks yields exactly the {@link Msg}s of {@link #replay(Session, Range)}
+     * called with the same arguments, in the same order, with no {@link RecordId} dropped or duplicated across
+     * chunk boundaries.
+     *
+     * The {@link Range} follows the same rules as {@link #replay(Session, Range)}.
+     *
+     * The default implementation buffers {@link #replay(Session, Range)}. Implementations backed by a store which
+     * supports bounded range queries should override this method so that each chunk is fetched as a single page
+     * (see {@link org.sireum.hamr.inspector.services.replay.PagedReplay}).
+     *
+     * Downstream errors are not handled so users may implement their own strategy as desired.
+     *
+     * @param session the {@link Session} whose {@link Msg}s will be passed by the {@link Flux}
+     * @param range the range of {@link RecordId}s to replay.
+     * @param chunkSize the maximum number of {@link Msg}s in each emitted chunk. Must be positive.
+     * @param prefetch the maximum number of chunks fetched ahead of downstream demand. Must be positive.
+     * @return a {@link Flux} of non-empty, ordered chunks of {@link Msg}s.
+     */
+    @NotNull
+    default Flux<List<Msg>> replayBatched(@NotNull Session session, @NotNull Range<RecordId> range,
+                                          int chunkSize, int prefetch) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive but was " + chunkSize);
+        }
+        if (prefetch <= 0) {
+            throw new IllegalArgumentException("prefetch must be positive but was " + prefetch);
+        }
+        return replay(session, range).buffer(chunkSize).limitRate(prefetch);
+    }
+
+    /**
+     * Returns a {@link Mono} of the {@link RecordId} of the first {@link Msg} in the given {@link Session} whose
+     * timestamp is at or after millis. If no such {@link Msg} exists (yet) the {@link Mono} completes empty.
+     *
+     * The returned id is a valid left-bound for {@link #replay(Session, Range)}, {@link #replayReverse(Session, Range)}
+     * and {@link #live(Session, Range)}. The default implementation replays from the smallest id at millis and takes
+     * the first {@link Msg}; implementations without efficient id-range queries should override it.
+     *
+     * @param session the {@link Session} to seek in.
+     * @param millis the wall-clock time (in millis) to seek to.
+     * @return a {@link Mono} of the nearest {@link RecordId} at or after millis.
+     */
+    @NotNull
+    default Mono<RecordId> seekTime(@NotNull Session session, long millis) {
+        final Range<RecordId> range = Range.of(Range.Bound.inclusive(RecordId.of(millis, Long.MIN_VALUE)),
+                Range.Bound.unbounded());
+        return replay(session, range).next().map(RecordRanges::idOf);
+    }
+
+    /**
+     * Returns a {@link Mono} of the {@link RecordId} of the {@link Msg} with the given (zero-based) ordinal in the
+     * given {@link Session}. If the {@link Session} has not (yet) had that many {@link Msg}s the {@link Mono}
+     * completes empty.
+     *
+     * The default implementation replays the {@link Session} from its first {@link Msg}, so it runs in time linear
+     * in ordinal. Implementations should override it when an index is available.
+     *
+     * @param session the {@link Session} to seek in.
+     * @param ordinal the zero-based position of the {@link Msg} within the {@link Session}. Must not be negative.
+     * @return a {@link Mono} of the {@link RecordId} at ordinal.
+     */
+    @NotNull
+    default Mono<RecordId> seekOrdinal(@NotNull Session session, long ordinal) {
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("ordinal must not be negative but was " + ordinal);
+        }
+        return replay(session, Range.unbounded()).skip(ordinal).next().map(RecordRanges::idOf);
+    }
+
     /**
      * Returns a {@link Flux} of {@link Msg}s representing the communication occurring in the given {@link Session}
      * in reverse order. Note that the range should not be logically reversed, but oriented normally.
@@ -92,6 +165,9 @@ public interface MsgService {
      * unspecified via {@link Range#rightUnbounded(Range.Bound)}, {@link Range#unbounded()} in which case it will
      * be the lastest value at the time of the call.
      *
+     * Implementations backed by a store which is only efficient at forward reads can delegate to
+     * {@link org.sireum.hamr.inspector.services.replay.ReversePagedReplay}.
+     *
      * Downstream errors are not handled so users may implement their own strategy as desired.
      *
      * @param session the {@link Session} whose {@link Msg}s will be passed by the {@link Flux}
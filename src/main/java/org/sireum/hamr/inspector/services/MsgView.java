@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.common.Msg;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A lazily decoded {@link Msg}: its header fields, and its encoded bytes as a region of a buffer shared with the
+ * backend (such as a memory-mapped archive segment). Creating a view neither copies nor decodes the payload; the
+ * full {@link Msg} is decoded with the backend's {@link MsgCodec} on the first call to {@link #msg()} and cached.
+ * Likewise, a view of an already decoded {@link Msg} only encodes it on the first call to {@link #payload()} or
+ * {@link #payloadSize()}.
+ *
+ * Consumers which only need headers (timelines, counts, port filters) should stick to the header accessors, and
+ * should not retain views longer than the backend keeps the shared buffer valid.
+ */
+public final class MsgView {
+
+    private final long timestamp;
+
+    private final long sequence;
+
+    private final int srcPortId;
+
+    private final int dstPortId;
+
+    // null until a view of an already decoded msg is first encoded
+    @Nullable
+    private volatile ByteBuffer buffer;
+
+    private final int offset;
+
+    // written before buffer, so that it is visible to every thread which has read a non-null buffer
+    private int length;
+
+    @NotNull
+    private final MsgCodec codec;
+
+    // decoding (and encoding) is idempotent, so racing threads may at worst decode the same msg twice
+    @Nullable
+    private volatile Msg msg;
+
+    /**
+     * @param buffer the shared buffer holding the encoded msg. Neither its position nor its limit are used.
+     * @param offset the index in buffer of the first byte of the encoded msg.
+     * @param length the number of bytes of the encoded msg.
+     * @param codec decodes the bytes into the full msg.
+     */
+    public MsgView(long timestamp, long sequence, int srcPortId, int dstPortId, @NotNull ByteBuffer buffer,
+                   int offset, int length, @NotNull MsgCodec codec) {
+        this.timestamp = timestamp;
+        this.sequence = sequence;
+        this.srcPortId = srcPortId;
+        this.dstPortId = dstPortId;
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.codec = codec;
+        this.msg = null;
+    }
+
+    private MsgView(@NotNull Msg msg, @NotNull MsgCodec codec) {
+        this.timestamp = msg.timestamp();
+        this.sequence = msg.sequence();
+        this.srcPortId = codec.srcPortId(msg);
+        this.dstPortId = codec.dstPortId(msg);
+        this.buffer = null;
+        this.offset = 0;
+        this.length = 0;
+        this.codec = codec;
+        this.msg = msg;
+    }
+
+    /**
+     * @return a view of an already decoded msg, for backends which cannot hand out their encoded bytes. The msg is
+     *  encoded only if {@link #payload()} or {@link #payloadSize()} is called.
+     */
+    @NotNull
+    public static MsgView of(@NotNull Msg msg, @NotNull MsgCodec codec) {
+        return new MsgView(msg, codec);
+    }
+
+    public long timestamp() {
+        return timestamp;
+    }
+
+    public long sequence() {
+        return sequence;
+    }
+
+    @NotNull
+    public RecordId recordId() {
+        return RecordId.of(timestamp, sequence);
+    }
+
+    public int srcPortId() {
+        return srcPortId;
+    }
+
+    public int dstPortId() {
+        return dstPortId;
+    }
+
+    @NotNull
+    public MsgHeader header() {
+        return new MsgHeader(timestamp, sequence, srcPortId, dstPortId);
+    }
+
+    /**
+     * @return the number of bytes of the encoded msg.
+     */
+    public int payloadSize() {
+        encoded();
+        return length;
+    }
+
+    /**
+     * @return a read-only buffer holding exactly the encoded msg. No bytes are copied.
+     */
+    @NotNull
+    public ByteBuffer payload() {
+        final ByteBuffer encoded = encoded();
+        return encoded.asReadOnlyBuffer().clear().position(offset).limit(offset + length).slice();
+    }
+
+    /**
+     * @return whether {@link #msg()} has already been decoded.
+     */
+    public boolean isDecoded() {
+        return msg != null;
+    }
+
+    /**
+     * @return the full msg, decoded on first access.
+     */
+    @NotNull
+    public Msg msg() {
+        Msg decoded = msg;
+        if (decoded == null) {
+            decoded = codec.decode(payload());
+            msg = decoded;
+        }
+        return decoded;
+    }
+
+    /**
+     * @return the buffer holding the encoded msg, encoding the decoded msg on first access.
+     */
+    @NotNull
+    private ByteBuffer encoded() {
+        ByteBuffer encoded = buffer;
+        if (encoded == null) {
+            encoded = ByteBuffer.wrap(codec.encode(msg));
+            length = encoded.capacity();
+            buffer = encoded;
+        }
+        return encoded;
+    }
+
+    @Override
+    public String toString() {
+        return "MsgView{" +
+                "id=" + timestamp + "-" + sequence +
+                ", srcPortId=" + srcPortId +
+                ", dstPortId=" + dstPortId +
+                ", payloadSize=" + (buffer != null ? String.valueOf(length) : "?") +
+                ", decoded=" + isDecoded() +
+                '}';
+    }
+
+}
@@ -27,7 +27,22 @@ package org.sireum.hamr.inspector.services;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.nio.ByteBuffer;
+
+/**
+ * Identifies a {@link org.sireum.hamr.inspector.common.Msg} within a {@link Session} by its millisecond timestamp
+ * and a sequence number which disambiguates msgs sharing a timestamp.
+ *
+ * RecordIds are value-based: two ids with the same timestamp and sequence are equal and share a hashcode regardless
+ * of how they were created, so they are safe to use as map keys.
+ */
 public abstract class RecordId implements Comparable<RecordId> {
+
+    /**
+     * The number of bytes used by the packed encoding of {@link #writeTo(ByteBuffer)} and {@link #toBytes()}.
+     */
+    public static final int BYTES = 2 * Long.BYTES;
+
     RecordId() { }
 
     @NotNull
@@ -41,23 +56,120 @@ public abstract class RecordId implements Comparable<RecordId> {
 //        return new ReferenceRecordId(msg);
 //    }
 
+    /**
+     * Parses a redis-stream-style id of the form "millis-seq" (as produced by {@link #toString()}).
+     * A bare "millis" is also accepted and given the sequence number 0.
+     *
+     * @param text the id to parse.
+     * @return the parsed {@link RecordId}.
+     * @throws IllegalArgumentException if text is not a valid id.
+     */
+    @NotNull
+    public static RecordId parse(@NotNull String text) {
+        final int dash = text.indexOf('-', 1);
+        try {
+            if (dash < 0) {
+                return of(Long.parseLong(text), 0L);
+            } else {
+                return of(Long.parseLong(text, 0, dash, 10), Long.parseLong(text, dash + 1, text.length(), 10));
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid record id: " + text, e);
+        }
+    }
+
+    /**
+     * Reads a {@link RecordId} packed by {@link #toBytes()}.
+     *
+     * @param bytes an array of exactly {@link #BYTES} bytes.
+     * @return the decoded {@link RecordId}.
+     * @throws IllegalArgumentException if bytes has the wrong length.
+     */
+    @NotNull
+    public static RecordId fromBytes(@NotNull byte[] bytes) {
+        if (bytes.length != BYTES) {
+            throw new IllegalArgumentException("expected " + BYTES + " bytes but got " + bytes.length);
+        }
+        return readFrom(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Reads a {@link RecordId} packed by {@link #writeTo(ByteBuffer)} at the buffer's current position, advancing the
+     * position by {@link #BYTES}. The buffer's byte order is ignored.
+     *
+     * @param buffer the buffer to read from.
+     * @return the decoded {@link RecordId}.
+     */
+    @NotNull
+    public static RecordId readFrom(@NotNull ByteBuffer buffer) {
+        final long timestamp = decodeLong(buffer);
+        final long sequence = decodeLong(buffer);
+        return of(timestamp, sequence);
+    }
+
     public abstract long timestamp();
 
     public abstract long sequence();
 
+    /**
+     * Packs this id into {@link #BYTES} big-endian bytes (timestamp, then sequence). The sign bit of each long is
+     * flipped so that comparing two encodings as unsigned bytes, lexicographically, agrees with
+     * {@link #compareTo(RecordId)}. This makes the encoding usable directly as a sort key by byte-ordered stores.
+     *
+     * @return a new array of {@link #BYTES} bytes.
+     */
+    @NotNull
+    public final byte[] toBytes() {
+        final byte[] bytes = new byte[BYTES];
+        writeTo(ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+
+    /**
+     * Writes the encoding of {@link #toBytes()} at the buffer's current position, advancing the position by
+     * {@link #BYTES}. The buffer's byte order is ignored.
+     *
+     * @param buffer the buffer to write to.
+     */
+    public final void writeTo(@NotNull ByteBuffer buffer) {
+        encodeLong(buffer, timestamp());
+        encodeLong(buffer, sequence());
+    }
+
+    private static void encodeLong(@NotNull ByteBuffer buffer, long value) {
+        final long flipped = value ^ Long.MIN_VALUE;
+        for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+            buffer.put((byte) (flipped >>> shift));
+        }
+    }
+
+    private static long decodeLong(@NotNull ByteBuffer buffer) {
+        long flipped = 0L;
+        for (int i = 0; i < Long.BYTES; i++) {
+            flipped = (flipped << Byte.SIZE) | (buffer.get() & 0xFFL);
+        }
+        return flipped ^ Long.MIN_VALUE;
+    }
+
     @Override
     public final int hashCode() {
-        return super.hashCode();
+        return 31 * Long.hashCode(timestamp()) + Long.hashCode(sequence());
     }
 
     @Override
     public final boolean equals(Object obj) {
-        return super.equals(obj);
+        if (this == obj) return true;
+        if (!(obj instanceof RecordId)) return false;
+        final RecordId other = (RecordId) obj;
+        return timestamp() == other.timestamp() && sequence() == other.sequence();
     }
 
+    /**
+     * @return the redis-stream-style form "millis-seq" which can be read back by {@link #parse(String)}.
+     */
     @Override
     public final String toString() {
-        return super.toString();
+        return timestamp() + "-" + sequence();
     }
 
     @Override
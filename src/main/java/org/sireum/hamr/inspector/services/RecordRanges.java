@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.common.Msg;
+import org.springframework.data.domain.Range;
+
+/**
+ * Static helpers for working with {@link Range}s of {@link RecordId}s as they are used by {@link MsgService}.
+ */
+public final class RecordRanges {
+
+    private RecordRanges() { }
+
+    /**
+     * Returns the {@link RecordId} of a {@link Msg}.
+     *
+     * @param msg the {@link Msg} whose id will be returned.
+     * @return a {@link RecordId} built from the msg's timestamp and sequence number.
+     */
+    @NotNull
+    public static RecordId idOf(@NotNull Msg msg) {
+        return RecordId.of(msg.timestamp(), msg.sequence());
+    }
+
+    /**
+     * Returns a copy of range whose left-bound excludes everything up to and including last.
+     * The right-bound is left untouched.
+     *
+     * @param range the original range.
+     * @param last the last {@link RecordId} that has already been seen.
+     * @return a range which begins directly after last.
+     */
+    @NotNull
+    public static Range<RecordId> after(@NotNull Range<RecordId> range, @NotNull RecordId last) {
+        return Range.of(Range.Bound.exclusive(last), range.getUpperBound());
+    }
+
+    /**
+     * Returns the range of ids contained in both a and b. If they do not overlap the result is empty, that is, no id
+     * lies within both of its bounds.
+     *
+     * @param a the first range.
+     * @param b the second range.
+     * @return the intersection of a and b.
+     */
+    @NotNull
+    public static Range<RecordId> intersect(@NotNull Range<RecordId> a, @NotNull Range<RecordId> b) {
+        return Range.of(tighter(a.getLowerBound(), b.getLowerBound(), 1),
+                tighter(a.getUpperBound(), b.getUpperBound(), -1));
+    }
+
+    /**
+     * @return whichever of a and b admits fewer ids, where direction is 1 for left-bounds and -1 for right-bounds.
+     */
+    @NotNull
+    private static Range.Bound<RecordId> tighter(@NotNull Range.Bound<RecordId> a, @NotNull Range.Bound<RecordId> b,
+                                                 int direction) {
+        if (!a.isBounded()) {
+            return b;
+        }
+        if (!b.isBounded()) {
+            return a;
+        }
+        final int compare = a.getValue().orElseThrow().compareTo(b.getValue().orElseThrow()) * direction;
+        if (compare != 0) {
+            return compare > 0 ? a : b;
+        }
+        return a.isInclusive() ? b : a;
+    }
+
+    /**
+     * @return true if id is not excluded by the left-bound of range.
+     */
+    public static boolean isAboveLowerBound(@NotNull Range<RecordId> range, @NotNull RecordId id) {
+        final Range.Bound<RecordId> lower = range.getLowerBound();
+        if (!lower.isBounded()) {
+            return true;
+        }
+        final int compare = id.compareTo(lower.getValue().orElseThrow());
+        return lower.isInclusive() ? compare >= 0 : compare > 0;
+    }
+
+    /**
+     * @return true if id is not excluded by the right-bound of range.
+     */
+    public static boolean isBelowUpperBound(@NotNull Range<RecordId> range, @NotNull RecordId id) {
+        final Range.Bound<RecordId> upper = range.getUpperBound();
+        if (!upper.isBounded()) {
+            return true;
+        }
+        final int compare = id.compareTo(upper.getValue().orElseThrow());
+        return upper.isInclusive() ? compare <= 0 : compare < 0;
+    }
+
+    /**
+     * @return true if id lies within both bounds of range.
+     */
+    public static boolean contains(@NotNull Range<RecordId> range, @NotNull RecordId id) {
+        return isAboveLowerBound(range, id) && isBelowUpperBound(range, id);
+    }
+
+}
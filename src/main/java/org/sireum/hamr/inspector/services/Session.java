@@ -28,7 +28,6 @@ package org.sireum.hamr.inspector.services;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Objects;
-import java.util.Optional;
 
 /**
  * THIS VALUE MUST BE IMMUTABLE (because it's used as a key in maps).
@@ -41,8 +40,14 @@ public final class Session implements Comparable<Session> {
     @NotNull
     private final String name;
 
+    // sort key computed once, since sessions are compared far more often than they are created
+    private final boolean isNumeric;
+    private final long key;
+
     public Session(@NotNull String name) {
         this.name = name;
+        this.isNumeric = isLong(name);
+        this.key = isNumeric ? Long.parseLong(name) : 0L;
     }
 
     @NotNull
@@ -50,28 +55,53 @@ public final class Session implements Comparable<Session> {
         return name;
     }
 
+    /**
+     * Sessions with numeric names (such as the start time of the run) sort numerically before all others, which
+     * sort by name.
+     */
     @Override
     public int compareTo(@NotNull Session o) {
-        final var self = parse(this);
-        final var other = parse(o);
-
-        if (self.isPresent() && other.isPresent()) {
-            return self.get().compareTo(other.get());
-        } else if (self.isPresent()) {
+        if (isNumeric && o.isNumeric) {
+            return Long.compare(key, o.key);
+        } else if (isNumeric) {
             return -1;
-        } else if (other.isPresent()) {
+        } else if (o.isNumeric) {
             return 1;
         } else {
             return name.compareTo(o.name);
         }
     }
 
-    private static Optional<Long> parse(Session session) {
-        try {
-            return Optional.of(Long.parseLong(session.name));
-        } catch (NumberFormatException unused) {
-            return Optional.empty();
+    /**
+     * @return true if {@link Long#parseLong(String)} would accept text. Checked up front so that non-numeric names
+     *  never cost an exception.
+     */
+    private static boolean isLong(@NotNull String text) {
+        final int length = text.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            i = 1;
+        }
+        if (i == length) {
+            return false;
+        }
+        // accumulate negatively like Long.parseLong so that Long.MIN_VALUE does not overflow
+        final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long result = 0L;
+        for (; i < length; i++) {
+            final int digit = Character.digit(text.charAt(i), 10);
+            if (digit < 0 || result < limit / 10) {
+                return false;
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return false;
+            }
+            result -= digit;
         }
+        return true;
     }
 
     @Override
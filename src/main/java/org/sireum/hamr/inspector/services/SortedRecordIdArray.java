@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.data.domain.Range;
+
+import java.util.Arrays;
+
+/**
+ * A sorted set of {@link RecordId}s stored as interleaved primitive (timestamp, sequence) pairs in a single long[].
+ *
+ * Intended for cursors, caches and indexes that hold many ids: no {@link RecordId} object exists per element, and
+ * ids appended in ascending order (the common case for msg streams) are added in amortized constant time.
+ *
+ * This class is not thread-safe.
+ */
+public final class SortedRecordIdArray {
+
+    private static final long[] EMPTY = new long[0];
+
+    private long[] pairs;
+    private int size = 0;
+
+    public SortedRecordIdArray() {
+        this.pairs = EMPTY;
+    }
+
+    public SortedRecordIdArray(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity must not be negative but was " + initialCapacity);
+        }
+        this.pairs = initialCapacity == 0 ? EMPTY : new long[2 * initialCapacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long timestampAt(int index) {
+        checkIndex(index);
+        return pairs[2 * index];
+    }
+
+    public long sequenceAt(int index) {
+        checkIndex(index);
+        return pairs[2 * index + 1];
+    }
+
+    /**
+     * Allocates a {@link RecordId} for the element at index. Prefer {@link #timestampAt(int)} and
+     * {@link #sequenceAt(int)} on hot paths.
+     */
+    @NotNull
+    public RecordId get(int index) {
+        checkIndex(index);
+        return RecordId.of(pairs[2 * index], pairs[2 * index + 1]);
+    }
+
+    public boolean add(@NotNull RecordId id) {
+        return add(id.timestamp(), id.sequence());
+    }
+
+    /**
+     * Adds the id (timestamp, sequence) if it is not already present.
+     *
+     * @return true if the id was added, false if it was already present.
+     */
+    public boolean add(long timestamp, long sequence) {
+        final int index;
+        if (size == 0 || compare(size - 1, timestamp, sequence) < 0) {
+            index = size;
+        } else {
+            final int search = indexOf(timestamp, sequence);
+            if (search >= 0) {
+                return false;
+            }
+            index = -(search + 1);
+        }
+
+        if (2 * size == pairs.length) {
+            pairs = Arrays.copyOf(pairs, Math.max(16, 2 * pairs.length));
+        }
+        System.arraycopy(pairs, 2 * index, pairs, 2 * index + 2, 2 * (size - index));
+        pairs[2 * index] = timestamp;
+        pairs[2 * index + 1] = sequence;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes the id (timestamp, sequence) if it is present.
+     *
+     * @return true if the id was removed.
+     */
+    public boolean remove(long timestamp, long sequence) {
+        final int index = indexOf(timestamp, sequence);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(pairs, 2 * index + 2, pairs, 2 * index, 2 * (size - index - 1));
+        size--;
+        return true;
+    }
+
+    public boolean contains(@NotNull RecordId id) {
+        return indexOf(id.timestamp(), id.sequence()) >= 0;
+    }
+
+    public boolean contains(long timestamp, long sequence) {
+        return indexOf(timestamp, sequence) >= 0;
+    }
+
+    /**
+     * Binary searches for the id (timestamp, sequence).
+     *
+     * @return the index of the id if present, otherwise (-(insertion point) - 1) as in
+     *  {@link Arrays#binarySearch(long[], long)}.
+     */
+    public int indexOf(long timestamp, long sequence) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int compare = compare(mid, timestamp, sequence);
+            if (compare < 0) {
+                low = mid + 1;
+            } else if (compare > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * @return the index of the first element not excluded by the left-bound of range (or {@link #size()} if none).
+     */
+    public int fromIndex(@NotNull Range<RecordId> range) {
+        final Range.Bound<RecordId> lower = range.getLowerBound();
+        if (!lower.isBounded()) {
+            return 0;
+        }
+        final RecordId bound = lower.getValue().orElseThrow();
+        final int search = indexOf(bound.timestamp(), bound.sequence());
+        if (search < 0) {
+            return -(search + 1);
+        }
+        return lower.isInclusive() ? search : search + 1;
+    }
+
+    /**
+     * @return one past the index of the last element not excluded by the right-bound of range.
+     */
+    public int toIndex(@NotNull Range<RecordId> range) {
+        final Range.Bound<RecordId> upper = range.getUpperBound();
+        if (!upper.isBounded()) {
+            return size;
+        }
+        final RecordId bound = upper.getValue().orElseThrow();
+        final int search = indexOf(bound.timestamp(), bound.sequence());
+        if (search < 0) {
+            return -(search + 1);
+        }
+        return upper.isInclusive() ? search + 1 : search;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void trimToSize() {
+        if (2 * size < pairs.length) {
+            pairs = size == 0 ? EMPTY : Arrays.copyOf(pairs, 2 * size);
+        }
+    }
+
+    private int compare(int index, long timestamp, long sequence) {
+        final int timestampCompare = Long.compare(pairs[2 * index], timestamp);
+        if (timestampCompare != 0) {
+            return timestampCompare;
+        } else {
+            return Long.compare(pairs[2 * index + 1], sequence);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " out of bounds for size " + size);
+        }
+    }
+
+}
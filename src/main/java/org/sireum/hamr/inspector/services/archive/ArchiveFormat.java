@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.archive;
+
+/**
+ * Layout of a session archive file. All values are big-endian.
+ *
+ * <pre>
+ * header   int magic, int version
+ * payloads for each msg: int length, byte[length] (the {@link org.sireum.hamr.inspector.services.MsgCodec} encoding)
+ * columns  long[count] timestamps, long[count] sequences, int[count] src port ids, int[count] dst port ids,
+ *          long[count] payload offsets (each column starts 8-byte aligned)
+ * footer   long count, long timestampsOffset, long sequencesOffset, long srcPortsOffset, long dstPortsOffset,
+ *          long payloadOffsetsOffset, int maxPayloadLength, int reserved, int version, int magic
+ * </pre>
+ *
+ * The footer is fixed-size so a reader can locate every column from the end of the file.
+ */
+final class ArchiveFormat {
+
+    private ArchiveFormat() { }
+
+    static final int MAGIC = 0x48494152; // "HIAR"
+    static final int VERSION = 1;
+
+    static final int HEADER_BYTES = 2 * Integer.BYTES;
+    static final int FOOTER_BYTES = 6 * Long.BYTES + 4 * Integer.BYTES;
+
+    // each long column is mapped as a single buffer, which can span at most Integer.MAX_VALUE bytes
+    static final int MAX_COUNT = Integer.MAX_VALUE / Long.BYTES;
+
+    static final String FILE_EXTENSION = ".hia";
+
+}
@@ -0,0 +1,488 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.archive;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.FilteredMsgService;
+import org.sireum.hamr.inspector.services.MsgCodec;
+import org.sireum.hamr.inspector.services.MsgFilter;
+import org.sireum.hamr.inspector.services.MsgHeader;
+import org.sireum.hamr.inspector.services.MsgService;
+import org.sireum.hamr.inspector.services.MsgView;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.Session;
+import org.sireum.hamr.inspector.services.SessionService;
+import org.sireum.hamr.inspector.services.SessionStatus;
+import org.springframework.data.domain.Range;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.IntFunction;
+
+/**
+ * A {@link MsgService} which serves completed {@link Session}s from memory-mapped {@link SessionArchive}s and passes
+ * every other {@link Session} to a fallback {@link MsgService} (usually the live backend).
+ *
+ * {@link #compact(Session)} writes a completed {@link Session} into an archive, and {@link #compactCompleted()} does so
+ * automatically for every session observed to complete. Reads of archived sessions never reach the fallback: counts
+ * are read from the footer, ranges are located by binary search over the mapped id columns and reverse replay is a
+ * backward walk over the same columns. Archives are found by a single scan of the directory on first use and from
+ * then on only through {@link #compact(Session)}, so looking up a {@link Session} which has not been archived touches
+ * no files; an archive copied into the directory by another process is not seen until the service is recreated.
+ *
+ * {@link MsgFilter}s are evaluated against the mapped header columns, so the payload of a msg which does not match is
+ * never touched, and the {@link MsgHeader} projections of an archived session decode no payloads at all. Its
+ * {@link MsgView}s point straight into the mapped payload segments and copy nothing until decoded. Filtered
+ * reads of sessions which have not been archived are passed to the fallback if it is itself a
+ * {@link FilteredMsgService}, and are otherwise filtered after decoding.
+ */
+public final class ArchiveMsgService implements FilteredMsgService {
+
+    @NotNull
+    private final Path directory;
+
+    @NotNull
+    private final MsgCodec codec;
+
+    @NotNull
+    private final MsgService fallback;
+
+    @NotNull
+    private final SessionService sessionService;
+
+    private final ConcurrentMap<Session, SessionArchive> archives = new ConcurrentHashMap<>();
+
+    // the compaction in flight for each session, shared by every concurrent call of compact
+    private final ConcurrentMap<Session, Mono<Path>> compacting = new ConcurrentHashMap<>();
+
+    // the file names of every archive in directory, scanned once on first use and then kept up to date by compact
+    @Nullable
+    private volatile Set<String> archived = null;
+
+    /**
+     * @param directory the directory holding one archive file per completed {@link Session}.
+     * @param codec used to encode and decode archived msgs.
+     * @param fallback serves sessions which have not been archived, and is the source of {@link #compact(Session)}.
+     * @param sessionService the source of the statuses checked by {@link #compact(Session)} and of the updates
+     *                       followed by {@link #compactCompleted()}.
+     */
+    public ArchiveMsgService(@NotNull Path directory, @NotNull MsgCodec codec, @NotNull MsgService fallback,
+                             @NotNull SessionService sessionService) {
+        this.directory = directory;
+        this.codec = codec;
+        this.fallback = fallback;
+        this.sessionService = sessionService;
+    }
+
+    /**
+     * Returns a cold {@link Mono} which replays session from the fallback into a new archive and then completes with
+     * its path. If session has already been archived, the existing archive is kept and its path is returned without
+     * reading the fallback. A session which has not completed is never archived, since the archive would miss every
+     * msg appended after it was written. Concurrent calls for the same session share a single compaction.
+     *
+     * @param session a completed {@link Session}.
+     * @return a {@link Mono} of the path of the archive of session, which fails with an {@link IllegalStateException}
+     *         if session is not known to have completed.
+     */
+    @NotNull
+    public Mono<Path> compact(@NotNull Session session) {
+        return Mono.defer(() -> {
+            if (archiveOf(session) != null) {
+                return Mono.just(pathOf(session));
+            }
+            return compacting.computeIfAbsent(session, unused -> sessionService.statusOf(session)
+                    .defaultIfEmpty(SessionStatus.RUNNING)
+                    .flatMap(status -> status == SessionStatus.COMPLETED
+                            ? write(session)
+                            : Mono.<Path>error(new IllegalStateException("session " + session + " has not completed")))
+                    .doFinally(signal -> compacting.remove(session))
+                    .cache());
+        });
+    }
+
+    /**
+     * Returns a {@link Flux} which compacts each {@link Session} that {@link SessionService#liveStatusUpdates()}
+     * reports as {@link SessionStatus#COMPLETED}, one at a time, emitting the path of each archive.
+     *
+     * @return a {@link Flux} of archive paths which runs until the updates of the {@link SessionService} complete.
+     */
+    @NotNull
+    public Flux<Path> compactCompleted() {
+        return sessionService.liveStatusUpdates()
+                .flatMap(group -> group.filter(status -> status == SessionStatus.COMPLETED).map(unused -> group.key()))
+                .concatMap(this::compact);
+    }
+
+    @NotNull
+    private Mono<Path> write(@NotNull Session session) {
+        final Path target = pathOf(session);
+        return Mono.using(
+                () -> {
+                    Files.createDirectories(directory);
+                    return new SessionArchiveWriter(target, codec);
+                },
+                writer -> fallback.replay(session, Range.unbounded())
+                        .publishOn(Schedulers.boundedElastic())
+                        .doOnNext(msg -> {
+                            try {
+                                writer.append(msg);
+                            } catch (IOException e) {
+                                throw Exceptions.propagate(e);
+                            }
+                        })
+                        .then(Mono.fromCallable(writer::finish)),
+                writer -> {
+                    try {
+                        writer.close();
+                    } catch (IOException e) {
+                        throw Exceptions.propagate(e);
+                    }
+                })
+                .doOnNext(path -> archived().add(path.getFileName().toString()));
+    }
+
+    /**
+     * @return the archive of session, or null if session has not been archived.
+     */
+    @Nullable
+    public SessionArchive archiveOf(@NotNull Session session) {
+        final SessionArchive cached = archives.get(session);
+        if (cached != null) {
+            return cached;
+        }
+        final Path path = pathOf(session);
+        if (!archived().contains(path.getFileName().toString())) {
+            return null;
+        }
+        try {
+            final SessionArchive opened = SessionArchive.open(path, codec);
+            final SessionArchive raced = archives.putIfAbsent(session, opened);
+            return raced != null ? raced : opened;
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    @NotNull
+    @Override
+    public MsgCodec codec() {
+        return codec;
+    }
+
+    @NotNull
+    @Override
+    public Mono<Long> count(@NotNull Session session) {
+        return Mono.defer(() -> {
+            final SessionArchive archive = archiveOf(session);
+            return archive != null ? Mono.just((long) archive.count()) : fallback.count(session);
+        });
+    }
+
+    /**
+     * Archived sessions have completed, so their live stream is identical to their replay.
+     */
+    @NotNull
+    @Override
+    public Flux<Msg> live(@NotNull Session session, @NotNull Range<RecordId> range) {
+        return Flux.defer(() -> {
+            final SessionArchive archive = archiveOf(session);
+            return archive != null ? replay(archive, range) : fallback.live(session, range);
+        });
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> replay(@NotNull Session session, @NotNull Range<RecordId> range) {
+        return Flux.defer(() -> {
+            final SessionArchive archive = archiveOf(session);
+            return archive != null ? replay(archive, range) : fallback.replay(session, range);
+        });
+    }
+
+    @NotNull
+    @Override
+    public Flux<List<Msg>> replayBatched(@NotNull Session session, @NotNull Range<RecordId> range,
+                                         int chunkSize, int prefetch) {
+        return Flux.defer(() -> {
+            final SessionArchive archive = archiveOf(session);
+            return archive != null
+                    ? FilteredMsgService.super.replayBatched(session, range, chunkSize, prefetch)
+                    : fallback.replayBatched(session, range, chunkSize, prefetch);
+        });
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> replayReverse(@NotNull Session session, @NotNull Range<RecordId> range) {
+        return Flux.defer(() -> {
+            final SessionArchive archive = archiveOf(session);
+            if (archive == null) {
+                return fallback.replayReverse(session, range);
+            }
+            final int from = archive.fromIndex(range);
+            final int to = archive.toIndex(range);
+            return Flux.range(0, Math.max(0, to - from)).map(i -> archive.msg(to - 1 - i));
+        });
+    }
+
+    @NotNull
+    @Override
+    public Mono<RecordId> seekTime(@NotNull Session session, long millis) {
+        return Mono.defer(() -> {
+            final SessionArchive archive = archiveOf(session);
+            if (archive == null) {
+                return fallback.seekTime(session, millis);
+            }
+            final int index = archive.fromTime(millis);
+            return index < archive.count() ? Mono.just(archive.recordId(index)) : Mono.empty();
+        });
+    }
+
+    @NotNull
+    @Override
+    public Mono<RecordId> seekOrdinal(@NotNull Session session, long ordinal) {
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("ordinal must not be negative but was " + ordinal);
+        }
+        return Mono.defer(() -> {
+            final SessionArchive archive = archiveOf(session);
+            if (archive == null) {
+                return fallback.seekOrdinal(session, ordinal);
+            }
+            return ordinal < archive.count() ? Mono.just(archive.recordId((int) ordinal)) : Mono.empty();
+        });
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> live(@NotNull Session session, @NotNull Range<RecordId> range, @NotNull MsgFilter filter) {
+        return Flux.defer(() -> {
+            final SessionArchive archive = archiveOf(session);
+            if (archive != null) {
+                return select(archive, range, filter, false, archive::msg);
+            }
+            return fallback instanceof FilteredMsgService
+                    ? ((FilteredMsgService) fallback).live(session, range, filter)
+                    : FilteredMsgService.super.live(session, range, filter);
+        });
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> replay(@NotNull Session session, @NotNull Range<RecordId> range, @NotNull MsgFilter filter) {
+        return Flux.defer(() -> {
+            final SessionArchive archive = archiveOf(session);
+            if (archive != null) {
+                return select(archive, range, filter, false, archive::msg);
+            }
+            return fallback instanceof FilteredMsgService
+                    ? ((FilteredMsgService) fallback).replay(session, range, filter)
+                    : FilteredMsgService.super.replay(session, range, filter);
+        });
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> replayReverse(@NotNull Session session, @NotNull Range<RecordId> range,
+                                   @NotNull MsgFilter filter) {
+        return Flux.defer(() -> {
+            final SessionArchive archive = archiveOf(session);
+            if (archive != null) {
+                return select(archive, range, filter, true, archive::msg);
+            }
+            return fallback instanceof FilteredMsgService
+                    ? ((FilteredMsgService) fallback).replayReverse(session, range, filter)
+                    : FilteredMsgService.super.replayReverse(session, range, filter);
+        });
+    }
+
+    @NotNull
+    @Override
+    public Flux<MsgHeader> liveHeaders(@NotNull Session session, @NotNull Range<RecordId> range,
+                                       @NotNull MsgFilter filter) {
+        return Flux.defer(() -> {
+            final SessionArchive archive = archiveOf(session);
+            if (archive != null) {
+                return select(archive, range, filter, false, archive::header);
+            }
+            return fallback instanceof FilteredMsgService
+                    ? ((FilteredMsgService) fallback).liveHeaders(session, range, filter)
+                    : FilteredMsgService.super.liveHeaders(session, range, filter);
+        });
+    }
+
+    @NotNull
+    @Override
+    public Flux<MsgHeader> replayHeaders(@NotNull Session session, @NotNull Range<RecordId> range,
+                                         @NotNull MsgFilter filter) {
+        return Flux.defer(() -> {
+            final SessionArchive archive = archiveOf(session);
+            if (archive != null) {
+                return select(archive, range, filter, false, archive::header);
+            }
+            return fallback instanceof FilteredMsgService
+                    ? ((FilteredMsgService) fallback).replayHeaders(session, range, filter)
+                    : FilteredMsgService.super.replayHeaders(session, range, filter);
+        });
+    }
+
+    @NotNull
+    @Override
+    public Flux<MsgHeader> replayReverseHeaders(@NotNull Session session, @NotNull Range<RecordId> range,
+                                                @NotNull MsgFilter filter) {
+        return Flux.defer(() -> {
+            final SessionArchive archive = archiveOf(session);
+            if (archive != null) {
+                return select(archive, range, filter, true, archive::header);
+            }
+            return fallback instanceof FilteredMsgService
+                    ? ((FilteredMsgService) fallback).replayReverseHeaders(session, range, filter)
+                    : FilteredMsgService.super.replayReverseHeaders(session, range, filter);
+        });
+    }
+
+    @NotNull
+    @Override
+    public Flux<MsgView> liveViews(@NotNull Session session, @NotNull Range<RecordId> range,
+                                   @NotNull MsgFilter filter) {
+        return Flux.defer(() -> {
+            final SessionArchive archive = archiveOf(session);
+            if (archive != null) {
+                return select(archive, range, filter, false, archive::view);
+            }
+            return fallback instanceof FilteredMsgService
+                    ? ((FilteredMsgService) fallback).liveViews(session, range, filter)
+                    : FilteredMsgService.super.liveViews(session, range, filter);
+        });
+    }
+
+    @NotNull
+    @Override
+    public Flux<MsgView> replayViews(@NotNull Session session, @NotNull Range<RecordId> range,
+                                     @NotNull MsgFilter filter) {
+        return Flux.defer(() -> {
+            final SessionArchive archive = archiveOf(session);
+            if (archive != null) {
+                return select(archive, range, filter, false, archive::view);
+            }
+            return fallback instanceof FilteredMsgService
+                    ? ((FilteredMsgService) fallback).replayViews(session, range, filter)
+                    : FilteredMsgService.super.replayViews(session, range, filter);
+        });
+    }
+
+    @NotNull
+    @Override
+    public Flux<MsgView> replayReverseViews(@NotNull Session session, @NotNull Range<RecordId> range,
+                                            @NotNull MsgFilter filter) {
+        return Flux.defer(() -> {
+            final SessionArchive archive = archiveOf(session);
+            if (archive != null) {
+                return select(archive, range, filter, true, archive::view);
+            }
+            return fallback instanceof FilteredMsgService
+                    ? ((FilteredMsgService) fallback).replayReverseViews(session, range, filter)
+                    : FilteredMsgService.super.replayReverseViews(session, range, filter);
+        });
+    }
+
+    @NotNull
+    private static Flux<Msg> replay(@NotNull SessionArchive archive, @NotNull Range<RecordId> range) {
+        final int from = archive.fromIndex(range);
+        final int to = archive.toIndex(range);
+        return Flux.range(from, Math.max(0, to - from)).map(archive::msg);
+    }
+
+    /**
+     * Walks the indices of archive within the filter's narrowing of range, testing the filter against the header
+     * columns and reading only the matching indices with reader.
+     */
+    @NotNull
+    private <T> Flux<T> select(@NotNull SessionArchive archive, @NotNull Range<RecordId> range,
+                               @NotNull MsgFilter filter, boolean reverse, @NotNull IntFunction<T> reader) {
+        final Range<RecordId> narrowed = filter.narrow(range);
+        final int from = archive.fromIndex(narrowed);
+        final int to = archive.toIndex(narrowed);
+        Flux<Integer> indices = Flux.range(0, Math.max(0, to - from)).map(i -> reverse ? to - 1 - i : from + i);
+        if (filter.hasPortConstraints()) {
+            indices = indices.filter(i ->
+                    filter.test(archive.timestamp(i), archive.srcPortId(i), archive.dstPortId(i), codec));
+        }
+        return indices.map(reader::apply);
+    }
+
+    @NotNull
+    private Set<String> archived() {
+        Set<String> names = archived;
+        if (names == null) {
+            synchronized (this) {
+                names = archived;
+                if (names == null) {
+                    names = scan();
+                    archived = names;
+                }
+            }
+        }
+        return names;
+    }
+
+    @NotNull
+    private Set<String> scan() {
+        final Set<String> names = ConcurrentHashMap.newKeySet();
+        if (!Files.isDirectory(directory)) {
+            return names;
+        }
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, "*" + ArchiveFormat.FILE_EXTENSION)) {
+            for (Path path : paths) {
+                names.add(path.getFileName().toString());
+            }
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+        return names;
+    }
+
+    @NotNull
+    private Path pathOf(@NotNull Session session) {
+        return directory.resolve(URLEncoder.encode(session.getName(), StandardCharsets.UTF_8)
+                + ArchiveFormat.FILE_EXTENSION);
+    }
+
+}
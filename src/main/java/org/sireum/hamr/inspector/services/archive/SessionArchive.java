@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.archive;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.MsgCodec;
+import org.sireum.hamr.inspector.services.MsgHeader;
+import org.sireum.hamr.inspector.services.MsgView;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.springframework.data.domain.Range;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only, memory-mapped view of an archive written by {@link SessionArchiveWriter}.
+ *
+ * Every column is mapped directly, so locating a msg by {@link RecordId} is a binary search over the mapped timestamp
+ * and sequence columns and reading a header field never touches the payloads. Payloads are decoded with the
+ * {@link MsgCodec} only when a {@link Msg} is requested. All methods are thread-safe.
+ */
+public final class SessionArchive {
+
+    // payloads are mapped in overlapping segments so that no payload straddles two mappings
+    private static final long SEGMENT_BYTES = 1L << 30;
+
+    @NotNull
+    private final MsgCodec codec;
+
+    private final int count;
+
+    @NotNull
+    private final LongBuffer timestamps;
+
+    @NotNull
+    private final LongBuffer sequences;
+
+    @NotNull
+    private final IntBuffer srcPorts;
+
+    @NotNull
+    private final IntBuffer dstPorts;
+
+    @NotNull
+    private final LongBuffer payloadOffsets;
+
+    @NotNull
+    private final ByteBuffer[] payloadSegments;
+
+    private SessionArchive(@NotNull MsgCodec codec, int count, @NotNull LongBuffer timestamps,
+                           @NotNull LongBuffer sequences, @NotNull IntBuffer srcPorts, @NotNull IntBuffer dstPorts,
+                           @NotNull LongBuffer payloadOffsets, @NotNull ByteBuffer[] payloadSegments) {
+        this.codec = codec;
+        this.count = count;
+        this.timestamps = timestamps;
+        this.sequences = sequences;
+        this.srcPorts = srcPorts;
+        this.dstPorts = dstPorts;
+        this.payloadOffsets = payloadOffsets;
+        this.payloadSegments = payloadSegments;
+    }
+
+    /**
+     * Maps the archive at path.
+     *
+     * @throws IOException if the file cannot be read or is not a valid archive.
+     */
+    @NotNull
+    public static SessionArchive open(@NotNull Path path, @NotNull MsgCodec codec) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < ArchiveFormat.HEADER_BYTES + ArchiveFormat.FOOTER_BYTES) {
+                throw new IOException(path + " is too small to be a session archive");
+            }
+
+            final ByteBuffer footer = channel.map(FileChannel.MapMode.READ_ONLY,
+                    size - ArchiveFormat.FOOTER_BYTES, ArchiveFormat.FOOTER_BYTES);
+            final long count = footer.getLong();
+            final long timestampsOffset = footer.getLong();
+            final long sequencesOffset = footer.getLong();
+            final long srcPortsOffset = footer.getLong();
+            final long dstPortsOffset = footer.getLong();
+            final long payloadOffsetsOffset = footer.getLong();
+            final int maxPayloadLength = footer.getInt();
+            footer.getInt(); // reserved
+            final int version = footer.getInt();
+            final int magic = footer.getInt();
+
+            if (magic != ArchiveFormat.MAGIC) {
+                throw new IOException(path + " is not a session archive");
+            }
+            if (version != ArchiveFormat.VERSION) {
+                throw new IOException(path + " has unsupported archive version " + version);
+            }
+            if (count < 0 || count > ArchiveFormat.MAX_COUNT || maxPayloadLength < 0
+                    || payloadOffsetsOffset + count * Long.BYTES > size - ArchiveFormat.FOOTER_BYTES) {
+                throw new IOException(path + " has a corrupt footer");
+            }
+
+            final long payloadsEnd = timestampsOffset;
+            final int segments = (int) Math.max(1L,
+                    (payloadsEnd - ArchiveFormat.HEADER_BYTES + SEGMENT_BYTES - 1) / SEGMENT_BYTES);
+            final ByteBuffer[] payloadSegments = new ByteBuffer[segments];
+            for (int i = 0; i < segments; i++) {
+                final long start = ArchiveFormat.HEADER_BYTES + i * SEGMENT_BYTES;
+                final long length = Math.min(payloadsEnd - start, SEGMENT_BYTES + Integer.BYTES + maxPayloadLength);
+                payloadSegments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.max(0L, length));
+            }
+
+            return new SessionArchive(codec, (int) count,
+                    channel.map(FileChannel.MapMode.READ_ONLY, timestampsOffset, count * Long.BYTES).asLongBuffer(),
+                    channel.map(FileChannel.MapMode.READ_ONLY, sequencesOffset, count * Long.BYTES).asLongBuffer(),
+                    channel.map(FileChannel.MapMode.READ_ONLY, srcPortsOffset, count * Integer.BYTES).asIntBuffer(),
+                    channel.map(FileChannel.MapMode.READ_ONLY, dstPortsOffset, count * Integer.BYTES).asIntBuffer(),
+                    channel.map(FileChannel.MapMode.READ_ONLY, payloadOffsetsOffset, count * Long.BYTES)
+                            .asLongBuffer(),
+                    payloadSegments);
+        }
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public long timestamp(int index) {
+        return timestamps.get(index);
+    }
+
+    public long sequence(int index) {
+        return sequences.get(index);
+    }
+
+    @NotNull
+    public RecordId recordId(int index) {
+        return RecordId.of(timestamps.get(index), sequences.get(index));
+    }
+
+    public int srcPortId(int index) {
+        return srcPorts.get(index);
+    }
+
+    public int dstPortId(int index) {
+        return dstPorts.get(index);
+    }
+
+    /**
+     * @return the header of the msg at index, read from the header columns alone.
+     */
+    @NotNull
+    public MsgHeader header(int index) {
+        return new MsgHeader(timestamps.get(index), sequences.get(index), srcPorts.get(index), dstPorts.get(index));
+    }
+
+    /**
+     * @return a read-only buffer holding exactly the encoded payload of the msg at index. No bytes are copied.
+     */
+    @NotNull
+    public ByteBuffer payload(int index) {
+        final long offset = payloadOffsets.get(index) - ArchiveFormat.HEADER_BYTES;
+        final ByteBuffer segment = payloadSegments[(int) (offset / SEGMENT_BYTES)];
+        final int local = (int) (offset % SEGMENT_BYTES);
+        final int length = segment.getInt(local);
+        return segment.duplicate().position(local + Integer.BYTES).limit(local + Integer.BYTES + length).slice();
+    }
+
+    /**
+     * @return a lazily decoded view of the msg at index, whose payload stays in the mapped segment until decoded.
+     */
+    @NotNull
+    public MsgView view(int index) {
+        final long offset = payloadOffsets.get(index) - ArchiveFormat.HEADER_BYTES;
+        final ByteBuffer segment = payloadSegments[(int) (offset / SEGMENT_BYTES)];
+        final int local = (int) (offset % SEGMENT_BYTES);
+        return new MsgView(timestamps.get(index), sequences.get(index), srcPorts.get(index), dstPorts.get(index),
+                segment, local + Integer.BYTES, segment.getInt(local), codec);
+    }
+
+    /**
+     * Decodes the msg at index.
+     */
+    @NotNull
+    public Msg msg(int index) {
+        return codec.decode(payload(index));
+    }
+
+    /**
+     * @return the index of the first msg not excluded by the left-bound of range (or {@link #count()} if none).
+     */
+    public int fromIndex(@NotNull Range<RecordId> range) {
+        final Range.Bound<RecordId> lower = range.getLowerBound();
+        if (!lower.isBounded()) {
+            return 0;
+        }
+        final RecordId bound = lower.getValue().orElseThrow();
+        return lower.isInclusive()
+                ? firstIndexAtLeast(bound.timestamp(), bound.sequence(), false)
+                : firstIndexAtLeast(bound.timestamp(), bound.sequence(), true);
+    }
+
+    /**
+     * @return one past the index of the last msg not excluded by the right-bound of range.
+     */
+    public int toIndex(@NotNull Range<RecordId> range) {
+        final Range.Bound<RecordId> upper = range.getUpperBound();
+        if (!upper.isBounded()) {
+            return count;
+        }
+        final RecordId bound = upper.getValue().orElseThrow();
+        return upper.isInclusive()
+                ? firstIndexAtLeast(bound.timestamp(), bound.sequence(), true)
+                : firstIndexAtLeast(bound.timestamp(), bound.sequence(), false);
+    }
+
+    /**
+     * @return the index of the first msg with a timestamp at or after millis (or {@link #count()} if none).
+     */
+    public int fromTime(long millis) {
+        return firstIndexAtLeast(millis, Long.MIN_VALUE, false);
+    }
+
+    /**
+     * Binary searches for the first msg whose id is greater than (timestamp, sequence), or greater than or equal to
+     * it if strict is false.
+     */
+    private int firstIndexAtLeast(long timestamp, long sequence, boolean strict) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            int compare = Long.compare(timestamps.get(mid), timestamp);
+            if (compare == 0) {
+                compare = Long.compare(sequences.get(mid), sequence);
+            }
+            if (compare > 0 || (compare == 0 && !strict)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+}
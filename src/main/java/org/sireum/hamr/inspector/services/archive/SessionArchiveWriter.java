@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.archive;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.MsgCodec;
+import org.sireum.hamr.inspector.services.RecordId;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Writes a completed {@link org.sireum.hamr.inspector.services.Session} into the columnar format described by
+ * {@link ArchiveFormat}, in a single append-only pass.
+ *
+ * Payloads are streamed to disk as they arrive while the (much smaller) fixed-width columns are kept in primitive
+ * arrays until {@link #finish()}. The archive is written to a uniquely named temporary sibling file and only moved to
+ * its target once finished, so readers never observe a partially written archive. Closing an unfinished writer
+ * discards it.
+ */
+public final class SessionArchiveWriter implements Closeable {
+
+    @NotNull
+    private final Path target;
+
+    @NotNull
+    private final Path temp;
+
+    @NotNull
+    private final MsgCodec codec;
+
+    @NotNull
+    private final DataOutputStream out;
+
+    private long position = 0L;
+
+    private int count = 0;
+    private long[] timestamps = new long[1024];
+    private long[] sequences = new long[1024];
+    private int[] srcPorts = new int[1024];
+    private int[] dstPorts = new int[1024];
+    private long[] payloadOffsets = new long[1024];
+    private int maxPayloadLength = 0;
+
+    private long lastTimestamp = Long.MIN_VALUE;
+    private long lastSequence = Long.MIN_VALUE;
+
+    private boolean finished = false;
+    private boolean closed = false;
+
+    public SessionArchiveWriter(@NotNull Path target, @NotNull MsgCodec codec) throws IOException {
+        this.target = target;
+        // a unique name, so that concurrent writers of the same target never share a temporary file
+        this.temp = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName() + ".", ".tmp");
+        this.codec = codec;
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16));
+        writeInt(ArchiveFormat.MAGIC);
+        writeInt(ArchiveFormat.VERSION);
+    }
+
+    /**
+     * Appends the next msg of the session. Msgs must be appended in {@link RecordId} order.
+     *
+     * @throws IllegalStateException if the archive already holds as many msgs as {@link SessionArchive} can open.
+     */
+    public void append(@NotNull Msg msg) throws IOException {
+        if (finished || closed) {
+            throw new IllegalStateException("cannot append to a finished or closed archive");
+        }
+        final long timestamp = msg.timestamp();
+        final long sequence = msg.sequence();
+        if (count > 0 && RecordId.of(lastTimestamp, lastSequence).compareTo(RecordId.of(timestamp, sequence)) >= 0) {
+            throw new IllegalArgumentException("msg " + RecordId.of(timestamp, sequence) + " is out of order");
+        }
+        if (count == ArchiveFormat.MAX_COUNT) {
+            throw new IllegalStateException("an archive may hold at most " + count + " msgs");
+        }
+
+        if (count == timestamps.length) {
+            final int capacity = (int) Math.min(ArchiveFormat.MAX_COUNT, 2L * count);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            sequences = Arrays.copyOf(sequences, capacity);
+            srcPorts = Arrays.copyOf(srcPorts, capacity);
+            dstPorts = Arrays.copyOf(dstPorts, capacity);
+            payloadOffsets = Arrays.copyOf(payloadOffsets, capacity);
+        }
+
+        final byte[] payload = codec.encode(msg);
+        timestamps[count] = timestamp;
+        sequences[count] = sequence;
+        srcPorts[count] = codec.srcPortId(msg);
+        dstPorts[count] = codec.dstPortId(msg);
+        payloadOffsets[count] = position;
+        count++;
+
+        writeInt(payload.length);
+        out.write(payload);
+        position += payload.length;
+        maxPayloadLength = Math.max(maxPayloadLength, payload.length);
+
+        lastTimestamp = timestamp;
+        lastSequence = sequence;
+    }
+
+    /**
+     * Writes the columns and footer and atomically moves the archive to its target path.
+     *
+     * @return the path of the finished archive.
+     */
+    @NotNull
+    public Path finish() throws IOException {
+        if (finished || closed) {
+            throw new IllegalStateException("archive has already been finished or closed");
+        }
+
+        final long timestampsOffset = align();
+        for (int i = 0; i < count; i++) {
+            writeLong(timestamps[i]);
+        }
+        final long sequencesOffset = align();
+        for (int i = 0; i < count; i++) {
+            writeLong(sequences[i]);
+        }
+        final long srcPortsOffset = align();
+        for (int i = 0; i < count; i++) {
+            writeInt(srcPorts[i]);
+        }
+        final long dstPortsOffset = align();
+        for (int i = 0; i < count; i++) {
+            writeInt(dstPorts[i]);
+        }
+        final long payloadOffsetsOffset = align();
+        for (int i = 0; i < count; i++) {
+            writeLong(payloadOffsets[i]);
+        }
+
+        writeLong(count);
+        writeLong(timestampsOffset);
+        writeLong(sequencesOffset);
+        writeLong(srcPortsOffset);
+        writeLong(dstPortsOffset);
+        writeLong(payloadOffsetsOffset);
+        writeInt(maxPayloadLength);
+        writeInt(0);
+        writeInt(ArchiveFormat.VERSION);
+        writeInt(ArchiveFormat.MAGIC);
+
+        out.close();
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        finished = true;
+        return target;
+    }
+
+    /**
+     * Releases the writer. If {@link #finish()} has not completed, the partially written archive is deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (!finished) {
+            try {
+                out.close();
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    private long align() throws IOException {
+        while (position % Long.BYTES != 0) {
+            out.write(0);
+            position++;
+        }
+        return position;
+    }
+
+    private void writeInt(int value) throws IOException {
+        out.writeInt(value);
+        position += Integer.BYTES;
+    }
+
+    private void writeLong(long value) throws IOException {
+        out.writeLong(value);
+        position += Long.BYTES;
+    }
+
+}
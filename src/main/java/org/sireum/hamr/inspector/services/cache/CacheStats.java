@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.cache;
+
+/**
+ * An immutable snapshot of the statistics of a {@link SegmentCachingMsgService}.
+ *
+ * A request is one subscription to {@link SegmentCachingMsgService#replay} or
+ * {@link SegmentCachingMsgService#replayReverse}. It is a hit if it was served from cached segments alone, and a miss
+ * if any part of it had to be read from the backend.
+ */
+public final class CacheStats {
+
+    private final long requests;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long evictedBytes;
+    private final long bytes;
+    private final int segments;
+
+    CacheStats(long requests, long hits, long misses, long evictions, long evictedBytes, long bytes, int segments) {
+        this.requests = requests;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.evictedBytes = evictedBytes;
+        this.bytes = bytes;
+        this.segments = segments;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the fraction of requests which were hits, or 0 if there were no requests.
+     */
+    public double getHitRate() {
+        return requests == 0L ? 0.0 : (double) hits / requests;
+    }
+
+    /**
+     * @return the number of segments evicted to stay within the cache's size bound.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getEvictedBytes() {
+        return evictedBytes;
+    }
+
+    /**
+     * @return the total size (in bytes) of the cached msgs.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public int getSegments() {
+        return segments;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "requests=" + requests +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                ", evictedBytes=" + evictedBytes +
+                ", bytes=" + bytes +
+                ", segments=" + segments +
+                '}';
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.springframework.data.domain.Range;
+
+/**
+ * A point between two {@link RecordId}s: just below or just above an id, or below or above every id. Every
+ * {@link Range} of {@link RecordId}s is the half-open interval between two cuts, which makes ranges with any mix of
+ * inclusive, exclusive and unbounded bounds easy to compare, intersect and join.
+ */
+final class Cut implements Comparable<Cut> {
+
+    static final Cut BELOW_ALL = new Cut(null, -1);
+
+    static final Cut ABOVE_ALL = new Cut(null, 1);
+
+    // null for BELOW_ALL and ABOVE_ALL
+    @Nullable
+    private final RecordId id;
+
+    // -1 if just below id (or below everything), 1 if just above id (or above everything)
+    private final int side;
+
+    private Cut(@Nullable RecordId id, int side) {
+        this.id = id;
+        this.side = side;
+    }
+
+    @NotNull
+    static Cut below(@NotNull RecordId id) {
+        return new Cut(id, -1);
+    }
+
+    @NotNull
+    static Cut above(@NotNull RecordId id) {
+        return new Cut(id, 1);
+    }
+
+    /**
+     * @return the cut at which range starts.
+     */
+    @NotNull
+    static Cut lowerOf(@NotNull Range<RecordId> range) {
+        final Range.Bound<RecordId> bound = range.getLowerBound();
+        return bound.getValue()
+                .map(id -> bound.isInclusive() ? below(id) : above(id))
+                .orElse(BELOW_ALL);
+    }
+
+    /**
+     * @return the cut at which range ends.
+     */
+    @NotNull
+    static Cut upperOf(@NotNull Range<RecordId> range) {
+        final Range.Bound<RecordId> bound = range.getUpperBound();
+        return bound.getValue()
+                .map(id -> bound.isInclusive() ? above(id) : below(id))
+                .orElse(ABOVE_ALL);
+    }
+
+    /**
+     * @return the range of ids between from and to.
+     */
+    @NotNull
+    static Range<RecordId> range(@NotNull Cut from, @NotNull Cut to) {
+        final Range.Bound<RecordId> lower = from.id == null
+                ? Range.Bound.unbounded()
+                : from.side < 0 ? Range.Bound.inclusive(from.id) : Range.Bound.exclusive(from.id);
+        final Range.Bound<RecordId> upper = to.id == null
+                ? Range.Bound.unbounded()
+                : to.side > 0 ? Range.Bound.inclusive(to.id) : Range.Bound.exclusive(to.id);
+        return Range.of(lower, upper);
+    }
+
+    /**
+     * @return whether msg lies above this cut.
+     */
+    boolean isBelow(@NotNull Msg msg) {
+        if (id == null) {
+            return side < 0;
+        }
+        int c = Long.compare(id.timestamp(), msg.timestamp());
+        if (c == 0) {
+            c = Long.compare(id.sequence(), msg.sequence());
+        }
+        return c < 0 || (c == 0 && side < 0);
+    }
+
+    @NotNull
+    static Cut min(@NotNull Cut a, @NotNull Cut b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    @NotNull
+    static Cut max(@NotNull Cut a, @NotNull Cut b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    @Override
+    public int compareTo(@NotNull Cut other) {
+        if (id == null || other.id == null) {
+            if (id == null && other.id == null) {
+                return Integer.compare(side, other.side);
+            }
+            return id == null ? side : -other.side;
+        }
+        final int c = id.compareTo(other.id);
+        return c != 0 ? c : Integer.compare(side, other.side);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return compareTo((Cut) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (id == null ? 0 : id.hashCode()) + side;
+    }
+
+    @Override
+    public String toString() {
+        if (id == null) {
+            return side < 0 ? "-inf" : "+inf";
+        }
+        return (side < 0 ? "|" : "") + id + (side > 0 ? "|" : "");
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.Session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * An immutable run of contiguous msgs of one {@link Session}: every msg of the session between from and to, in
+ * order. A segment may cover ids where the session has no msgs, so an empty segment is a cached answer too.
+ */
+final class Segment {
+
+    @NotNull
+    final Session session;
+
+    @NotNull
+    final Cut from;
+
+    @NotNull
+    final Cut to;
+
+    @NotNull
+    final Msg[] msgs;
+
+    final long bytes;
+
+    Segment(@NotNull Session session, @NotNull Cut from, @NotNull Cut to, @NotNull Msg[] msgs, long bytes) {
+        this.session = session;
+        this.from = from;
+        this.to = to;
+        this.msgs = msgs;
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return the index of the first msg above cut (or msgs.length if there is none).
+     */
+    int indexAbove(@NotNull Cut cut) {
+        int low = 0;
+        int high = msgs.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (cut.isBelow(msgs[mid])) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Joins segments, which must be ordered by from, each overlap or touch the union of those before it, and agree
+     * wherever they overlap.
+     *
+     * @param weigher the size (in bytes) of a msg.
+     */
+    @NotNull
+    static Segment join(@NotNull List<Segment> segments, @NotNull ToLongFunction<Msg> weigher) {
+        final Segment first = segments.get(0);
+        final List<Msg> msgs = new ArrayList<>();
+        long bytes = 0L;
+        Cut end = first.from;
+        for (Segment segment : segments) {
+            // only the msgs above end are not already part of the join
+            for (int i = segment.indexAbove(end); i < segment.msgs.length; i++) {
+                msgs.add(segment.msgs[i]);
+                bytes += weigher.applyAsLong(segment.msgs[i]);
+            }
+            end = Cut.max(end, segment.to);
+        }
+        return new Segment(first.session, first.from, end, msgs.toArray(new Msg[0]), bytes);
+    }
+
+    @Override
+    public String toString() {
+        return "Segment{" +
+                "session=" + session +
+                ", from=" + from +
+                ", to=" + to +
+                ", msgs=" + msgs.length +
+                ", bytes=" + bytes +
+                '}';
+    }
+
+}
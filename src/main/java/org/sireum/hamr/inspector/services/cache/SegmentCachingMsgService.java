@@ -0,0 +1,480 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.MsgCodec;
+import org.sireum.hamr.inspector.services.MsgService;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.RecordRanges;
+import org.sireum.hamr.inspector.services.Session;
+import org.sireum.hamr.inspector.services.SessionService;
+import org.sireum.hamr.inspector.services.SessionStatus;
+import org.springframework.data.domain.Range;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link MsgService} which caches the results of {@link #replay(Session, Range)} and
+ * {@link #replayReverse(Session, Range)} in front of another {@link MsgService}, so that scrubbing back and forth over
+ * the same region of a {@link Session} reads it from the backend only once.
+ *
+ * The cache holds immutable segments, each of which is every msg of a session between two {@link RecordId}s. A
+ * request is split into the parts covered by cached segments, which are emitted straight from memory, and the gaps
+ * between them, which are read from the backend and then cached as new segments. A request covered by cached
+ * segments alone never reaches the backend (or the {@link SessionService}). Overlapping segments are always merged,
+ * and touching segments are merged while the result stays small, so that the segments of a session stay disjoint and
+ * few. The total size of the cached msgs (as given by {@link MsgCodec#encodedSize(Msg)}) is bounded by evicting the
+ * least recently used segments.
+ *
+ * What is cached depends on whether the session has completed:
+ *  (1) for a completed session, the whole range read is cached (even where the session has no msgs), so a completed
+ *      session which has been read once is never read again while it stays cached; and
+ *  (2) for a running session, only the range up to its tail is cached, since msgs may still be appended after it.
+ *      The tail is the highest {@link RecordId} read from the session so far, and a gap with an upper bound above
+ *      it first reads the last msg of the session to advance it, so a gap which the session has already grown past
+ *      is cached whole, even where it has no msgs. A request reaching past the tail of a running session (such as
+ *      one with an unbounded upper bound) therefore always reads the live tail from the backend.
+ *
+ * A replay which is cancelled caches the msgs it read before it was cancelled, and a replay which fails caches
+ * nothing. {@link #live(Session, Range)}, {@link #count(Session)} and the seek methods are not cached.
+ */
+public final class SegmentCachingMsgService implements MsgService {
+
+    @NotNull
+    private final MsgService delegate;
+
+    @NotNull
+    private final SessionService sessionService;
+
+    @NotNull
+    private final MsgCodec codec;
+
+    private final long maxBytes;
+
+    // the largest segment that touching (but not overlapping) segments are merged into
+    private final long mergeBytes;
+
+    // the sessions known to have completed, whose status never changes again
+    private final Set<Session> completed = ConcurrentHashMap.newKeySet();
+
+    // everything below is guarded by lock
+    private final Object lock = new Object();
+
+    // the highest id read from each running session, below which no msg can be appended anymore
+    private final Map<Session, RecordId> tails = new HashMap<>();
+
+    // the disjoint segments of each session, keyed by their lower cut
+    private final Map<Session, NavigableMap<Cut, Segment>> segments = new HashMap<>();
+
+    // every cached segment, least recently used first
+    private final LinkedHashMap<Segment, Boolean> lru = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes = 0L;
+    private long requests = 0L;
+    private long hits = 0L;
+    private long misses = 0L;
+    private long evictions = 0L;
+    private long evictedBytes = 0L;
+
+    /**
+     * @param delegate the backend to cache.
+     * @param sessionService used to tell running and completed sessions apart.
+     * @param codec used to size msgs.
+     * @param maxBytes the maximum total size (in bytes) of the cached msgs. Must be positive.
+     */
+    public SegmentCachingMsgService(@NotNull MsgService delegate, @NotNull SessionService sessionService,
+                                    @NotNull MsgCodec codec, long maxBytes) {
+        if (maxBytes <= 0L) {
+            throw new IllegalArgumentException("maxBytes must be positive but was " + maxBytes);
+        }
+        this.delegate = delegate;
+        this.sessionService = sessionService;
+        this.codec = codec;
+        this.maxBytes = maxBytes;
+        this.mergeBytes = Math.max(1L, maxBytes / 16L);
+    }
+
+    /**
+     * @return a snapshot of the statistics of this cache.
+     */
+    @NotNull
+    public CacheStats stats() {
+        synchronized (lock) {
+            return new CacheStats(requests, hits, misses, evictions, evictedBytes, bytes, lru.size());
+        }
+    }
+
+    /**
+     * Drops every cached segment of session, such as after its msgs were deleted from the backend. Dropped segments
+     * are not counted as evictions.
+     */
+    public void invalidate(@NotNull Session session) {
+        synchronized (lock) {
+            final NavigableMap<Cut, Segment> cached = segments.remove(session);
+            if (cached != null) {
+                for (Segment segment : cached.values()) {
+                    lru.remove(segment);
+                    bytes -= segment.bytes;
+                }
+            }
+            tails.remove(session);
+        }
+        completed.remove(session);
+    }
+
+    @NotNull
+    @Override
+    public Mono<Long> count(@NotNull Session session) {
+        return delegate.count(session);
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> live(@NotNull Session session, @NotNull Range<RecordId> range) {
+        return delegate.live(session, range);
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> replay(@NotNull Session session, @NotNull Range<RecordId> range) {
+        return Flux.defer(() -> Flux.fromIterable(plan(session, range))
+                .concatMap(piece -> piece.segment != null
+                        ? Flux.fromIterable(piece.slice())
+                        : fetch(session, piece.from, piece.to, false), 1));
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> replayReverse(@NotNull Session session, @NotNull Range<RecordId> range) {
+        return Flux.defer(() -> {
+            final List<Piece> pieces = plan(session, range);
+            Collections.reverse(pieces);
+            return Flux.fromIterable(pieces)
+                    .concatMap(piece -> {
+                        if (piece.segment != null) {
+                            final List<Msg> slice = new ArrayList<>(piece.slice());
+                            Collections.reverse(slice);
+                            return Flux.fromIterable(slice);
+                        }
+                        return fetch(session, piece.from, piece.to, true);
+                    }, 1);
+        });
+    }
+
+    @NotNull
+    @Override
+    public Mono<RecordId> seekTime(@NotNull Session session, long millis) {
+        return delegate.seekTime(session, millis);
+    }
+
+    @NotNull
+    @Override
+    public Mono<RecordId> seekOrdinal(@NotNull Session session, long ordinal) {
+        return delegate.seekOrdinal(session, ordinal);
+    }
+
+    /**
+     * Splits range into the slices of cached segments and the gaps between them, in order, and counts the request.
+     */
+    @NotNull
+    private List<Piece> plan(@NotNull Session session, @NotNull Range<RecordId> range) {
+        final Cut lo = Cut.lowerOf(range);
+        final Cut hi = Cut.upperOf(range);
+        final List<Piece> pieces = new ArrayList<>();
+        synchronized (lock) {
+            requests++;
+            final NavigableMap<Cut, Segment> cached = segments.get(session);
+            Cut cursor = lo;
+            if (cached != null && lo.compareTo(hi) < 0) {
+                final Map.Entry<Cut, Segment> floor = cached.floorEntry(lo);
+                final Cut start = floor != null && floor.getValue().to.compareTo(lo) > 0 ? floor.getKey() : lo;
+                for (Segment segment : cached.tailMap(start, true).values()) {
+                    if (segment.from.compareTo(hi) >= 0) {
+                        break;
+                    }
+                    if (segment.from.compareTo(cursor) > 0) {
+                        pieces.add(new Piece(cursor, segment.from, null));
+                    }
+                    final Cut end = Cut.min(hi, segment.to);
+                    pieces.add(new Piece(Cut.max(cursor, segment.from), end, segment));
+                    lru.get(segment);
+                    cursor = end;
+                }
+            }
+            if (cursor.compareTo(hi) < 0) {
+                pieces.add(new Piece(cursor, hi, null));
+            }
+            boolean hit = true;
+            for (Piece piece : pieces) {
+                hit &= piece.segment != null;
+            }
+            if (hit) {
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+        return pieces;
+    }
+
+    /**
+     * Reads the gap between from and to from the backend (in reverse if reverse is true) and caches what was read.
+     *
+     * If session is running and the gap has an upper bound above its known tail, the last msg of the session is read
+     * first, so that the gap is cached whole when the session already holds msgs above it.
+     */
+    @NotNull
+    private Flux<Msg> fetch(@NotNull Session session, @NotNull Cut from, @NotNull Cut to, boolean reverse) {
+        return isCompleted(session).flatMapMany(isCompleted -> {
+            if (isCompleted) {
+                return read(session, from, to, reverse, true, null);
+            }
+            // taken before the read, as only msgs which existed when it started are certain to be read
+            final RecordId tail = tailOf(session);
+            if (to.equals(Cut.ABOVE_ALL) || tail != null && Cut.above(tail).compareTo(to) >= 0) {
+                return read(session, from, to, reverse, false, tail);
+            }
+            return delegate.replayReverse(session, Range.unbounded())
+                    .limitRequest(1)
+                    .doOnNext(last -> advanceTail(session, RecordRanges.idOf(last)))
+                    .thenMany(Flux.defer(() -> read(session, from, to, reverse, false, tailOf(session))));
+        });
+    }
+
+    @NotNull
+    private Flux<Msg> read(@NotNull Session session, @NotNull Cut from, @NotNull Cut to, boolean reverse,
+                           boolean isCompleted, @Nullable RecordId tail) {
+        final List<Msg> received = new ArrayList<>();
+        final Range<RecordId> gap = Cut.range(from, to);
+        return (reverse ? delegate.replayReverse(session, gap) : delegate.replay(session, gap))
+                .doOnNext(msg -> {
+                    synchronized (received) {
+                        received.add(msg);
+                    }
+                })
+                .doFinally(signal -> {
+                    if (signal != SignalType.ON_ERROR) {
+                        final List<Msg> msgs;
+                        synchronized (received) {
+                            msgs = new ArrayList<>(received);
+                        }
+                        if (reverse) {
+                            Collections.reverse(msgs);
+                        }
+                        store(session, from, to, msgs, isCompleted, tail, signal == SignalType.ON_COMPLETE, reverse);
+                    }
+                });
+    }
+
+    @NotNull
+    private Mono<Boolean> isCompleted(@NotNull Session session) {
+        if (completed.contains(session)) {
+            return Mono.just(true);
+        }
+        return sessionService.statusOf(session)
+                .map(status -> {
+                    if (status == SessionStatus.COMPLETED) {
+                        completed.add(session);
+                        return true;
+                    }
+                    return false;
+                })
+                .defaultIfEmpty(false);
+    }
+
+    @Nullable
+    private RecordId tailOf(@NotNull Session session) {
+        synchronized (lock) {
+            return tails.get(session);
+        }
+    }
+
+    /**
+     * Caches the part of the gap between from and to which msgs (in order) is known to cover entirely.
+     *
+     * @param isCompleted whether the session had completed before the gap was read.
+     * @param tail the tail of the session before the gap was read, or null if it was unknown (or not needed).
+     * @param finished whether the read completed, rather than being cancelled.
+     * @param reverse whether the gap was read in reverse, so that a cancelled read covers its upper part.
+     */
+    private void store(@NotNull Session session, @NotNull Cut from, @NotNull Cut to, @NotNull List<Msg> msgs,
+                       boolean isCompleted, @Nullable RecordId tail, boolean finished, boolean reverse) {
+        final Cut below = msgs.isEmpty() ? null : Cut.below(RecordRanges.idOf(msgs.get(0)));
+        final Cut above = msgs.isEmpty() ? null : Cut.above(RecordRanges.idOf(msgs.get(msgs.size() - 1)));
+        Cut lo = from;
+        Cut hi = to;
+        if (!finished) {
+            if (msgs.isEmpty()) {
+                return;
+            }
+            if (reverse) {
+                lo = below;
+            } else {
+                hi = above;
+            }
+        }
+        if (!isCompleted) {
+            // msgs may still be appended above the tail of a running session, but never below it
+            final Cut last = tail == null ? above : above == null ? Cut.above(tail) : Cut.max(above, Cut.above(tail));
+            if (last == null) {
+                return;
+            }
+            hi = Cut.min(hi, last);
+            if (above != null) {
+                advanceTail(session, RecordRanges.idOf(msgs.get(msgs.size() - 1)));
+            }
+        }
+        if (lo.compareTo(hi) >= 0) {
+            return;
+        }
+        long size = 0L;
+        for (Msg msg : msgs) {
+            size += codec.encodedSize(msg);
+        }
+        if (size > maxBytes) {
+            return;
+        }
+        insert(new Segment(session, lo, hi, msgs.toArray(new Msg[0]), size));
+    }
+
+    private void advanceTail(@NotNull Session session, @NotNull RecordId id) {
+        synchronized (lock) {
+            tails.merge(session, id, (a, b) -> a.compareTo(b) >= 0 ? a : b);
+        }
+    }
+
+    /**
+     * Adds segment to the cache, merging it with the segments it overlaps (and touches, while the result stays below
+     * mergeBytes), then evicts least recently used segments until the cache is within maxBytes.
+     */
+    private void insert(@NotNull Segment segment) {
+        synchronized (lock) {
+            final NavigableMap<Cut, Segment> cached = segments.computeIfAbsent(segment.session,
+                    unused -> new TreeMap<>());
+            final Map.Entry<Cut, Segment> floor = cached.floorEntry(segment.from);
+            final Cut start = floor != null && floor.getValue().to.compareTo(segment.from) >= 0
+                    ? floor.getKey()
+                    : segment.from;
+            final List<Segment> overlapping = new ArrayList<>();
+            final List<Segment> touching = new ArrayList<>();
+            for (Segment other : cached.tailMap(start, true).values()) {
+                if (other.from.compareTo(segment.to) > 0) {
+                    break;
+                }
+                final boolean overlaps = other.from.compareTo(segment.to) < 0 && segment.from.compareTo(other.to) < 0;
+                (overlaps ? overlapping : touching).add(other);
+            }
+            final List<Segment> joined = new ArrayList<>(overlapping);
+            joined.add(segment);
+            long size = 0L;
+            for (Segment other : overlapping) {
+                size += other.bytes;
+            }
+            size += segment.bytes;
+            for (Segment other : touching) {
+                if (size + other.bytes <= mergeBytes) {
+                    joined.add(other);
+                    size += other.bytes;
+                }
+            }
+            joined.sort((a, b) -> a.from.compareTo(b.from));
+            for (Segment other : joined) {
+                if (other != segment) {
+                    cached.remove(other.from);
+                    lru.remove(other);
+                    bytes -= other.bytes;
+                }
+            }
+            final Segment merged = joined.size() == 1 ? segment : Segment.join(joined, codec::encodedSize);
+            cached.put(merged.from, merged);
+            lru.put(merged, Boolean.TRUE);
+            bytes += merged.bytes;
+            evict();
+        }
+    }
+
+    private void evict() {
+        final Iterator<Segment> iterator = lru.keySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            final Segment victim = iterator.next();
+            iterator.remove();
+            final NavigableMap<Cut, Segment> cached = segments.get(victim.session);
+            cached.remove(victim.from);
+            if (cached.isEmpty()) {
+                segments.remove(victim.session);
+            }
+            bytes -= victim.bytes;
+            evictions++;
+            evictedBytes += victim.bytes;
+        }
+    }
+
+    /**
+     * A part of a request: either the msgs of segment between from and to, or (if segment is null) a gap.
+     */
+    private static final class Piece {
+
+        @NotNull
+        private final Cut from;
+
+        @NotNull
+        private final Cut to;
+
+        @Nullable
+        private final Segment segment;
+
+        private Piece(@NotNull Cut from, @NotNull Cut to, @Nullable Segment segment) {
+            this.from = from;
+            this.to = to;
+            this.segment = segment;
+        }
+
+        @NotNull
+        private List<Msg> slice() {
+            final Segment cached = segment;
+            assert cached != null;
+            return Arrays.asList(cached.msgs).subList(cached.indexAbove(from), cached.indexAbove(to));
+        }
+    }
+
+}
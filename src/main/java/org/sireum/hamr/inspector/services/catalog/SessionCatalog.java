@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.catalog;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.services.Session;
+import org.sireum.hamr.inspector.services.SessionService;
+import org.sireum.hamr.inspector.services.SessionStatus;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.GroupedFlux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link SessionService} which keeps an in-memory index of every {@link Session}'s status and start and stop times
+ * in front of another {@link SessionService}.
+ *
+ * The first query loads the index from the delegate (one statusOf, startTimeOf and stopTimeOf per session, at most
+ * loadConcurrency sessions at a time) and from then on keeps it current by following
+ * {@link SessionService#liveStatusUpdates()}, fetching only the times an update makes available. Lookups of indexed
+ * sessions never reach the delegate, and {@link #snapshot()} returns every session with its metadata in a single
+ * in-memory read. The sorted snapshot is cached until the index next changes.
+ *
+ * If loading or following the delegate fails (even long after the index has loaded), the failure is reported by every
+ * subsequent query rather than serving a stale index.
+ */
+public final class SessionCatalog implements SessionService, Disposable {
+
+    @NotNull
+    private final SessionService delegate;
+
+    private final int loadConcurrency;
+
+    private final ConcurrentMap<Session, SessionInfo> infos = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean started = new AtomicBoolean(false);
+
+    private final CompletableFuture<Void> loaded = new CompletableFuture<>();
+
+    // the first failure of loading or following the delegate, after which the index is no longer current
+    @Nullable
+    private volatile Throwable failure = null;
+
+    private final Disposable.Composite subscriptions = Disposables.composite();
+
+    // incremented on every change to infos, so that a cached snapshot can tell whether it is stale
+    private final AtomicLong version = new AtomicLong();
+
+    @Nullable
+    private volatile Snapshot snapshot = null;
+
+    /**
+     * @param delegate the {@link SessionService} to index.
+     * @param loadConcurrency the maximum number of sessions whose metadata is fetched from delegate at once. Must be
+     *                        positive.
+     */
+    public SessionCatalog(@NotNull SessionService delegate, int loadConcurrency) {
+        if (loadConcurrency <= 0) {
+            throw new IllegalArgumentException("loadConcurrency must be positive but was " + loadConcurrency);
+        }
+        this.delegate = delegate;
+        this.loadConcurrency = loadConcurrency;
+    }
+
+    /**
+     * Returns a cold {@link Mono} of every known {@link Session} with its metadata, sorted by {@link Session}.
+     *
+     * @return a {@link Mono} of an immutable, sorted list of {@link SessionInfo}s.
+     */
+    @NotNull
+    public Mono<List<SessionInfo>> snapshot() {
+        return whenLoaded().then(Mono.fromSupplier(this::sorted));
+    }
+
+    /**
+     * Returns a cold {@link Mono} of the metadata of session, which completes empty if session is not known.
+     */
+    @NotNull
+    public Mono<SessionInfo> infoOf(@NotNull Session session) {
+        return whenLoaded().then(Mono.fromSupplier(() -> infos.get(session)));
+    }
+
+    @NotNull
+    @Override
+    public Flux<Session> sessions() {
+        return snapshot().flatMapIterable(infos -> infos).map(SessionInfo::getSession);
+    }
+
+    @NotNull
+    @Override
+    public Mono<Long> startTimeOf(@NotNull Session session) {
+        return whenLoaded().then(Mono.defer(() -> {
+            final SessionInfo info = infos.get(session);
+            return info != null && info.getStartTime() != null
+                    ? Mono.just(info.getStartTime())
+                    : delegate.startTimeOf(session);
+        }));
+    }
+
+    @NotNull
+    @Override
+    public Mono<Long> stopTimeOf(@NotNull Session session) {
+        return whenLoaded().then(Mono.defer(() -> {
+            final SessionInfo info = infos.get(session);
+            if (info == null) {
+                return delegate.stopTimeOf(session);
+            } else if (info.getStatus() == SessionStatus.RUNNING) {
+                return Mono.empty();
+            } else {
+                return info.getStopTime() != null ? Mono.just(info.getStopTime()) : delegate.stopTimeOf(session);
+            }
+        }));
+    }
+
+    @NotNull
+    @Override
+    public Mono<SessionStatus> statusOf(@NotNull Session session) {
+        return whenLoaded().then(Mono.defer(() -> {
+            final SessionInfo info = infos.get(session);
+            return info != null ? Mono.just(info.getStatus()) : delegate.statusOf(session);
+        }));
+    }
+
+    @NotNull
+    @Override
+    public Flux<GroupedFlux<Session, SessionStatus>> liveStatusUpdates() {
+        return delegate.liveStatusUpdates();
+    }
+
+    /**
+     * Stops following the delegate. The index is no longer updated afterwards.
+     */
+    @Override
+    public void dispose() {
+        subscriptions.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return subscriptions.isDisposed();
+    }
+
+    @NotNull
+    private Mono<Void> whenLoaded() {
+        return Mono.defer(() -> {
+            connect();
+            final Throwable error = failure;
+            return error != null ? Mono.error(error) : Mono.fromFuture(loaded);
+        });
+    }
+
+    private void connect() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        // follow updates before loading so that no change between the two is missed (put merges either order)
+        subscriptions.add(delegate.liveStatusUpdates()
+                .flatMap(group -> group.map(status -> new Update(group.key(), status)), Integer.MAX_VALUE)
+                .flatMap(update -> load(update.session, update.status), loadConcurrency)
+                .subscribe(this::put, this::fail));
+        subscriptions.add(delegate.sessions()
+                .flatMap(session -> delegate.statusOf(session).flatMap(status -> load(session, status)),
+                        loadConcurrency)
+                .subscribe(this::put, this::fail, () -> loaded.complete(null)));
+    }
+
+    /**
+     * Records error so that every subsequent query reports it, even once loading has completed.
+     */
+    private void fail(@NotNull Throwable error) {
+        synchronized (this) {
+            if (failure == null) {
+                failure = error;
+            }
+        }
+        loaded.completeExceptionally(error);
+    }
+
+    /**
+     * @return a {@link Mono} of the metadata of session given its status, fetching only the times that are both
+     *  available for that status and not already indexed.
+     */
+    @NotNull
+    private Mono<SessionInfo> load(@NotNull Session session, @NotNull SessionStatus status) {
+        final SessionInfo known = infos.get(session);
+        final Mono<Optional<Long>> startTime = known != null && known.getStartTime() != null
+                ? Mono.just(Optional.of(known.getStartTime()))
+                : optional(delegate.startTimeOf(session));
+        final Mono<Optional<Long>> stopTime = status == SessionStatus.COMPLETED
+                ? optional(delegate.stopTimeOf(session))
+                : Mono.just(Optional.empty());
+        return Mono.zip(startTime, stopTime).map(times ->
+                new SessionInfo(session, status, times.getT1().orElse(null), times.getT2().orElse(null)));
+    }
+
+    private void put(@NotNull SessionInfo info) {
+        infos.merge(info.getSession(), info, SessionInfo::merge);
+        version.incrementAndGet();
+    }
+
+    @NotNull
+    private List<SessionInfo> sorted() {
+        final Snapshot cached = snapshot;
+        final long current = version.get();
+        if (cached != null && cached.version == current) {
+            return cached.infos;
+        }
+        final List<SessionInfo> sorted = new ArrayList<>(infos.values());
+        Collections.sort(sorted);
+        final List<SessionInfo> immutable = Collections.unmodifiableList(sorted);
+        snapshot = new Snapshot(current, immutable);
+        return immutable;
+    }
+
+    @NotNull
+    private static Mono<Optional<Long>> optional(@NotNull Mono<Long> time) {
+        return time.map(Optional::of).defaultIfEmpty(Optional.empty());
+    }
+
+    private static final class Update {
+
+        @NotNull
+        private final Session session;
+
+        @NotNull
+        private final SessionStatus status;
+
+        private Update(@NotNull Session session, @NotNull SessionStatus status) {
+            this.session = session;
+            this.status = status;
+        }
+    }
+
+    /**
+     * The sorted contents of the index as of version.
+     */
+    private static final class Snapshot {
+
+        private final long version;
+
+        @NotNull
+        private final List<SessionInfo> infos;
+
+        private Snapshot(long version, @NotNull List<SessionInfo> infos) {
+            this.version = version;
+            this.infos = infos;
+        }
+    }
+
+}
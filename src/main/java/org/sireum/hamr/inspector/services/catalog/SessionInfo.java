@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.catalog;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.services.Session;
+import org.sireum.hamr.inspector.services.SessionStatus;
+
+/**
+ * An immutable snapshot of everything the {@link SessionCatalog} knows about one {@link Session}. Ordered like its
+ * {@link Session}.
+ */
+public final class SessionInfo implements Comparable<SessionInfo> {
+
+    @NotNull
+    private final Session session;
+
+    @NotNull
+    private final SessionStatus status;
+
+    @Nullable
+    private final Long startTime;
+
+    @Nullable
+    private final Long stopTime;
+
+    SessionInfo(@NotNull Session session, @NotNull SessionStatus status, @Nullable Long startTime,
+                @Nullable Long stopTime) {
+        this.session = session;
+        this.status = status;
+        this.startTime = startTime;
+        this.stopTime = stopTime;
+    }
+
+    @NotNull
+    public Session getSession() {
+        return session;
+    }
+
+    @NotNull
+    public SessionStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the start time (in millis), or null if it has not been loaded yet.
+     */
+    @Nullable
+    public Long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return the stop time (in millis), or null if the session is running or its stop time has not been loaded yet.
+     */
+    @Nullable
+    public Long getStopTime() {
+        return stopTime;
+    }
+
+    /**
+     * @return the combination of this and other, preferring the later status and whichever times are known.
+     */
+    @NotNull
+    SessionInfo merge(@NotNull SessionInfo other) {
+        final SessionStatus merged = status == SessionStatus.COMPLETED ? status : other.status;
+        return new SessionInfo(session, merged,
+                startTime != null ? startTime : other.startTime,
+                stopTime != null ? stopTime : other.stopTime);
+    }
+
+    @Override
+    public int compareTo(@NotNull SessionInfo o) {
+        return session.compareTo(o.session);
+    }
+
+    @Override
+    public String toString() {
+        return "SessionInfo{" +
+                "session=" + session +
+                ", status=" + status +
+                ", startTime=" + startTime +
+                ", stopTime=" + stopTime +
+                '}';
+    }
+}
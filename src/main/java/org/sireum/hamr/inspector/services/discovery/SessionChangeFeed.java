@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.discovery;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.services.Session;
+import org.sireum.hamr.inspector.services.SessionService;
+import org.sireum.hamr.inspector.services.SessionStatus;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.GroupedFlux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link SessionService} whose {@link #liveStatusUpdates()} are driven by a {@link SessionChangeSource} instead of
+ * polling the delegate.
+ *
+ * The first subscriber loads the status of every existing {@link Session} from the delegate once. From then on,
+ * changes are coalesced into batches of distinct {@link Session}s (closed after coalesceWindow or maxBatch sessions,
+ * whichever comes first) and only the status of each changed {@link Session} is read from the delegate, so the cost of
+ * discovery follows the number of changes rather than the number of sessions. A batch emits only the transitions not
+ * seen before: a discovered {@link Session} emits {@link SessionStatus#RUNNING}, then {@link SessionStatus#COMPLETED}
+ * when it completes, after which its {@link GroupedFlux} completes. Every subscriber sees
+ * {@link SessionStatus#RUNNING} first: a {@link Session} whose {@link SessionStatus#RUNNING} it has not seen (because
+ * the session was loaded while running, was created and completed within one batch, or was discovered before the
+ * subscriber arrived) emits it right before {@link SessionStatus#COMPLETED}. Like any
+ * {@link SessionService#liveStatusUpdates()}, no happens-after guarantee is made: a {@link Session} which changes while
+ * the existing sessions load may be reported as loaded rather than discovered.
+ *
+ * The updates are shared between every subscriber and stop once the last subscriber leaves (or fail, such as when
+ * the load fails), after which the next subscriber loads the existing sessions again. All other methods are passed
+ * directly to the delegate.
+ */
+public final class SessionChangeFeed implements SessionService {
+
+    @NotNull
+    private final SessionService delegate;
+
+    @NotNull
+    private final Flux<Update> updates;
+
+    /**
+     * @param delegate the {@link SessionService} to read sessions and their statuses from.
+     * @param source the changes to follow.
+     * @param coalesceWindow the longest time a change waits for others to batch with.
+     * @param maxBatch the maximum number of sessions in a batch. Must be positive.
+     * @param concurrency the maximum number of statuses read from delegate at once. Must be positive.
+     */
+    public SessionChangeFeed(@NotNull SessionService delegate, @NotNull SessionChangeSource source,
+                             @NotNull Duration coalesceWindow, int maxBatch, int concurrency) {
+        if (coalesceWindow.isNegative() || coalesceWindow.isZero()) {
+            throw new IllegalArgumentException("coalesceWindow must be positive but was " + coalesceWindow);
+        }
+        if (maxBatch <= 0) {
+            throw new IllegalArgumentException("maxBatch must be positive but was " + maxBatch);
+        }
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency must be positive but was " + concurrency);
+        }
+        this.delegate = delegate;
+        this.updates = Flux.defer(() -> {
+            // the last status emitted (or loaded) for each session, for as long as this shared subscription lasts
+            final ConcurrentMap<Session, SessionStatus> known = new ConcurrentHashMap<>();
+            final Mono<Void> loaded = delegate.sessions()
+                    .flatMap(session -> delegate.statusOf(session)
+                            .doOnNext(status -> known.putIfAbsent(session, status)), concurrency)
+                    .then()
+                    .cache();
+            // the load starts along with following changes, and batches wait for it, so that no change is missed
+            return Flux.merge(loaded.then(Mono.<Update>empty()), source.changes()
+                    .bufferTimeout(maxBatch, coalesceWindow, LinkedHashSet<Session>::new)
+                    .onBackpressureBuffer()
+                    .concatMap(batch -> loaded.thenMany(Flux.fromIterable(batch)
+                            .flatMapSequential(session -> transitionOf(known, session), concurrency))));
+        }).share();
+    }
+
+    @NotNull
+    @Override
+    public Flux<Session> sessions() {
+        return delegate.sessions();
+    }
+
+    @NotNull
+    @Override
+    public Mono<Long> startTimeOf(@NotNull Session session) {
+        return delegate.startTimeOf(session);
+    }
+
+    @NotNull
+    @Override
+    public Mono<Long> stopTimeOf(@NotNull Session session) {
+        return delegate.stopTimeOf(session);
+    }
+
+    @NotNull
+    @Override
+    public Mono<SessionStatus> statusOf(@NotNull Session session) {
+        return delegate.statusOf(session);
+    }
+
+    @NotNull
+    @Override
+    public Flux<GroupedFlux<Session, SessionStatus>> liveStatusUpdates() {
+        return Flux.defer(() -> {
+            // the sessions this subscriber has seen running but not yet completed
+            final Set<Session> running = new HashSet<>();
+            return updates
+                    .concatMapIterable(update -> {
+                        if (update.status == SessionStatus.RUNNING) {
+                            running.add(update.session);
+                            return List.of(update);
+                        }
+                        return running.remove(update.session)
+                                ? List.of(update)
+                                : List.of(new Update(update.session, SessionStatus.RUNNING), update);
+                    })
+                    .groupBy(update -> update.session, update -> update.status)
+                    .map(StatusGroup::new);
+        });
+    }
+
+    /**
+     * Returns a {@link Mono} of the new status of session, if it changed since its last status in known. Batches run
+     * one at a time and hold distinct sessions, so no two calls for the same session overlap.
+     */
+    @NotNull
+    private Mono<Update> transitionOf(@NotNull ConcurrentMap<Session, SessionStatus> known,
+                                      @NotNull Session session) {
+        return delegate.statusOf(session).flatMap(status -> {
+            final SessionStatus previous = known.get(session);
+            if (previous == status || previous == SessionStatus.COMPLETED) {
+                return Mono.empty();
+            }
+            known.put(session, status);
+            return Mono.just(new Update(session, status));
+        });
+    }
+
+    private static final class Update {
+
+        @NotNull
+        private final Session session;
+
+        @NotNull
+        private final SessionStatus status;
+
+        private Update(@NotNull Session session, @NotNull SessionStatus status) {
+            this.session = session;
+            this.status = status;
+        }
+    }
+
+    /**
+     * The updates of one {@link Session}, which complete after {@link SessionStatus#COMPLETED} so that a subscriber
+     * does not hold on to every {@link Session} it has ever seen.
+     */
+    private static final class StatusGroup extends GroupedFlux<Session, SessionStatus> {
+
+        @NotNull
+        private final Session session;
+
+        @NotNull
+        private final Flux<SessionStatus> statuses;
+
+        private StatusGroup(@NotNull GroupedFlux<Session, SessionStatus> group) {
+            this.session = group.key();
+            this.statuses = group.takeUntil(status -> status == SessionStatus.COMPLETED);
+        }
+
+        @NotNull
+        @Override
+        public Session key() {
+            return session;
+        }
+
+        @Override
+        public void subscribe(@NotNull CoreSubscriber<? super SessionStatus> actual) {
+            statuses.subscribe(actual);
+        }
+    }
+
+}
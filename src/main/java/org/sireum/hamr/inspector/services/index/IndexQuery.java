@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.index;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+
+/**
+ * An immutable query of a {@link PayloadIndexService}: either every msg sent from (or to) a port, or every msg
+ * carrying a value in an {@link IndexedField}, optionally only those sent from one port.
+ */
+public final class IndexQuery {
+
+    /**
+     * What a query (or a postings list) is keyed by.
+     */
+    enum Kind {
+        SRC_PORT,
+        DST_PORT,
+        FIELD
+    }
+
+    // no port constraint on a FIELD query
+    static final int ANY_PORT = -1;
+
+    @NotNull
+    final Kind kind;
+
+    final int portId;
+
+    @Nullable
+    final String field;
+
+    @Nullable
+    final String value;
+
+    private IndexQuery(@NotNull Kind kind, int portId, @Nullable String field, @Nullable String value) {
+        this.kind = kind;
+        this.portId = portId;
+        this.field = field;
+        this.value = value;
+    }
+
+    /**
+     * @return a query of every msg sent from the port with id portId.
+     */
+    @NotNull
+    public static IndexQuery srcPort(int portId) {
+        return new IndexQuery(Kind.SRC_PORT, checkPort(portId), null, null);
+    }
+
+    /**
+     * @return a query of every msg sent to the port with id portId.
+     */
+    @NotNull
+    public static IndexQuery dstPort(int portId) {
+        return new IndexQuery(Kind.DST_PORT, checkPort(portId), null, null);
+    }
+
+    /**
+     * @param field the {@link IndexedField#getName() name} of an indexed field.
+     * @return a query of every msg whose field has value.
+     */
+    @NotNull
+    public static IndexQuery field(@NotNull String field, @NotNull String value) {
+        return new IndexQuery(Kind.FIELD, ANY_PORT, field, value);
+    }
+
+    /**
+     * @return a copy of this field query which only matches msgs sent from the port with id portId.
+     * @throws IllegalStateException if this is not a field query.
+     */
+    @NotNull
+    public IndexQuery fromPort(int portId) {
+        if (kind != Kind.FIELD) {
+            throw new IllegalStateException("only field queries can be narrowed to a port");
+        }
+        return new IndexQuery(Kind.FIELD, checkPort(portId), field, value);
+    }
+
+    private static int checkPort(int portId) {
+        if (portId < 0) {
+            throw new IllegalArgumentException("port ids must not be negative but got " + portId);
+        }
+        return portId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final IndexQuery that = (IndexQuery) o;
+        return kind == that.kind && portId == that.portId && Objects.equals(field, that.field)
+                && Objects.equals(value, that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, portId, field, value);
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case SRC_PORT:
+                return "IndexQuery{srcPort=" + portId + '}';
+            case DST_PORT:
+                return "IndexQuery{dstPort=" + portId + '}';
+            default:
+                return "IndexQuery{" +
+                        "field='" + field + '\'' +
+                        ", value='" + value + '\'' +
+                        (portId == ANY_PORT ? "" : ", srcPort=" + portId) +
+                        '}';
+        }
+    }
+}
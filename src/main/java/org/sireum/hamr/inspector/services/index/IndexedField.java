@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.index;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.common.Msg;
+
+import java.util.function.Function;
+
+/**
+ * A named payload field indexed by a {@link PayloadIndexService}, with the function reading its value from a msg.
+ *
+ * Values are compared as strings, so the extractor should render each value canonically (for example, numbers
+ * without formatting). The extractor is called once per indexed msg and returns null for msgs which do not carry
+ * the field.
+ */
+public final class IndexedField {
+
+    @NotNull
+    private final String name;
+
+    @NotNull
+    private final Function<Msg, String> extractor;
+
+    private IndexedField(@NotNull String name, @NotNull Function<Msg, String> extractor) {
+        this.name = name;
+        this.extractor = extractor;
+    }
+
+    @NotNull
+    public static IndexedField of(@NotNull String name, @NotNull Function<Msg, String> extractor) {
+        return new IndexedField(name, extractor);
+    }
+
+    @NotNull
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the value of this field in msg, or null if msg does not carry it.
+     */
+    @Nullable
+    String valueOf(@NotNull Msg msg) {
+        return extractor.apply(msg);
+    }
+
+    @Override
+    public String toString() {
+        return "IndexedField{" +
+                "name='" + name + '\'' +
+                '}';
+    }
+}
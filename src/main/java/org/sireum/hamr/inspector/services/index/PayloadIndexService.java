@@ -0,0 +1,470 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.index;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.MsgCodec;
+import org.sireum.hamr.inspector.services.MsgService;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.Session;
+import org.sireum.hamr.inspector.services.SessionService;
+import org.sireum.hamr.inspector.services.SessionStatus;
+import org.sireum.hamr.inspector.services.SortedRecordIdArray;
+import org.springframework.data.domain.Range;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Answers which msgs of a {@link Session} were sent from or to a port, or carried a value in one of a fixed set of
+ * {@link IndexedField}s, from per-{@link Session} inverted indexes.
+ *
+ * A {@link Session}'s index is built on its first query. Completed sessions are indexed offline with a single
+ * {@link MsgService#replay(Session, Range)}, and running sessions are caught up the same way and then follow
+ * {@link MsgService#live(Session, Range)}, so their index grows until the session completes. Every msg is added to the
+ * postings of its source port, its destination port and each field value it carries (scoped to its source port), so
+ * every query reads exactly one postings list (or, for a field value on any port, one list per source port) and
+ * runs in time proportional to the number of matches rather than the length of the session.
+ *
+ * Postings are delta-encoded in blocks (see {@link Postings}). Once the sealed blocks of all indexes together exceed
+ * maxResidentBytes, the oldest are spilled to a scratch file per session in spillDirectory, which is deleted when
+ * this service is disposed. Spilling runs on a single thread of its own, so indexing never waits on the disk, and a
+ * block which fails to spill stays in memory (the error is dropped via {@link Operators#onErrorDropped}) rather than
+ * failing the index of whichever session sealed a block last. Spilled blocks are read back on
+ * {@link Schedulers#boundedElastic()}. The open (not yet full) block of each postings list and one small entry per
+ * distinct term always stay in memory.
+ */
+public final class PayloadIndexService implements Disposable {
+
+    @NotNull
+    private final MsgService msgService;
+
+    @NotNull
+    private final SessionService sessionService;
+
+    @NotNull
+    private final MsgCodec codec;
+
+    @NotNull
+    private final List<IndexedField> fields;
+
+    private final long maxResidentBytes;
+
+    @NotNull
+    private final Path spillDirectory;
+
+    private final ConcurrentMap<Session, SessionIndex> indexes = new ConcurrentHashMap<>();
+
+    private final Disposable.Composite subscriptions = Disposables.composite();
+
+    // the sealed blocks still in memory, oldest first, guarded by itself
+    private final Queue<Resident> resident = new ArrayDeque<>();
+
+    private long residentBytes = 0L;
+
+    // whether a spill is scheduled on spiller, guarded by resident
+    private boolean spilling = false;
+
+    private final Scheduler spiller = Schedulers.newSingle("index-spiller", true);
+
+    // set once the first block is spilled, after which a query may read from disk
+    private volatile boolean spilled = false;
+
+    /**
+     * @param msgService the source of msgs.
+     * @param sessionService used to tell running and completed sessions apart.
+     * @param codec used to read the port ids of msgs.
+     * @param fields the payload fields to index. Names must be unique.
+     * @param maxResidentBytes the size (in bytes) of sealed postings kept in memory before spilling to disk. Must
+     *                         not be negative.
+     * @param spillDirectory the directory to spill postings to, which is created if it does not exist.
+     */
+    public PayloadIndexService(@NotNull MsgService msgService, @NotNull SessionService sessionService,
+                               @NotNull MsgCodec codec, @NotNull List<IndexedField> fields, long maxResidentBytes,
+                               @NotNull Path spillDirectory) {
+        if (maxResidentBytes < 0) {
+            throw new IllegalArgumentException("maxResidentBytes must not be negative but was " + maxResidentBytes);
+        }
+        for (int i = 0; i < fields.size(); i++) {
+            for (int j = 0; j < i; j++) {
+                if (fields.get(i).getName().equals(fields.get(j).getName())) {
+                    throw new IllegalArgumentException("field " + fields.get(i).getName() + " is indexed twice");
+                }
+            }
+        }
+        this.msgService = msgService;
+        this.sessionService = sessionService;
+        this.codec = codec;
+        this.fields = List.copyOf(fields);
+        this.maxResidentBytes = maxResidentBytes;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Returns a cold {@link Flux} of the {@link RecordId}s of the msgs of session matching query, in order. A
+     * running session is searched up to (at least) the time of the call. If session is not recognised, the
+     * {@link Flux} completes empty.
+     *
+     * @throws IllegalArgumentException if query names a field which is not indexed.
+     */
+    @NotNull
+    public Flux<RecordId> find(@NotNull Session session, @NotNull IndexQuery query) {
+        if (query.kind == IndexQuery.Kind.FIELD && fields.stream().noneMatch(f -> f.getName().equals(query.field))) {
+            throw new IllegalArgumentException("field " + query.field + " is not indexed");
+        }
+        return index(session).flatMapMany(index -> Mono.fromFuture(index.caughtUp).thenMany(Flux.defer(() -> {
+            final List<List<Postings.Block>> lists = index.snapshot(query);
+            final Flux<RecordId> ids = lists.size() == 1
+                    ? Flux.fromIterable(lists.get(0)).concatMapIterable(block -> ids(List.of(block)))
+                    : Flux.defer(() -> Flux.fromIterable(merge(lists)));
+            return spilled ? ids.subscribeOn(Schedulers.boundedElastic()) : ids;
+        })));
+    }
+
+    /**
+     * Returns a cold {@link Flux} of the msgs of session matching query, in order, each fetched with its own
+     * {@link MsgService#replay(Session, Range)} of a single id.
+     *
+     * @param concurrency the maximum number of msgs fetched at once. Must be positive.
+     */
+    @NotNull
+    public Flux<Msg> findMsgs(@NotNull Session session, @NotNull IndexQuery query, int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency must be positive but was " + concurrency);
+        }
+        return find(session, query).flatMapSequential(id -> msgService.replay(session,
+                Range.of(Range.Bound.inclusive(id), Range.Bound.inclusive(id))), concurrency);
+    }
+
+    /**
+     * Stops following running sessions and deletes every spill file. Queries fail afterwards.
+     */
+    @Override
+    public void dispose() {
+        subscriptions.dispose();
+        spiller.dispose();
+        synchronized (resident) {
+            resident.clear();
+            residentBytes = 0L;
+        }
+        for (SessionIndex index : indexes.values()) {
+            index.close();
+        }
+        indexes.clear();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return subscriptions.isDisposed();
+    }
+
+    @NotNull
+    private Mono<SessionIndex> index(@NotNull Session session) {
+        return Mono.defer(() -> {
+            if (isDisposed()) {
+                return Mono.error(new IllegalStateException("the index service has been disposed"));
+            }
+            final SessionIndex existing = indexes.get(session);
+            if (existing != null) {
+                return Mono.just(existing);
+            }
+            return sessionService.statusOf(session).map(status -> {
+                final SessionIndex created = new SessionIndex();
+                final SessionIndex raced = indexes.putIfAbsent(session, created);
+                if (raced != null) {
+                    return raced;
+                }
+                start(session, created, status);
+                return created;
+            });
+        });
+    }
+
+    private void start(@NotNull Session session, @NotNull SessionIndex index, @NotNull SessionStatus status) {
+        subscriptions.add(msgService.replay(session, Range.unbounded())
+                .doOnNext(index::observe)
+                .then(Mono.fromRunnable(() -> index.caughtUp.complete(null)))
+                .thenMany(Flux.defer(() -> status == SessionStatus.COMPLETED
+                        ? Flux.empty()
+                        : msgService.live(session, index.resumeRange()).doOnNext(index::observe)))
+                .subscribe(null, error -> {
+                    indexes.remove(session, index);
+                    index.caughtUp.completeExceptionally(error);
+                    index.close();
+                }));
+    }
+
+    /**
+     * Tracks newly sealed blocks and, once over budget, schedules a spill unless one is already pending.
+     */
+    private void admit(@NotNull List<Postings.Block> sealed, @NotNull SpillFile file) {
+        synchronized (resident) {
+            for (Postings.Block block : sealed) {
+                resident.add(new Resident(block, file));
+                residentBytes += block.length();
+            }
+            if (residentBytes > maxResidentBytes && !spilling) {
+                spilling = true;
+                try {
+                    spiller.schedule(this::spill);
+                } catch (RejectedExecutionException e) {
+                    // disposed, after which every spill file is closed anyway
+                    spilling = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Spills the oldest resident blocks until back within budget. Runs on spiller, and writes outside the lock so
+     * that indexing is never blocked on the disk.
+     */
+    private void spill() {
+        while (true) {
+            final Resident oldest;
+            synchronized (resident) {
+                if (residentBytes <= maxResidentBytes || resident.isEmpty()) {
+                    spilling = false;
+                    return;
+                }
+                oldest = resident.poll();
+                residentBytes -= oldest.block.length();
+                spilled = true;
+            }
+            try {
+                oldest.block.spill(oldest.file);
+            } catch (IOException e) {
+                Operators.onErrorDropped(e, Context.empty());
+            }
+        }
+    }
+
+    @NotNull
+    private static List<RecordId> ids(@NotNull List<Postings.Block> blocks) {
+        final SortedRecordIdArray ids = new SortedRecordIdArray();
+        try {
+            for (Postings.Block block : blocks) {
+                block.decodeInto(ids);
+            }
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+        final List<RecordId> result = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            result.add(ids.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * @return the ids of every list of blocks, merged into a single ascending list.
+     */
+    @NotNull
+    private static List<RecordId> merge(@NotNull List<List<Postings.Block>> lists) {
+        final List<List<RecordId>> decoded = new ArrayList<>(lists.size());
+        int total = 0;
+        for (List<Postings.Block> blocks : lists) {
+            final List<RecordId> ids = ids(blocks);
+            decoded.add(ids);
+            total += ids.size();
+        }
+        final List<RecordId> merged = new ArrayList<>(total);
+        final int[] heads = new int[decoded.size()];
+        while (merged.size() < total) {
+            int min = -1;
+            for (int i = 0; i < heads.length; i++) {
+                if (heads[i] < decoded.get(i).size() && (min < 0
+                        || decoded.get(i).get(heads[i]).compareTo(decoded.get(min).get(heads[min])) < 0)) {
+                    min = i;
+                }
+            }
+            merged.add(decoded.get(min).get(heads[min]++));
+        }
+        return merged;
+    }
+
+    /**
+     * The postings of one {@link Session}. All fields except caughtUp and spillFile are guarded by this.
+     */
+    private final class SessionIndex {
+
+        private final CompletableFuture<Void> caughtUp = new CompletableFuture<>();
+
+        private final SpillFile spillFile = new SpillFile(spillDirectory);
+
+        private final Map<Term, Postings> postings = new HashMap<>();
+
+        private int srcPortLimit = 0;
+
+        private long count = 0L;
+        private long lastTimestamp = 0L;
+        private long lastSequence = 0L;
+
+        private void observe(@NotNull Msg msg) {
+            final List<Postings.Block> sealed = new ArrayList<>(0);
+            synchronized (this) {
+                final long timestamp = msg.timestamp();
+                final long sequence = msg.sequence();
+                final int srcPort = codec.srcPortId(msg);
+                add(new Term(IndexQuery.Kind.SRC_PORT, srcPort, null, null), timestamp, sequence, sealed);
+                add(new Term(IndexQuery.Kind.DST_PORT, codec.dstPortId(msg), null, null), timestamp, sequence, sealed);
+                for (IndexedField field : fields) {
+                    final String value = field.valueOf(msg);
+                    if (value != null) {
+                        add(new Term(IndexQuery.Kind.FIELD, srcPort, field.getName(), value), timestamp, sequence,
+                                sealed);
+                    }
+                }
+                srcPortLimit = Math.max(srcPortLimit, srcPort + 1);
+                count++;
+                lastTimestamp = timestamp;
+                lastSequence = sequence;
+            }
+            if (!sealed.isEmpty()) {
+                admit(sealed, spillFile);
+            }
+        }
+
+        private void add(@NotNull Term term, long timestamp, long sequence, @NotNull List<Postings.Block> sealed) {
+            final Postings list = postings.computeIfAbsent(term, unused -> new Postings());
+            final Postings.Block block = list.add(timestamp, sequence);
+            if (block != null) {
+                sealed.add(block);
+            }
+        }
+
+        @NotNull
+        private synchronized Range<RecordId> resumeRange() {
+            if (count == 0L) {
+                return Range.unbounded();
+            }
+            return Range.of(Range.Bound.exclusive(RecordId.of(lastTimestamp, lastSequence)), Range.Bound.unbounded());
+        }
+
+        /**
+         * @return the blocks of every postings list query reads.
+         */
+        @NotNull
+        private synchronized List<List<Postings.Block>> snapshot(@NotNull IndexQuery query) {
+            if (query.kind != IndexQuery.Kind.FIELD || query.portId != IndexQuery.ANY_PORT) {
+                final Postings list = postings.get(new Term(query.kind, query.portId, query.field, query.value));
+                return List.of(list == null ? Collections.emptyList() : list.snapshot());
+            }
+            final List<List<Postings.Block>> lists = new ArrayList<>();
+            for (int port = 0; port < srcPortLimit; port++) {
+                final Postings list = postings.get(new Term(IndexQuery.Kind.FIELD, port, query.field, query.value));
+                if (list != null) {
+                    lists.add(list.snapshot());
+                }
+            }
+            return lists.isEmpty() ? List.of(Collections.emptyList()) : lists;
+        }
+
+        private void close() {
+            try {
+                spillFile.close();
+            } catch (IOException e) {
+                throw Exceptions.propagate(e);
+            }
+        }
+    }
+
+    /**
+     * A postings list key: a source or destination port, or a field value sent from a port.
+     */
+    private static final class Term {
+
+        @NotNull
+        private final IndexQuery.Kind kind;
+
+        private final int portId;
+
+        @Nullable
+        private final String field;
+
+        @Nullable
+        private final String value;
+
+        private Term(@NotNull IndexQuery.Kind kind, int portId, @Nullable String field, @Nullable String value) {
+            this.kind = kind;
+            this.portId = portId;
+            this.field = field;
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Term term = (Term) o;
+            return kind == term.kind && portId == term.portId && Objects.equals(field, term.field)
+                    && Objects.equals(value, term.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, portId, field, value);
+        }
+    }
+
+    private static final class Resident {
+
+        @NotNull
+        private final Postings.Block block;
+
+        @NotNull
+        private final SpillFile file;
+
+        private Resident(@NotNull Postings.Block block, @NotNull SpillFile file) {
+            this.block = block;
+            this.file = file;
+        }
+    }
+
+}
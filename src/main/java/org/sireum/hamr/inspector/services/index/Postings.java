@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.index;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.services.SortedRecordIdArray;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The ascending {@link org.sireum.hamr.inspector.services.RecordId}s of the msgs matching one index term, stored in
+ * blocks of up to {@link #BLOCK_SIZE} ids.
+ *
+ * A block keeps its first id as two primitive longs and every following id as the zig-zag, variable-length encoded
+ * differences of its timestamp and sequence from the id before it, so ids of a steady stream usually take two or
+ * three bytes instead of sixteen. Full blocks are sealed and never change again, which lets them be spilled to a
+ * {@link SpillFile} and read back without coordination.
+ *
+ * This class is not thread-safe, except that sealed blocks may be read and spilled concurrently.
+ */
+final class Postings {
+
+    static final int BLOCK_SIZE = 128;
+
+    private final List<Block> sealed = new ArrayList<>();
+
+    private byte[] open = new byte[16];
+    private int openLength = 0;
+    private int openCount = 0;
+    private long openFirstTimestamp = 0L;
+    private long openFirstSequence = 0L;
+
+    private long lastTimestamp = 0L;
+    private long lastSequence = 0L;
+
+    /**
+     * Adds the id (timestamp, sequence), which must follow every id added before it.
+     *
+     * @return the block this sealed, or null if the open block is not full yet.
+     */
+    @Nullable
+    Block add(long timestamp, long sequence) {
+        if (openCount == 0) {
+            openFirstTimestamp = timestamp;
+            openFirstSequence = sequence;
+        } else {
+            write(timestamp - lastTimestamp);
+            write(sequence - lastSequence);
+        }
+        lastTimestamp = timestamp;
+        lastSequence = sequence;
+        openCount++;
+        if (openCount < BLOCK_SIZE) {
+            return null;
+        }
+        final Block block = new Block(openFirstTimestamp, openFirstSequence, openCount,
+                Arrays.copyOf(open, openLength));
+        sealed.add(block);
+        openLength = 0;
+        openCount = 0;
+        return block;
+    }
+
+    /**
+     * @return the blocks of every id added so far, including a copy of the open block.
+     */
+    @NotNull
+    List<Block> snapshot() {
+        final List<Block> blocks = new ArrayList<>(sealed.size() + 1);
+        blocks.addAll(sealed);
+        if (openCount > 0) {
+            blocks.add(new Block(openFirstTimestamp, openFirstSequence, openCount, Arrays.copyOf(open, openLength)));
+        }
+        return blocks;
+    }
+
+    private void write(long delta) {
+        long zigzag = (delta << 1) ^ (delta >> 63);
+        if (openLength + 10 > open.length) {
+            open = Arrays.copyOf(open, 2 * open.length);
+        }
+        while ((zigzag & ~0x7FL) != 0L) {
+            open[openLength++] = (byte) ((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        open[openLength++] = (byte) zigzag;
+    }
+
+    /**
+     * An immutable run of ids, held in memory until it is spilled.
+     */
+    static final class Block {
+
+        private final long firstTimestamp;
+        private final long firstSequence;
+        private final int count;
+        private final int length;
+
+        // null once spilled, after which file and offset locate the encoded ids
+        @Nullable
+        private volatile byte[] data;
+
+        @Nullable
+        private volatile SpillFile file = null;
+
+        private volatile long offset = -1L;
+
+        private Block(long firstTimestamp, long firstSequence, int count, @NotNull byte[] data) {
+            this.firstTimestamp = firstTimestamp;
+            this.firstSequence = firstSequence;
+            this.count = count;
+            this.length = data.length;
+            this.data = data;
+        }
+
+        /**
+         * @return the number of bytes of encoded ids.
+         */
+        int length() {
+            return length;
+        }
+
+        /**
+         * Writes the encoded ids to spillFile and drops them from memory. Does nothing if spillFile is closed.
+         */
+        void spill(@NotNull SpillFile spillFile) throws IOException {
+            final byte[] current = data;
+            if (current == null) {
+                return;
+            }
+            final long written = spillFile.append(current);
+            if (written >= 0L) {
+                file = spillFile;
+                offset = written;
+                data = null;
+            }
+        }
+
+        /**
+         * Appends the ids of this block to ids, reading them back from disk if the block has been spilled.
+         */
+        void decodeInto(@NotNull SortedRecordIdArray ids) throws IOException {
+            byte[] encoded = data;
+            if (encoded == null) {
+                encoded = file.read(offset, length);
+            }
+            long timestamp = firstTimestamp;
+            long sequence = firstSequence;
+            ids.add(timestamp, sequence);
+            int position = 0;
+            for (int i = 1; i < count; i++) {
+                long value = 0L;
+                int shift = 0;
+                byte b;
+                do {
+                    b = encoded[position++];
+                    value |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                timestamp += (value >>> 1) ^ -(value & 1);
+                value = 0L;
+                shift = 0;
+                do {
+                    b = encoded[position++];
+                    value |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                sequence += (value >>> 1) ^ -(value & 1);
+                ids.add(timestamp, sequence);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.index;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.MsgService;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.RecordRanges;
+import org.sireum.hamr.inspector.services.Session;
+import org.sireum.hamr.inspector.services.SessionService;
+import org.sireum.hamr.inspector.services.SessionStatus;
+import org.springframework.data.domain.Range;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link MsgService} decorator which answers {@link #seekTime(Session, long)} and
+ * {@link #seekOrdinal(Session, long)} from a per-{@link Session} {@link SparseTimeIndex}.
+ *
+ * A {@link Session}'s index is built on its first seek. Completed sessions are indexed with a single
+ * {@link MsgService#replay(Session, Range)} and running sessions with {@link MsgService#live(Session, Range)}, so the
+ * index keeps growing until the session completes, at which point it is frozen. Seeks issued while an index is still
+ * catching up fall back to scanning from its last entry.
+ *
+ * Once an index is located, a seek replays at most one stride of msgs. All other methods are passed directly to
+ * the delegate.
+ */
+public final class SeekIndexedMsgService implements MsgService {
+
+    @NotNull
+    private final MsgService delegate;
+
+    @NotNull
+    private final SessionService sessionService;
+
+    private final int stride;
+
+    private final ConcurrentMap<Session, SparseTimeIndex> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * @param delegate the {@link MsgService} to index.
+     * @param sessionService used to decide whether a {@link Session} is still running when its index is built.
+     * @param stride the number of msgs between two consecutive index entries.
+     */
+    public SeekIndexedMsgService(@NotNull MsgService delegate, @NotNull SessionService sessionService, int stride) {
+        if (stride <= 0) {
+            throw new IllegalArgumentException("stride must be positive but was " + stride);
+        }
+        this.delegate = delegate;
+        this.sessionService = sessionService;
+        this.stride = stride;
+    }
+
+    /**
+     * Installs a previously persisted index so the {@link Session} does not have to be re-indexed.
+     *
+     * @param session the {@link Session} the index belongs to.
+     * @param index a frozen {@link SparseTimeIndex}, usually read by {@link SparseTimeIndex#readFrom}.
+     */
+    public void load(@NotNull Session session, @NotNull SparseTimeIndex index) {
+        if (!index.isFrozen()) {
+            throw new IllegalArgumentException("only frozen indexes may be loaded");
+        }
+        indexes.put(session, index);
+    }
+
+    /**
+     * @return the current index of session (which may still be growing, see {@link SparseTimeIndex#isFrozen()}) or
+     *  null if session has not been indexed.
+     */
+    @Nullable
+    public SparseTimeIndex indexOf(@NotNull Session session) {
+        return indexes.get(session);
+    }
+
+    @NotNull
+    @Override
+    public Mono<RecordId> seekTime(@NotNull Session session, long millis) {
+        return Mono.defer(() -> {
+            final SparseTimeIndex index = index(session);
+            final int entries = index.entries();
+            if (entries == 0) {
+                return delegate.seekTime(session, millis);
+            }
+
+            final int entry = index.floorOfTime(millis);
+            if (entry < 0) {
+                return delegate.replay(session, Range.unbounded()).next().map(RecordRanges::idOf);
+            }
+
+            final Range.Bound<RecordId> upper = entry + 1 < entries
+                    ? Range.Bound.inclusive(index.entry(entry + 1))
+                    : Range.Bound.unbounded();
+            return delegate.replay(session, Range.of(Range.Bound.exclusive(index.entry(entry)), upper))
+                    .filter(msg -> msg.timestamp() >= millis)
+                    .next()
+                    .map(RecordRanges::idOf);
+        });
+    }
+
+    @NotNull
+    @Override
+    public Mono<RecordId> seekOrdinal(@NotNull Session session, long ordinal) {
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("ordinal must not be negative but was " + ordinal);
+        }
+        return Mono.defer(() -> {
+            final SparseTimeIndex index = index(session);
+            if (index.isFrozen() && ordinal >= index.count()) {
+                return Mono.empty();
+            }
+
+            final int entry = index.floorOfOrdinal(ordinal);
+            if (entry < 0) {
+                return delegate.seekOrdinal(session, ordinal);
+            }
+
+            final long skip = ordinal - (long) entry * index.stride();
+            final Range<RecordId> range = Range.of(Range.Bound.inclusive(index.entry(entry)), Range.Bound.unbounded());
+            return delegate.replay(session, range)
+                    .skip(skip)
+                    .next()
+                    .map(RecordRanges::idOf);
+        });
+    }
+
+    @NotNull
+    private SparseTimeIndex index(@NotNull Session session) {
+        final SparseTimeIndex existing = indexes.get(session);
+        if (existing != null) {
+            return existing;
+        }
+
+        final SparseTimeIndex created = new SparseTimeIndex(stride);
+        final SparseTimeIndex raced = indexes.putIfAbsent(session, created);
+        if (raced != null) {
+            return raced;
+        }
+
+        sessionService.statusOf(session)
+                .flatMap(status -> msgsToIndex(session, status)
+                        .doOnNext(msg -> created.observe(msg.timestamp(), msg.sequence()))
+                        .then(Mono.fromRunnable(created::freeze))
+                        .thenReturn(true))
+                .defaultIfEmpty(false)
+                .subscribe(known -> {
+                    if (!known) {
+                        // unrecognized sessions are retried on the next seek
+                        indexes.remove(session, created);
+                    }
+                }, error -> indexes.remove(session, created));
+        return created;
+    }
+
+    @NotNull
+    private Flux<Msg> msgsToIndex(@NotNull Session session, @NotNull SessionStatus status) {
+        if (status == SessionStatus.COMPLETED) {
+            return delegate.replay(session, Range.unbounded());
+        } else {
+            return delegate.live(session, Range.unbounded());
+        }
+    }
+
+    @NotNull
+    @Override
+    public Mono<Long> count(@NotNull Session session) {
+        return delegate.count(session);
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> live(@NotNull Session session, @NotNull Range<RecordId> range) {
+        return delegate.live(session, range);
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> replay(@NotNull Session session, @NotNull Range<RecordId> range) {
+        return delegate.replay(session, range);
+    }
+
+    @NotNull
+    @Override
+    public Flux<List<Msg>> replayBatched(@NotNull Session session, @NotNull Range<RecordId> range,
+                                         int chunkSize, int prefetch) {
+        return delegate.replayBatched(session, range, chunkSize, prefetch);
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> replayReverse(@NotNull Session session, @NotNull Range<RecordId> range) {
+        return delegate.replayReverse(session, range);
+    }
+
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.index;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.services.RecordId;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A sparse index over the {@link RecordId}s of one {@link org.sireum.hamr.inspector.services.Session}, holding the
+ * id of every stride-th msg in primitive arrays. Entry k is the id of the msg with ordinal k * stride.
+ *
+ * The index grows with {@link #observe(long, long)} while its session is running and is {@link #freeze() frozen}
+ * once the session completes, after which it may be written with {@link #writeTo(DataOutput)}.
+ *
+ * All methods are thread-safe.
+ */
+public final class SparseTimeIndex {
+
+    private static final int MAGIC = 0x53544958; // "STIX"
+    private static final int VERSION = 1;
+
+    private final int stride;
+
+    private long[] timestamps;
+    private long[] sequences;
+    private int entries = 0;
+    private long count = 0L;
+    private boolean frozen = false;
+
+    /**
+     * @param stride the number of msgs between two consecutive index entries.
+     */
+    public SparseTimeIndex(int stride) {
+        if (stride <= 0) {
+            throw new IllegalArgumentException("stride must be positive but was " + stride);
+        }
+        this.stride = stride;
+        this.timestamps = new long[16];
+        this.sequences = new long[16];
+    }
+
+    public int stride() {
+        return stride;
+    }
+
+    /**
+     * Records the next msg of the session. Msgs must be observed in order, starting from the session's first msg.
+     *
+     * @throws IllegalStateException if the index is frozen.
+     */
+    public synchronized void observe(long timestamp, long sequence) {
+        if (frozen) {
+            throw new IllegalStateException("cannot observe msgs on a frozen index");
+        }
+        if (count % stride == 0) {
+            if (entries == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, 2 * entries);
+                sequences = Arrays.copyOf(sequences, 2 * entries);
+            }
+            timestamps[entries] = timestamp;
+            sequences[entries] = sequence;
+            entries++;
+        }
+        count++;
+    }
+
+    /**
+     * Marks the index as complete. Further calls to {@link #observe(long, long)} will fail.
+     */
+    public synchronized void freeze() {
+        if (!frozen) {
+            timestamps = Arrays.copyOf(timestamps, entries);
+            sequences = Arrays.copyOf(sequences, entries);
+            frozen = true;
+        }
+    }
+
+    public synchronized boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * @return the number of msgs observed so far.
+     */
+    public synchronized long count() {
+        return count;
+    }
+
+    /**
+     * @return the number of entries in the index.
+     */
+    public synchronized int entries() {
+        return entries;
+    }
+
+    /**
+     * @return the {@link RecordId} of entry, which is the id of the msg with ordinal entry * {@link #stride()}.
+     */
+    @NotNull
+    public synchronized RecordId entry(int entry) {
+        if (entry < 0 || entry >= entries) {
+            throw new IndexOutOfBoundsException("entry " + entry + " out of bounds for " + entries + " entries");
+        }
+        return RecordId.of(timestamps[entry], sequences[entry]);
+    }
+
+    /**
+     * @return the entry holding the greatest msg ordinal at or below ordinal, or -1 if the index is empty.
+     */
+    public synchronized int floorOfOrdinal(long ordinal) {
+        return (int) Math.min(ordinal / stride, entries - 1L);
+    }
+
+    /**
+     * Binary searches for the last entry whose timestamp is strictly before millis. Every msg with a timestamp at or
+     * after millis lies after this entry, and at most {@link #stride()} msgs separate it from the first such msg
+     * (unless it is the last entry).
+     *
+     * @return the last entry before millis, or -1 if there is none.
+     */
+    public synchronized int floorOfTime(long millis) {
+        int low = 0;
+        int high = entries;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (timestamps[mid] < millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low - 1;
+    }
+
+    /**
+     * Writes a frozen index so that it may be read back by {@link #readFrom(DataInput)}.
+     *
+     * @throws IllegalStateException if the index is not frozen.
+     */
+    public synchronized void writeTo(@NotNull DataOutput out) throws IOException {
+        if (!frozen) {
+            throw new IllegalStateException("only frozen indexes may be written");
+        }
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(stride);
+        out.writeLong(count);
+        out.writeInt(entries);
+        for (int i = 0; i < entries; i++) {
+            out.writeLong(timestamps[i]);
+            out.writeLong(sequences[i]);
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #writeTo(DataOutput)}. The returned index is frozen.
+     *
+     * @throws IOException if the input is not a valid index or could not be read.
+     */
+    @NotNull
+    public static SparseTimeIndex readFrom(@NotNull DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("input is not a sparse time index");
+        }
+        final int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported sparse time index version " + version);
+        }
+        final int stride = in.readInt();
+        final long count = in.readLong();
+        final int entries = in.readInt();
+        if (stride <= 0 || count < 0 || entries < 0 || entries != (count + stride - 1) / stride) {
+            throw new IOException("corrupt sparse time index header");
+        }
+
+        final SparseTimeIndex index = new SparseTimeIndex(stride);
+        index.timestamps = new long[entries];
+        index.sequences = new long[entries];
+        for (int i = 0; i < entries; i++) {
+            index.timestamps[i] = in.readLong();
+            index.sequences[i] = in.readLong();
+        }
+        index.entries = entries;
+        index.count = count;
+        index.frozen = true;
+        return index;
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.index;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An append-only scratch file holding the {@link Postings.Block}s evicted from memory. The file is created on the
+ * first append and deleted when closed.
+ *
+ * Appends are serialized, while reads use positional reads and may run concurrently with each other and with
+ * appends, since written bytes are never overwritten.
+ */
+final class SpillFile implements Closeable {
+
+    @NotNull
+    private final Path directory;
+
+    @Nullable
+    private volatile FileChannel channel = null;
+
+    private long size = 0L;
+
+    private boolean closed = false;
+
+    SpillFile(@NotNull Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Appends data to the file.
+     *
+     * @return the offset data was written at, or -1 if this file has been closed.
+     */
+    synchronized long append(@NotNull byte[] data) throws IOException {
+        if (closed) {
+            return -1L;
+        }
+        FileChannel current = channel;
+        if (current == null) {
+            Files.createDirectories(directory);
+            final Path path = Files.createTempFile(directory, "postings-", ".spill");
+            current = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+            channel = current;
+        }
+        final long offset = size;
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            current.write(buffer, offset + buffer.position());
+        }
+        size += data.length;
+        return offset;
+    }
+
+    /**
+     * @return the length bytes at offset, which must have been written by {@link #append(byte[])}.
+     */
+    @NotNull
+    byte[] read(long offset, int length) throws IOException {
+        final FileChannel current = channel;
+        if (current == null) {
+            throw new IOException("nothing has been spilled");
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (current.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("spill file ends before " + (offset + length));
+            }
+        }
+        return buffer.array();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        final FileChannel current = channel;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.inject;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.common.Injection;
+import org.sireum.hamr.inspector.services.InjectionService;
+import org.sireum.hamr.inspector.services.Session;
+import reactor.core.publisher.Flux;
+
+/**
+ * An {@link InjectionService} which accepts whole streams of (optionally scheduled) {@link Injection}s and reports
+ * the outcome of each.
+ */
+public interface BatchInjectionService extends InjectionService {
+
+    /**
+     * Returns a cold {@link Flux} which, when subscribed, injects every element of injections into session and
+     * emits one {@link InjectionAck} per injection once it has been written (or found not to apply).
+     *
+     * Immediate injections are acknowledged in the order they were submitted. A scheduled injection is acknowledged
+     * after its target has been reached, so it may be acknowledged after immediate injections submitted later.
+     *
+     * @param session a running {@link Session} to inject into.
+     * @param injections the injections to write.
+     * @return a {@link Flux} of acknowledgements which completes after every injection has been acknowledged.
+     */
+    @NotNull
+    Flux<InjectionAck> injectAll(@NotNull Session session, @NotNull Flux<ScheduledInjection> injections);
+
+    /**
+     * Injects a single {@link Injection} immediately, without waiting for its acknowledgement.
+     */
+    @Override
+    default void inject(@NotNull Session session, @NotNull Injection injection) {
+        injectAll(session, Flux.just(ScheduledInjection.now(injection))).subscribe();
+    }
+
+}
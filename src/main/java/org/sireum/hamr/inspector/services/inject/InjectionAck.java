@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.inject;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.services.RecordId;
+
+/**
+ * Acknowledges one {@link ScheduledInjection} of a batch submitted to {@link BatchInjectionService#injectAll}.
+ *
+ * An applied injection carries the {@link RecordId} its msg was assigned in the session's stream, so it can be
+ * located with {@link org.sireum.hamr.inspector.services.MsgService#replay} or correlated with a live stream to
+ * measure injection-to-observation latency against {@link #getSubmittedNanos()}. An injection which was not applied
+ * (because the session is not running, or ended before reaching the injection's target) carries no id.
+ */
+public final class InjectionAck {
+
+    @NotNull
+    private final ScheduledInjection request;
+
+    @Nullable
+    private final RecordId recordId;
+
+    private final long submittedNanos;
+
+    private final long acknowledgedNanos;
+
+    InjectionAck(@NotNull ScheduledInjection request, @Nullable RecordId recordId,
+                 long submittedNanos, long acknowledgedNanos) {
+        this.request = request;
+        this.recordId = recordId;
+        this.submittedNanos = submittedNanos;
+        this.acknowledgedNanos = acknowledgedNanos;
+    }
+
+    @NotNull
+    public ScheduledInjection getRequest() {
+        return request;
+    }
+
+    /**
+     * @return the id assigned to the injected msg, or null if the injection was not applied.
+     */
+    @Nullable
+    public RecordId getRecordId() {
+        return recordId;
+    }
+
+    public boolean isApplied() {
+        return recordId != null;
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} at which the injection became ready to be written (after its target was
+     *  reached, for scheduled injections).
+     */
+    public long getSubmittedNanos() {
+        return submittedNanos;
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} at which the backend acknowledged the write.
+     */
+    public long getAcknowledgedNanos() {
+        return acknowledgedNanos;
+    }
+
+    /**
+     * @return the time spent between becoming ready and being acknowledged, including time spent waiting to be
+     *  batched.
+     */
+    public long getLatencyNanos() {
+        return acknowledgedNanos - submittedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "InjectionAck{" +
+                "request=" + request +
+                ", recordId=" + recordId +
+                ", latencyNanos=" + getLatencyNanos() +
+                '}';
+    }
+}
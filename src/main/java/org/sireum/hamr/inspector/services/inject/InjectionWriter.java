@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.inject;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.common.Injection;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.Session;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Writes a batch of {@link Injection}s to a backend in a single round trip (for example one pipelined or
+ * transactional request). Supplied by the backend to {@link PipelinedInjectionService}.
+ */
+@FunctionalInterface
+public interface InjectionWriter {
+
+    /**
+     * Returns a cold {@link Mono} which writes injections into session, in order, and emits the {@link RecordId}
+     * assigned to each.
+     *
+     * @param session the {@link Session} to inject into.
+     * @param injections the non-empty batch of {@link Injection}s to write.
+     * @return a {@link Mono} of the assigned ids, one per injection in the same order, or an empty list if session
+     *  is not running and nothing was written.
+     */
+    @NotNull
+    Mono<List<RecordId>> write(@NotNull Session session, @NotNull List<Injection> injections);
+
+}
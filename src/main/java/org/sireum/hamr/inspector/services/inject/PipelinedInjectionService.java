@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.inject;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.common.Injection;
+import org.sireum.hamr.inspector.services.MsgService;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.Session;
+import org.springframework.data.domain.Range;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A {@link BatchInjectionService} which coalesces injections into batches and pipelines the batches to the backend
+ * through an {@link InjectionWriter}.
+ *
+ * Ready injections are grouped into batches of up to maxBatchSize, and a batch is cut early once its first
+ * injection has waited maxDelay, so a slow trickle of injections is never held back for long. Up to maxInFlight
+ * batches are written concurrently while acknowledgements are still emitted in batch order.
+ *
+ * Scheduled injections wait on {@link MsgService#live} for their target to be reached. Each waiting injection holds a
+ * live subscription, so campaigns with many scheduled injections should pass a
+ * {@link org.sireum.hamr.inspector.services.live.LiveTailHub} as the {@link MsgService} to share one upstream
+ * subscription between them.
+ */
+public final class PipelinedInjectionService implements BatchInjectionService {
+
+    @NotNull
+    private final InjectionWriter writer;
+
+    @NotNull
+    private final MsgService msgService;
+
+    private final int maxBatchSize;
+
+    @NotNull
+    private final Duration maxDelay;
+
+    private final int maxInFlight;
+
+    /**
+     * @param writer writes each batch to the backend.
+     * @param msgService observes sessions' streams to release scheduled injections.
+     * @param maxBatchSize the maximum number of injections per write. Must be positive.
+     * @param maxDelay the maximum time a ready injection waits for its batch to fill. Must be positive.
+     * @param maxInFlight the maximum number of batches being written at once. Must be positive.
+     */
+    public PipelinedInjectionService(@NotNull InjectionWriter writer, @NotNull MsgService msgService,
+                                     int maxBatchSize, @NotNull Duration maxDelay, int maxInFlight) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize must be positive but was " + maxBatchSize);
+        }
+        if (maxDelay.isNegative() || maxDelay.isZero()) {
+            throw new IllegalArgumentException("maxDelay must be positive but was " + maxDelay);
+        }
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive but was " + maxInFlight);
+        }
+        this.writer = writer;
+        this.msgService = msgService;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelay = maxDelay;
+        this.maxInFlight = maxInFlight;
+    }
+
+    @NotNull
+    @Override
+    public Flux<InjectionAck> injectAll(@NotNull Session session, @NotNull Flux<ScheduledInjection> injections) {
+        return injections
+                // immediate injections complete synchronously, so they keep their order through the flatMap
+                .flatMap(request -> request.isImmediate()
+                        ? Mono.just(new Pending(request, System.nanoTime(), true))
+                        : awaitTarget(session, request), Integer.MAX_VALUE)
+                .bufferTimeout(maxBatchSize, maxDelay)
+                // bufferTimeout cannot hold back a batch cut by its timer, so queue batches awaiting a write slot
+                .onBackpressureBuffer()
+                .flatMapSequential(batch -> write(session, batch), maxInFlight)
+                .flatMapIterable(acks -> acks);
+    }
+
+    /**
+     * @return a {@link Mono} of request, ready to be written, once session's stream has reached its target. If the
+     *  stream ends first, request is marked as not applicable.
+     */
+    @NotNull
+    private Mono<Pending> awaitTarget(@NotNull Session session, @NotNull ScheduledInjection request) {
+        final RecordId target = Objects.requireNonNull(request.getTarget());
+        return msgService.live(session, Range.of(Range.Bound.inclusive(target), Range.Bound.unbounded()))
+                .next()
+                .map(unused -> new Pending(request, System.nanoTime(), true))
+                .switchIfEmpty(Mono.fromSupplier(() -> new Pending(request, System.nanoTime(), false)));
+    }
+
+    /**
+     * Writes the applicable injections of batch in one round trip and acknowledges every injection of batch.
+     */
+    @NotNull
+    private Mono<List<InjectionAck>> write(@NotNull Session session, @NotNull List<Pending> batch) {
+        final List<Injection> injections = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            if (pending.applicable) {
+                injections.add(pending.request.getInjection());
+            }
+        }
+        final Mono<List<RecordId>> ids = injections.isEmpty()
+                ? Mono.just(List.of())
+                : writer.write(session, injections);
+        return ids.map(assigned -> {
+            if (!assigned.isEmpty() && assigned.size() != injections.size()) {
+                throw new IllegalStateException("writer assigned " + assigned.size() + " ids to a batch of "
+                        + injections.size() + " injections");
+            }
+            final long now = System.nanoTime();
+            final List<InjectionAck> acks = new ArrayList<>(batch.size());
+            int next = 0;
+            for (Pending pending : batch) {
+                final RecordId id = pending.applicable && !assigned.isEmpty() ? assigned.get(next++) : null;
+                acks.add(new InjectionAck(pending.request, id, pending.readyNanos, now));
+            }
+            return acks;
+        });
+    }
+
+    /**
+     * An injection which is ready to be batched, or which can no longer be applied.
+     */
+    private static final class Pending {
+
+        @NotNull
+        private final ScheduledInjection request;
+
+        private final long readyNanos;
+
+        private final boolean applicable;
+
+        private Pending(@NotNull ScheduledInjection request, long readyNanos, boolean applicable) {
+            this.request = request;
+            this.readyNanos = readyNanos;
+            this.applicable = applicable;
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.inject;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.common.Injection;
+import org.sireum.hamr.inspector.services.RecordId;
+
+/**
+ * An {@link Injection} together with the point in its {@link org.sireum.hamr.inspector.services.Session}'s stream at
+ * which it should be injected.
+ *
+ * An immediate injection is written as soon as possible. A scheduled injection is held back until the session's
+ * stream reaches its target, that is, until the first msg whose {@link RecordId} is at or after the target has been
+ * observed. If the stream has already passed the target the injection is written immediately.
+ */
+public final class ScheduledInjection {
+
+    @NotNull
+    private final Injection injection;
+
+    @Nullable
+    private final RecordId target;
+
+    private ScheduledInjection(@NotNull Injection injection, @Nullable RecordId target) {
+        this.injection = injection;
+        this.target = target;
+    }
+
+    /**
+     * @return an injection which is written as soon as possible.
+     */
+    @NotNull
+    public static ScheduledInjection now(@NotNull Injection injection) {
+        return new ScheduledInjection(injection, null);
+    }
+
+    /**
+     * @return an injection which is written once the stream reaches the msg with id target (or the first after it).
+     */
+    @NotNull
+    public static ScheduledInjection atRecord(@NotNull Injection injection, @NotNull RecordId target) {
+        return new ScheduledInjection(injection, target);
+    }
+
+    /**
+     * @return an injection which is written once the stream reaches the first msg with a timestamp at or after millis.
+     */
+    @NotNull
+    public static ScheduledInjection atTime(@NotNull Injection injection, long millis) {
+        return new ScheduledInjection(injection, RecordId.of(millis, Long.MIN_VALUE));
+    }
+
+    @NotNull
+    public Injection getInjection() {
+        return injection;
+    }
+
+    /**
+     * @return the {@link RecordId} the stream must reach before this injection is written, or null if it is
+     *  immediate.
+     */
+    @Nullable
+    public RecordId getTarget() {
+        return target;
+    }
+
+    public boolean isImmediate() {
+        return target == null;
+    }
+
+    @Override
+    public String toString() {
+        return "ScheduledInjection{" +
+                "injection=" + injection +
+                ", target=" + target +
+                '}';
+    }
+}
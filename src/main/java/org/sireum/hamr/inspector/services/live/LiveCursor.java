@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.live;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.MsgService;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.RecordRanges;
+import org.sireum.hamr.inspector.services.Session;
+import org.springframework.data.domain.Range;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A resumable position in the live stream of one {@link Session}, created by {@link ResumableLive}.
+ *
+ * Each subscription to {@link #msgs()} follows the session from right after the last acknowledged id. If the
+ * backend fails, the subscription re-subscribes after the last msg it delivered (so it neither skips nor repeats a
+ * msg) with bounded exponential backoff, and only fails once its retries run out without a msg arriving in between.
+ * A consumer which reconnects (with {@link #msgs()} or with {@link ResumableLive#resume(ResumeToken)} of
+ * {@link #token()}) receives again every msg it did not {@link #ack(RecordId) acknowledge}, and nothing before. Every
+ * (re)subscription asks the backend only for the msgs after its position, so catching up costs time proportional to
+ * the number of msgs missed rather than the length of the session.
+ *
+ * At most one subscription to {@link #msgs()} may be active at a time.
+ */
+public final class LiveCursor {
+
+    @NotNull
+    private final MsgService msgService;
+
+    @NotNull
+    private final Session session;
+
+    @NotNull
+    private final Retry retry;
+
+    // the last acknowledged id, or null if nothing has been acknowledged yet
+    private final AtomicReference<RecordId> acked;
+
+    // the highest id delivered by any subscription (or acknowledged), or null if there is none
+    private final AtomicReference<RecordId> delivered;
+
+    private final AtomicBoolean active = new AtomicBoolean(false);
+
+    LiveCursor(@NotNull MsgService msgService, @NotNull Session session, @Nullable RecordId acked,
+               @NotNull Retry retry) {
+        this.msgService = msgService;
+        this.session = session;
+        this.retry = retry;
+        this.acked = new AtomicReference<>(acked);
+        this.delivered = new AtomicReference<>(acked);
+    }
+
+    @NotNull
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * Returns a cold {@link Flux} of the msgs of the session after the last acknowledged id, which runs until the
+     * session completes or its retries are exhausted.
+     *
+     * @throws IllegalStateException (through the {@link Flux}) if another subscription is active.
+     */
+    @NotNull
+    public Flux<Msg> msgs() {
+        return Flux.defer(() -> {
+            if (!active.compareAndSet(false, true)) {
+                return Flux.error(new IllegalStateException("cursor of " + session + " is already subscribed"));
+            }
+            // the last id delivered by this subscription, which is where a retry resumes
+            final AtomicReference<RecordId> last = new AtomicReference<>(acked.get());
+            return Flux.defer(() -> {
+                        final RecordId position = last.get();
+                        final Range<RecordId> range = position == null
+                                ? Range.unbounded()
+                                : RecordRanges.after(Range.unbounded(), position);
+                        return msgService.live(session, range)
+                                .filter(msg -> position == null || RecordRanges.idOf(msg).compareTo(position) > 0)
+                                .doOnNext(msg -> {
+                                    final RecordId id = RecordRanges.idOf(msg);
+                                    last.set(id);
+                                    delivered.accumulateAndGet(id, LiveCursor::max);
+                                });
+                    })
+                    .retryWhen(retry)
+                    .doFinally(unused -> active.set(false));
+        });
+    }
+
+    /**
+     * Acknowledges every msg up to and including id, so that reconnecting resumes right after it. Acknowledging an
+     * id at or before the last acknowledged id has no effect, and any id delivered by an earlier subscription may still
+     * be acknowledged.
+     *
+     * @throws IllegalArgumentException if id is after the last msg ever delivered.
+     */
+    public void ack(@NotNull RecordId id) {
+        final RecordId current = acked.get();
+        if (current != null && id.compareTo(current) <= 0) {
+            return;
+        }
+        final RecordId last = delivered.get();
+        if (last == null || id.compareTo(last) > 0) {
+            throw new IllegalArgumentException("cannot acknowledge " + id + " which has not been delivered yet");
+        }
+        acked.accumulateAndGet(id, LiveCursor::max);
+    }
+
+    /**
+     * Acknowledges every msg up to and including msg.
+     */
+    public void ack(@NotNull Msg msg) {
+        ack(RecordRanges.idOf(msg));
+    }
+
+    /**
+     * @return a token of the last acknowledged position.
+     */
+    @NotNull
+    public ResumeToken token() {
+        return new ResumeToken(session, acked.get());
+    }
+
+    @NotNull
+    private static RecordId max(@Nullable RecordId current, @NotNull RecordId next) {
+        return current == null || next.compareTo(current) > 0 ? next : current;
+    }
+
+}
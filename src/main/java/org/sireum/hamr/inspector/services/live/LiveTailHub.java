@@ -0,0 +1,529 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.live;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.MsgService;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.RecordRanges;
+import org.sireum.hamr.inspector.services.Session;
+import org.springframework.data.domain.Range;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link MsgService} decorator which shares one upstream {@link MsgService#live(Session, Range)} subscription
+ * between every live subscriber of a {@link Session}.
+ *
+ * Each {@link Session} with at least one live subscriber owns a bounded ring of its most recent {@link Msg}s and
+ * every subscriber reads the ring through its own cursor, only as fast as it requests. A subscriber whose left-bound
+ * is still covered by the ring is served from memory. Otherwise the missing prefix is fetched with
+ * {@link MsgService#replay(Session, Range)} and the subscriber then continues from the oldest msg in the ring, so the
+ * hand-off from history to the live tail has no gaps or duplicates.
+ *
+ * The upstream subscription is cancelled once the last subscriber of a {@link Session} leaves. All other methods
+ * are passed directly to the delegate.
+ */
+public final class LiveTailHub implements MsgService {
+
+    @NotNull
+    private final MsgService delegate;
+
+    private final int ringCapacity;
+
+    @NotNull
+    private final OverflowPolicy defaultPolicy;
+
+    private final int bufferLimit;
+
+    private final ConcurrentMap<Session, SessionTail> tails = new ConcurrentHashMap<>();
+
+    private final AtomicLong subscriberIds = new AtomicLong();
+
+    /**
+     * @param delegate the {@link MsgService} to share.
+     * @param ringCapacity the number of recent {@link Msg}s kept in memory per {@link Session}.
+     * @param defaultPolicy the {@link OverflowPolicy} used by {@link #live(Session, Range)}.
+     * @param bufferLimit the maximum number of msgs buffered per subscriber under {@link OverflowPolicy#BUFFER}.
+     */
+    public LiveTailHub(@NotNull MsgService delegate, int ringCapacity, @NotNull OverflowPolicy defaultPolicy,
+                       int bufferLimit) {
+        if (ringCapacity <= 0) {
+            throw new IllegalArgumentException("ringCapacity must be positive but was " + ringCapacity);
+        }
+        if (bufferLimit < 0) {
+            throw new IllegalArgumentException("bufferLimit must not be negative but was " + bufferLimit);
+        }
+        this.delegate = delegate;
+        this.ringCapacity = ringCapacity;
+        this.defaultPolicy = defaultPolicy;
+        this.bufferLimit = bufferLimit;
+    }
+
+    @NotNull
+    @Override
+    public Mono<Long> count(@NotNull Session session) {
+        return delegate.count(session);
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> live(@NotNull Session session, @NotNull Range<RecordId> range) {
+        return live(session, range, defaultPolicy);
+    }
+
+    /**
+     * Same as {@link #live(Session, Range)}, but with an explicit {@link OverflowPolicy} for this subscriber.
+     *
+     * @param session the {@link Session} whose {@link Msg}s will be passed by the {@link Flux}
+     * @param range the range of {@link RecordId}s to follow, as in {@link MsgService#live(Session, Range)}.
+     * @param policy what to do if this subscriber falls behind the ring.
+     * @return a {@link Flux} of {@link Msg}s served from the shared live tail.
+     */
+    @NotNull
+    public Flux<Msg> live(@NotNull Session session, @NotNull Range<RecordId> range, @NotNull OverflowPolicy policy) {
+        return Flux.defer(() -> {
+            final Cursor cursor = attach(session, range, policy);
+            final Flux<Msg> history = cursor.catchUp == null ? Flux.empty() : delegate.replay(session, cursor.catchUp);
+            return history
+                    .concatWith(Flux.create(cursor::start))
+                    .takeWhile(msg -> RecordRanges.isBelowUpperBound(range, RecordRanges.idOf(msg)))
+                    .takeUntil(msg -> isUpperBound(range, msg))
+                    .doFinally(unused -> cursor.detach());
+        });
+    }
+
+    /**
+     * Returns a cold {@link Flux} with a {@link SubscriberLag} for each current live subscriber of session.
+     *
+     * @param session the {@link Session} whose subscribers will be reported.
+     * @return a {@link Flux} of lag snapshots which completes after the last subscriber.
+     */
+    @NotNull
+    public Flux<SubscriberLag> lag(@NotNull Session session) {
+        return Flux.defer(() -> {
+            final SessionTail tail = tails.get(session);
+            return tail == null ? Flux.empty() : Flux.fromIterable(tail.lag());
+        });
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> replay(@NotNull Session session, @NotNull Range<RecordId> range) {
+        return delegate.replay(session, range);
+    }
+
+    @NotNull
+    @Override
+    public Flux<List<Msg>> replayBatched(@NotNull Session session, @NotNull Range<RecordId> range,
+                                         int chunkSize, int prefetch) {
+        return delegate.replayBatched(session, range, chunkSize, prefetch);
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> replayReverse(@NotNull Session session, @NotNull Range<RecordId> range) {
+        return delegate.replayReverse(session, range);
+    }
+
+    @NotNull
+    @Override
+    public Mono<RecordId> seekTime(@NotNull Session session, long millis) {
+        return delegate.seekTime(session, millis);
+    }
+
+    @NotNull
+    @Override
+    public Mono<RecordId> seekOrdinal(@NotNull Session session, long ordinal) {
+        return delegate.seekOrdinal(session, ordinal);
+    }
+
+    @NotNull
+    private Cursor attach(@NotNull Session session, @NotNull Range<RecordId> range, @NotNull OverflowPolicy policy) {
+        while (true) {
+            final SessionTail tail = tails.computeIfAbsent(session, s -> new SessionTail(s, range.getLowerBound()));
+            final Cursor cursor = tail.attach(range, policy);
+            if (cursor != null) {
+                return cursor;
+            }
+            // the tail was closed (or failed) between lookup and attach, so start a fresh one
+            tails.remove(session, tail);
+        }
+    }
+
+    private static boolean isUpperBound(@NotNull Range<RecordId> range, @NotNull Msg msg) {
+        final Range.Bound<RecordId> upper = range.getUpperBound();
+        return upper.isBounded() && upper.isInclusive()
+                && upper.getValue().orElseThrow().equals(RecordRanges.idOf(msg));
+    }
+
+    /**
+     * @return true if every msg not excluded by lower is also not excluded by coverage.
+     */
+    private static boolean covers(@NotNull Range.Bound<RecordId> coverage, @NotNull Range.Bound<RecordId> lower) {
+        if (!coverage.isBounded()) {
+            return true;
+        }
+        if (!lower.isBounded()) {
+            return false;
+        }
+        final int compare = lower.getValue().orElseThrow().compareTo(coverage.getValue().orElseThrow());
+        if (compare != 0) {
+            return compare > 0;
+        }
+        return coverage.isInclusive() || !lower.isInclusive();
+    }
+
+    /**
+     * The shared upstream, ring and cursors of a single {@link Session}. All mutable state is guarded by this.
+     */
+    private final class SessionTail {
+
+        @NotNull
+        private final Session session;
+
+        @NotNull
+        private final Range.Bound<RecordId> upstreamStart;
+
+        private final Msg[] ring = new Msg[ringCapacity];
+
+        private final List<Cursor> cursors = new CopyOnWriteArrayList<>();
+
+        private final AtomicBoolean connected = new AtomicBoolean();
+
+        private final Disposable.Swap upstream = Disposables.swap();
+
+        // the ring holds the msgs with absolute indices [max(0, head - ringCapacity), head)
+        private long head = 0L;
+
+        // every msg not excluded by this bound has been (or will be) received by the ring
+        @NotNull
+        private Range.Bound<RecordId> coverageStart;
+
+        private long newestTimestamp = 0L;
+        private boolean completed = false;
+        private boolean closed = false;
+
+        @Nullable
+        private Throwable error = null;
+
+        private SessionTail(@NotNull Session session, @NotNull Range.Bound<RecordId> upstreamStart) {
+            this.session = session;
+            this.upstreamStart = upstreamStart;
+            this.coverageStart = upstreamStart;
+        }
+
+        private void connect() {
+            if (connected.compareAndSet(false, true)) {
+                upstream.update(delegate.live(session, Range.of(upstreamStart, Range.Bound.unbounded()))
+                        .subscribe(this::publish, this::fail, this::finish));
+            }
+        }
+
+        @Nullable
+        private synchronized Cursor attach(@NotNull Range<RecordId> range, @NotNull OverflowPolicy policy) {
+            if (closed || error != null) {
+                return null;
+            }
+
+            final Range.Bound<RecordId> lower = range.getLowerBound();
+            final Cursor cursor = new Cursor(this, subscriberIds.incrementAndGet(), policy,
+                    Range.of(lower, Range.Bound.unbounded()));
+            final long oldest = oldest();
+            if (covers(coverageStart, lower)) {
+                cursor.next = firstIndexNotBelow(Range.of(lower, Range.Bound.unbounded()), oldest);
+            } else {
+                final RecordId coverageValue = coverageStart.getValue().orElseThrow();
+                cursor.next = oldest;
+                cursor.aboveLowerBound = true;
+                cursor.catchUp = Range.of(lower, coverageStart.isInclusive()
+                        ? Range.Bound.exclusive(coverageValue)
+                        : Range.Bound.inclusive(coverageValue));
+            }
+            cursors.add(cursor);
+            return cursor;
+        }
+
+        private void detach(@NotNull Cursor cursor) {
+            final boolean last;
+            synchronized (this) {
+                last = cursors.remove(cursor) && cursors.isEmpty();
+                if (last) {
+                    closed = true;
+                }
+            }
+            if (last) {
+                tails.remove(session, this);
+                upstream.dispose();
+            }
+        }
+
+        private void publish(@NotNull Msg msg) {
+            synchronized (this) {
+                if (head >= ringCapacity) {
+                    final long evicted = head - ringCapacity;
+                    final Msg evictedMsg = ring[(int) (evicted % ringCapacity)];
+                    for (Cursor cursor : cursors) {
+                        if (cursor.next == evicted && !cursor.failed) {
+                            cursor.overrun(evictedMsg);
+                        }
+                    }
+                    coverageStart = Range.Bound.exclusive(RecordRanges.idOf(evictedMsg));
+                }
+                ring[(int) (head % ringCapacity)] = msg;
+                head++;
+                newestTimestamp = msg.timestamp();
+            }
+            cursors.forEach(Cursor::drain);
+        }
+
+        private void fail(@NotNull Throwable throwable) {
+            synchronized (this) {
+                error = throwable;
+            }
+            tails.remove(session, this);
+            cursors.forEach(Cursor::drain);
+        }
+
+        private void finish() {
+            synchronized (this) {
+                completed = true;
+            }
+            cursors.forEach(Cursor::drain);
+        }
+
+        private long oldest() {
+            return Math.max(0L, head - ringCapacity);
+        }
+
+        private long firstIndexNotBelow(@NotNull Range<RecordId> range, long from) {
+            long low = from;
+            long high = head;
+            while (low < high) {
+                final long mid = (low + high) >>> 1;
+                if (RecordRanges.isAboveLowerBound(range, RecordRanges.idOf(ring[(int) (mid % ringCapacity)]))) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+
+        @NotNull
+        private synchronized List<SubscriberLag> lag() {
+            final long now = System.currentTimeMillis();
+            final List<SubscriberLag> result = new ArrayList<>(cursors.size());
+            for (Cursor cursor : cursors) {
+                final long delivered = cursor.delivered.get();
+                final long last = cursor.lastTimestamp;
+                result.add(new SubscriberLag(session, cursor.id,
+                        Math.max(0L, head - cursor.next) + cursor.overflow.size(),
+                        delivered == 0L ? 0L : Math.max(0L, newestTimestamp - last),
+                        delivered == 0L ? 0L : Math.max(0L, now - last),
+                        delivered, cursor.dropped, cursor.overflow.size()));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * One subscriber's position in a {@link SessionTail}. Position fields are guarded by the tail's lock.
+     */
+    private final class Cursor {
+
+        @NotNull
+        private final SessionTail tail;
+
+        private final long id;
+
+        @NotNull
+        private final OverflowPolicy policy;
+
+        // the left-bound of the subscriber's range, without its right-bound
+        @NotNull
+        private final Range<RecordId> lower;
+
+        private final ArrayDeque<Msg> overflow = new ArrayDeque<>();
+
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private final AtomicLong delivered = new AtomicLong();
+
+        // absolute ring index of the next msg to deliver
+        private long next;
+        private long dropped = 0L;
+        private boolean failed = false;
+
+        // the ring may not reach the left-bound yet when a cursor attaches while the upstream is catching up
+        private boolean aboveLowerBound = false;
+
+        // the prefix (if any) that must be replayed before reading from the ring
+        @Nullable
+        private Range<RecordId> catchUp = null;
+
+        @Nullable
+        private volatile FluxSink<Msg> sink = null;
+
+        private volatile long lastTimestamp = 0L;
+
+        private Cursor(@NotNull SessionTail tail, long id, @NotNull OverflowPolicy policy,
+                       @NotNull Range<RecordId> lower) {
+            this.tail = tail;
+            this.id = id;
+            this.policy = policy;
+            this.lower = lower;
+        }
+
+        private void start(@NotNull FluxSink<Msg> sink) {
+            sink.onRequest(unused -> drain());
+            sink.onDispose(this::detach);
+            this.sink = sink;
+            drain();
+            // connecting only once a sink exists keeps a fast upstream from overrunning the very first subscriber
+            tail.connect();
+        }
+
+        private void detach() {
+            tail.detach(this);
+        }
+
+        /**
+         * Called with the tail's lock held when the msg at {@link #next} is about to be evicted.
+         */
+        private void overrun(@NotNull Msg evicted) {
+            switch (policy) {
+                case DROP:
+                    next++;
+                    dropped++;
+                    break;
+                case BUFFER:
+                    if (overflow.size() < bufferLimit) {
+                        overflow.addLast(evicted);
+                        next++;
+                    } else {
+                        failed = true;
+                    }
+                    break;
+                case DISCONNECT:
+                    failed = true;
+                    break;
+            }
+        }
+
+        @Nullable
+        private Msg poll() {
+            synchronized (tail) {
+                if (failed) {
+                    return null;
+                }
+                Msg msg;
+                do {
+                    msg = overflow.pollFirst();
+                    if (msg == null && next < tail.head) {
+                        msg = tail.ring[(int) (next++ % ringCapacity)];
+                    }
+                } while (msg != null && !passesLowerBound(msg));
+                return msg;
+            }
+        }
+
+        /**
+         * Called with the tail's lock held.
+         */
+        private boolean passesLowerBound(@NotNull Msg msg) {
+            if (!aboveLowerBound) {
+                aboveLowerBound = RecordRanges.isAboveLowerBound(lower, RecordRanges.idOf(msg));
+            }
+            return aboveLowerBound;
+        }
+
+        private void drain() {
+            final FluxSink<Msg> sink = this.sink;
+            if (sink == null || wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                while (!sink.isCancelled() && sink.requestedFromDownstream() > 0) {
+                    final Msg msg = poll();
+                    if (msg == null) {
+                        break;
+                    }
+                    lastTimestamp = msg.timestamp();
+                    delivered.incrementAndGet();
+                    sink.next(msg);
+                }
+                if (terminate(sink)) {
+                    return;
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private boolean terminate(@NotNull FluxSink<Msg> sink) {
+            final boolean failed;
+            final boolean caughtUp;
+            final boolean completed;
+            final Throwable error;
+            synchronized (tail) {
+                failed = this.failed;
+                caughtUp = overflow.isEmpty() && next >= tail.head;
+                completed = tail.completed;
+                error = tail.error;
+            }
+            if (failed) {
+                sink.error(Exceptions.failWithOverflow("subscriber " + id + " fell more than " + ringCapacity
+                        + " msgs behind the live tail of session " + tail.session));
+                return true;
+            } else if (caughtUp && error != null) {
+                sink.error(error);
+                return true;
+            } else if (caughtUp && completed) {
+                sink.complete();
+                return true;
+            }
+            return false;
+        }
+    }
+
+}
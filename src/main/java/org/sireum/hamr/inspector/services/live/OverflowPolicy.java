@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.live;
+
+/**
+ * Decides what a {@link LiveTailHub} does with a subscriber that falls so far behind the live tail that the
+ * {@link org.sireum.hamr.inspector.common.Msg} it needs next is about to be evicted from the hub's ring.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Skip the evicted msgs. The subscriber continues from the oldest msg still in the ring and the skipped msgs are
+     * counted in {@link SubscriberLag#getDropped()}.
+     */
+    DROP,
+
+    /**
+     * Copy the evicted msgs into a bounded per-subscriber buffer. A subscriber which overflows its buffer is
+     * disconnected as in {@link #DISCONNECT}.
+     */
+    BUFFER,
+
+    /**
+     * Terminate the subscriber with an overflow error
+     * (see {@link reactor.core.Exceptions#isOverflow(Throwable)}).
+     */
+    DISCONNECT
+
+}
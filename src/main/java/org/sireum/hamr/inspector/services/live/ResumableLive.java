@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.live;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.services.MsgService;
+import org.sireum.hamr.inspector.services.Session;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+
+/**
+ * Opens {@link LiveCursor}s over the {@link MsgService#live(Session, org.springframework.data.domain.Range)} stream
+ * of a {@link MsgService}.
+ *
+ * Cursors re-subscribe to the {@link MsgService} after a failure, waiting an exponentially growing, jittered delay
+ * between minBackoff and maxBackoff. The delay and the retry count start over whenever a msg arrives, so only a
+ * backend which stays down for maxRetries attempts in a row fails the cursor. Wrapping the {@link MsgService} in a
+ * {@link LiveTailHub} lets reconnecting cursors catch up from its in-memory ring.
+ */
+public final class ResumableLive {
+
+    @NotNull
+    private final MsgService msgService;
+
+    @NotNull
+    private final Retry retry;
+
+    /**
+     * @param msgService the {@link MsgService} to follow.
+     * @param minBackoff the delay before the first retry.
+     * @param maxBackoff the longest delay between retries.
+     * @param maxRetries the number of consecutive failed attempts after which a cursor fails.
+     */
+    public ResumableLive(@NotNull MsgService msgService, @NotNull Duration minBackoff, @NotNull Duration maxBackoff,
+                         long maxRetries) {
+        if (minBackoff.isNegative()) {
+            throw new IllegalArgumentException("minBackoff must not be negative but was " + minBackoff);
+        }
+        if (maxBackoff.compareTo(minBackoff) < 0) {
+            throw new IllegalArgumentException("maxBackoff " + maxBackoff + " is below minBackoff " + minBackoff);
+        }
+        if (maxRetries < 0L) {
+            throw new IllegalArgumentException("maxRetries must not be negative but was " + maxRetries);
+        }
+        this.msgService = msgService;
+        this.retry = Retry.backoff(maxRetries, minBackoff).maxBackoff(maxBackoff).transientErrors(true);
+    }
+
+    /**
+     * @return a cursor at the start of session.
+     */
+    @NotNull
+    public LiveCursor open(@NotNull Session session) {
+        return new LiveCursor(msgService, session, null, retry);
+    }
+
+    /**
+     * @return a cursor positioned right after the last id acknowledged before token was taken.
+     */
+    @NotNull
+    public LiveCursor resume(@NotNull ResumeToken token) {
+        return new LiveCursor(msgService, token.getSession(), token.acked(), retry);
+    }
+
+}
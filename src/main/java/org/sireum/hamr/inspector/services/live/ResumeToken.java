@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.live;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.Session;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * An immutable, opaque position in the live stream of a {@link Session}: the last {@link RecordId} acknowledged on a
+ * {@link LiveCursor}, or the start of the session if nothing was acknowledged yet.
+ *
+ * Tokens survive restarts and travel between processes as the url-safe strings of {@link #encode()}, which
+ * {@link #decode(String)} reads back. {@link ResumableLive#resume(ResumeToken)} continues right after the position.
+ */
+public final class ResumeToken {
+
+    private static final byte VERSION = 1;
+
+    private static final byte HAS_POSITION = 1;
+
+    @NotNull
+    private final Session session;
+
+    // null at the start of the session
+    @Nullable
+    private final RecordId acked;
+
+    ResumeToken(@NotNull Session session, @Nullable RecordId acked) {
+        this.session = session;
+        this.acked = acked;
+    }
+
+    @NotNull
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * @return the last acknowledged id, or null if the position is the start of the session.
+     */
+    @Nullable
+    RecordId acked() {
+        return acked;
+    }
+
+    /**
+     * @return this token as a url-safe string.
+     */
+    @NotNull
+    public String encode() {
+        final byte[] name = session.getName().getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer buffer = ByteBuffer.allocate(2 + (acked != null ? RecordId.BYTES : 0) + name.length);
+        buffer.put(VERSION);
+        buffer.put(acked != null ? HAS_POSITION : 0);
+        if (acked != null) {
+            acked.writeTo(buffer);
+        }
+        buffer.put(name);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * Reads a token written by {@link #encode()}.
+     *
+     * @throws IllegalArgumentException if text is not a valid token.
+     */
+    @NotNull
+    public static ResumeToken decode(@NotNull String text) {
+        try {
+            final ByteBuffer buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(text));
+            final byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("unsupported resume token version " + version);
+            }
+            final byte flags = buffer.get();
+            if (flags != 0 && flags != HAS_POSITION) {
+                throw new IllegalArgumentException("corrupt resume token flags " + flags);
+            }
+            final RecordId acked = flags == HAS_POSITION ? RecordId.readFrom(buffer) : null;
+            final byte[] name = new byte[buffer.remaining()];
+            buffer.get(name);
+            return new ResumeToken(new Session(new String(name, StandardCharsets.UTF_8)), acked);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("resume token is truncated", e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final ResumeToken that = (ResumeToken) o;
+        return session.equals(that.session) && Objects.equals(acked, that.acked);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(session, acked);
+    }
+
+    @Override
+    public String toString() {
+        return "ResumeToken{" +
+                "session=" + session +
+                ", acked=" + acked +
+                '}';
+    }
+}
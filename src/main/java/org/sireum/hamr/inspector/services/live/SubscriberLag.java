@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.live;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.services.Session;
+
+/**
+ * An immutable snapshot of how far one {@link LiveTailHub} subscriber trails the live tail of its {@link Session}.
+ */
+public final class SubscriberLag {
+
+    @NotNull
+    private final Session session;
+
+    private final long subscriberId;
+    private final long lagMsgs;
+    private final long lagMillis;
+    private final long wallClockLagMillis;
+    private final long delivered;
+    private final long dropped;
+    private final int buffered;
+
+    SubscriberLag(@NotNull Session session, long subscriberId, long lagMsgs, long lagMillis, long wallClockLagMillis,
+                  long delivered, long dropped, int buffered) {
+        this.session = session;
+        this.subscriberId = subscriberId;
+        this.lagMsgs = lagMsgs;
+        this.lagMillis = lagMillis;
+        this.wallClockLagMillis = wallClockLagMillis;
+        this.delivered = delivered;
+        this.dropped = dropped;
+        this.buffered = buffered;
+    }
+
+    @NotNull
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * @return an id unique to the subscriber within its hub.
+     */
+    public long getSubscriberId() {
+        return subscriberId;
+    }
+
+    /**
+     * @return the number of msgs received by the hub that the subscriber has not yet been delivered.
+     */
+    public long getLagMsgs() {
+        return lagMsgs;
+    }
+
+    /**
+     * @return the timestamp of the newest msg received by the hub minus the timestamp of the last msg delivered to
+     *  the subscriber, in {@link org.sireum.hamr.inspector.services.RecordId} time.
+     */
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    /**
+     * @return the current wall-clock time minus the timestamp of the last msg delivered to the subscriber.
+     */
+    public long getWallClockLagMillis() {
+        return wallClockLagMillis;
+    }
+
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * @return the number of msgs skipped under {@link OverflowPolicy#DROP}.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return the number of msgs currently held in the subscriber's {@link OverflowPolicy#BUFFER} buffer.
+     */
+    public int getBuffered() {
+        return buffered;
+    }
+
+    @Override
+    public String toString() {
+        return "SubscriberLag{" +
+                "session=" + session +
+                ", subscriberId=" + subscriberId +
+                ", lagMsgs=" + lagMsgs +
+                ", lagMillis=" + lagMillis +
+                ", wallClockLagMillis=" + wallClockLagMillis +
+                ", delivered=" + delivered +
+                ", dropped=" + dropped +
+                ", buffered=" + buffered +
+                '}';
+    }
+}
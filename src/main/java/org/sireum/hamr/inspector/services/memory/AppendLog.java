@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.memory;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.RecordRanges;
+import org.springframework.data.domain.Range;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * An append-only, {@link RecordId}-ordered log of one session's records. Reads never block the writer: the log is an
+ * array whose published size is the only shared state.
+ *
+ * @param <T> the type of record stored.
+ */
+final class AppendLog<T> {
+
+    @NotNull
+    private final Function<T, RecordId> idOf;
+
+    private final List<Tail> tails = new CopyOnWriteArrayList<>();
+
+    // writes to items happen-before the volatile write to size, so readers must read size before items
+    private volatile Object[] items = new Object[64];
+    private volatile int size = 0;
+    private volatile boolean completed = false;
+
+    AppendLog(@NotNull Function<T, RecordId> idOf) {
+        this.idOf = idOf;
+    }
+
+    synchronized void append(@NotNull T item) {
+        if (completed) {
+            throw new IllegalStateException("cannot append to a completed session");
+        }
+        if (size > 0 && idOf.apply(get(items, size - 1)).compareTo(idOf.apply(item)) >= 0) {
+            throw new IllegalArgumentException("record " + idOf.apply(item) + " is out of order");
+        }
+        Object[] array = items;
+        if (size == array.length) {
+            array = Arrays.copyOf(array, array.length * 2);
+        }
+        array[size] = item;
+        items = array;
+        size = size + 1;
+        tails.forEach(Tail::drain);
+    }
+
+    synchronized void complete() {
+        completed = true;
+        tails.forEach(Tail::drain);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the last item, or null if the log is empty.
+     */
+    @Nullable
+    T last() {
+        final int size = this.size;
+        return size == 0 ? null : get(items, size - 1);
+    }
+
+    @NotNull
+    Flux<T> forward(@NotNull Range<RecordId> range) {
+        return Flux.defer(() -> {
+            final int size = this.size;
+            final Object[] items = this.items;
+            final int from = lowerIndex(items, range, size);
+            final int to = upperIndex(items, range, size);
+            return Flux.range(from, Math.max(0, to - from)).map(i -> get(items, i));
+        });
+    }
+
+    @NotNull
+    Flux<T> reverse(@NotNull Range<RecordId> range) {
+        return Flux.defer(() -> {
+            final int size = this.size;
+            final Object[] items = this.items;
+            final int from = lowerIndex(items, range, size);
+            final int to = upperIndex(items, range, size);
+            return Flux.range(0, Math.max(0, to - from)).map(i -> get(items, to - 1 - i));
+        });
+    }
+
+    @NotNull
+    List<T> page(@NotNull Range<RecordId> range, int limit) {
+        final int size = this.size;
+        final Object[] items = this.items;
+        final int from = lowerIndex(items, range, size);
+        final int to = Math.min(upperIndex(items, range, size), from + limit);
+        final List<T> page = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            page.add(get(items, i));
+        }
+        return page;
+    }
+
+    /**
+     * Follows the log from the left-bound of range, completing once the log completes or a record passes the
+     * right-bound of range.
+     */
+    @NotNull
+    Flux<T> tail(@NotNull Range<RecordId> range) {
+        return Flux.create(sink -> {
+            final int size = this.size;
+            final Tail tail = new Tail(sink, range, lowerIndex(items, range, size));
+            tails.add(tail);
+            sink.onRequest(unused -> tail.drain());
+            sink.onDispose(() -> tails.remove(tail));
+            tail.drain();
+        });
+    }
+
+    /**
+     * @return the index of the first item (below size) not excluded by range's left-bound.
+     */
+    private int lowerIndex(@NotNull Object[] items, @NotNull Range<RecordId> range, int size) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (RecordRanges.isAboveLowerBound(range, idOf.apply(get(items, mid)))) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return one past the index of the last item (below size) not excluded by range's right-bound.
+     */
+    private int upperIndex(@NotNull Object[] items, @NotNull Range<RecordId> range, int size) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (RecordRanges.isBelowUpperBound(range, idOf.apply(get(items, mid)))) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T get(@NotNull Object[] items, int index) {
+        return (T) items[index];
+    }
+
+    /**
+     * A cursor over the log which emits items only as fast as they are requested.
+     */
+    private final class Tail {
+
+        @NotNull
+        private final FluxSink<T> sink;
+
+        @NotNull
+        private final Range<RecordId> range;
+
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private int index;
+
+        private boolean aboveLowerBound = false;
+
+        private Tail(@NotNull FluxSink<T> sink, @NotNull Range<RecordId> range, int index) {
+            this.sink = sink;
+            this.range = range;
+            this.index = index;
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                while (!sink.isCancelled() && sink.requestedFromDownstream() > 0 && index < size) {
+                    final T item = get(items, index++);
+                    // the left-bound may lie beyond the end of the log when the tail starts
+                    if (!aboveLowerBound) {
+                        aboveLowerBound = RecordRanges.isAboveLowerBound(range, idOf.apply(item));
+                        if (!aboveLowerBound) {
+                            continue;
+                        }
+                    }
+                    if (!RecordRanges.isBelowUpperBound(range, idOf.apply(item))) {
+                        sink.complete();
+                        return;
+                    }
+                    sink.next(item);
+                }
+                if (completed && index >= size) {
+                    sink.complete();
+                    return;
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+
+}
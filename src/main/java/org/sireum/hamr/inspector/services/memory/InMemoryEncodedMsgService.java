@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.memory;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.FilteredMsgService;
+import org.sireum.hamr.inspector.services.MsgCodec;
+import org.sireum.hamr.inspector.services.MsgFilter;
+import org.sireum.hamr.inspector.services.MsgHeader;
+import org.sireum.hamr.inspector.services.MsgView;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.Session;
+import org.springframework.data.domain.Range;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A reference {@link FilteredMsgService} which keeps every {@link Msg} on the heap in encoded form, the way a real
+ * backend keeps them on the wire: header fields are stored as primitives beside an opaque payload which must be
+ * decoded with the {@link MsgCodec} to produce a {@link Msg}.
+ *
+ * Filtered streams test each {@link MsgFilter} against the stored header fields and decode only the msgs that match,
+ * and the {@link MsgHeader} projections decode nothing at all. {@link MsgView}s share the stored payload and leave
+ * decoding to the consumer. {@link #decodeCount()} reports the number of payloads this service decoded so far, which
+ * makes the saving observable.
+ */
+public final class InMemoryEncodedMsgService implements FilteredMsgService {
+
+    @NotNull
+    private final MsgCodec codec;
+
+    private final ConcurrentMap<Session, AppendLog<Record>> logs = new ConcurrentHashMap<>();
+
+    private final LongAdder decodes = new LongAdder();
+
+    public InMemoryEncodedMsgService(@NotNull MsgCodec codec) {
+        this.codec = codec;
+    }
+
+    /**
+     * Encodes msg and appends it to the end of session, creating the session if needed.
+     *
+     * @param session the {@link Session} to append to.
+     * @param msg the {@link Msg} to append. Its {@link RecordId} must be greater than that of the previous msg.
+     * @throws IllegalArgumentException if msg is out of order.
+     * @throws IllegalStateException if session has already been completed.
+     */
+    public void append(@NotNull Session session, @NotNull Msg msg) {
+        logOf(session).append(new Record(msg.timestamp(), msg.sequence(),
+                codec.srcPortId(msg), codec.dstPortId(msg), ByteBuffer.wrap(codec.encode(msg)).asReadOnlyBuffer()));
+    }
+
+    /**
+     * Marks session as completed. Live streams of the session complete once they have drained.
+     *
+     * @param session the {@link Session} to complete.
+     */
+    public void complete(@NotNull Session session) {
+        logOf(session).complete();
+    }
+
+    /**
+     * @return the total number of payloads this service has decoded.
+     */
+    public long decodeCount() {
+        return decodes.sum();
+    }
+
+    @NotNull
+    @Override
+    public MsgCodec codec() {
+        return codec;
+    }
+
+    @NotNull
+    @Override
+    public Mono<Long> count(@NotNull Session session) {
+        return Mono.fromSupplier(() -> {
+            final AppendLog<Record> log = logs.get(session);
+            return log == null ? 0L : (long) log.size();
+        });
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> live(@NotNull Session session, @NotNull Range<RecordId> range) {
+        return live(session, range, MsgFilter.all());
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> replay(@NotNull Session session, @NotNull Range<RecordId> range) {
+        return replay(session, range, MsgFilter.all());
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> replayReverse(@NotNull Session session, @NotNull Range<RecordId> range) {
+        return replayReverse(session, range, MsgFilter.all());
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> live(@NotNull Session session, @NotNull Range<RecordId> range, @NotNull MsgFilter filter) {
+        return liveRecords(session, range, filter).map(this::decode);
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> replay(@NotNull Session session, @NotNull Range<RecordId> range, @NotNull MsgFilter filter) {
+        return replayRecords(session, range, filter, false).map(this::decode);
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> replayReverse(@NotNull Session session, @NotNull Range<RecordId> range,
+                                   @NotNull MsgFilter filter) {
+        return replayRecords(session, range, filter, true).map(this::decode);
+    }
+
+    @NotNull
+    @Override
+    public Flux<MsgHeader> liveHeaders(@NotNull Session session, @NotNull Range<RecordId> range,
+                                       @NotNull MsgFilter filter) {
+        return liveRecords(session, range, filter).map(Record::header);
+    }
+
+    @NotNull
+    @Override
+    public Flux<MsgHeader> replayHeaders(@NotNull Session session, @NotNull Range<RecordId> range,
+                                         @NotNull MsgFilter filter) {
+        return replayRecords(session, range, filter, false).map(Record::header);
+    }
+
+    @NotNull
+    @Override
+    public Flux<MsgHeader> replayReverseHeaders(@NotNull Session session, @NotNull Range<RecordId> range,
+                                                @NotNull MsgFilter filter) {
+        return replayRecords(session, range, filter, true).map(Record::header);
+    }
+
+    @NotNull
+    @Override
+    public Flux<MsgView> liveViews(@NotNull Session session, @NotNull Range<RecordId> range,
+                                   @NotNull MsgFilter filter) {
+        return liveRecords(session, range, filter).map(this::view);
+    }
+
+    @NotNull
+    @Override
+    public Flux<MsgView> replayViews(@NotNull Session session, @NotNull Range<RecordId> range,
+                                     @NotNull MsgFilter filter) {
+        return replayRecords(session, range, filter, false).map(this::view);
+    }
+
+    @NotNull
+    @Override
+    public Flux<MsgView> replayReverseViews(@NotNull Session session, @NotNull Range<RecordId> range,
+                                            @NotNull MsgFilter filter) {
+        return replayRecords(session, range, filter, true).map(this::view);
+    }
+
+    @NotNull
+    private Flux<Record> liveRecords(@NotNull Session session, @NotNull Range<RecordId> range,
+                                     @NotNull MsgFilter filter) {
+        return Flux.defer(() -> matching(logOf(session).tail(filter.narrow(range)), filter));
+    }
+
+    @NotNull
+    private Flux<Record> replayRecords(@NotNull Session session, @NotNull Range<RecordId> range,
+                                       @NotNull MsgFilter filter, boolean reverse) {
+        return Flux.defer(() -> {
+            final AppendLog<Record> log = logs.get(session);
+            if (log == null) {
+                return Flux.empty();
+            }
+            final Range<RecordId> narrowed = filter.narrow(range);
+            return matching(reverse ? log.reverse(narrowed) : log.forward(narrowed), filter);
+        });
+    }
+
+    @NotNull
+    private Flux<Record> matching(@NotNull Flux<Record> records, @NotNull MsgFilter filter) {
+        if (!filter.hasPortConstraints()) {
+            return records;
+        }
+        return records.filter(record -> filter.test(record.timestamp, record.srcPortId, record.dstPortId, codec));
+    }
+
+    @NotNull
+    private Msg decode(@NotNull Record record) {
+        decodes.increment();
+        return codec.decode(record.payload.duplicate());
+    }
+
+    @NotNull
+    private MsgView view(@NotNull Record record) {
+        return new MsgView(record.timestamp, record.sequence, record.srcPortId, record.dstPortId, record.payload,
+                0, record.payload.capacity(), codec);
+    }
+
+    @NotNull
+    private AppendLog<Record> logOf(@NotNull Session session) {
+        return logs.computeIfAbsent(session, unused -> new AppendLog<>(Record::id));
+    }
+
+    /**
+     * An encoded msg: its header fields and the bytes produced by {@link MsgCodec#encode(Msg)}.
+     */
+    private static final class Record {
+
+        private final long timestamp;
+        private final long sequence;
+        private final int srcPortId;
+        private final int dstPortId;
+
+        // read-only, and shared by every view of this record
+        @NotNull
+        private final ByteBuffer payload;
+
+        private Record(long timestamp, long sequence, int srcPortId, int dstPortId, @NotNull ByteBuffer payload) {
+            this.timestamp = timestamp;
+            this.sequence = sequence;
+            this.srcPortId = srcPortId;
+            this.dstPortId = dstPortId;
+            this.payload = payload;
+        }
+
+        @NotNull
+        private RecordId id() {
+            return RecordId.of(timestamp, sequence);
+        }
+
+        @NotNull
+        private MsgHeader header() {
+            return new MsgHeader(timestamp, sequence, srcPortId, dstPortId);
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.memory;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.MsgService;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.RecordRanges;
+import org.sireum.hamr.inspector.services.Session;
+import org.sireum.hamr.inspector.services.replay.PagedReplay;
+import org.springframework.data.domain.Range;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A reference {@link MsgService} which keeps every {@link Msg} of every {@link Session} on the heap.
+ *
+ * {@link Msg}s are added with {@link #append(Session, Msg)} and must arrive in {@link RecordId} order. Reads never
+ * block writers: each {@link Session} is an append-only array whose published size is the only shared state.
+ */
+public final class InMemoryMsgService implements MsgService {
+
+    private final ConcurrentMap<Session, AppendLog<Msg>> logs = new ConcurrentHashMap<>();
+
+    /**
+     * Appends msg to the end of session, creating the session if needed.
+     *
+     * @param session the {@link Session} to append to.
+     * @param msg the {@link Msg} to append. Its {@link RecordId} must be greater than that of the previous msg.
+     * @throws IllegalArgumentException if msg is out of order.
+     * @throws IllegalStateException if session has already been completed.
+     */
+    public void append(@NotNull Session session, @NotNull Msg msg) {
+        logOf(session).append(msg);
+    }
+
+    /**
+     * Marks session as completed. Live streams of the session complete once they have drained.
+     *
+     * @param session the {@link Session} to complete.
+     */
+    public void complete(@NotNull Session session) {
+        logOf(session).complete();
+    }
+
+    @NotNull
+    @Override
+    public Mono<Long> count(@NotNull Session session) {
+        return Mono.fromSupplier(() -> {
+            final AppendLog<Msg> log = logs.get(session);
+            return log == null ? 0L : (long) log.size();
+        });
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> live(@NotNull Session session, @NotNull Range<RecordId> range) {
+        return Flux.defer(() -> logOf(session).tail(range));
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> replay(@NotNull Session session, @NotNull Range<RecordId> range) {
+        return Flux.defer(() -> {
+            final AppendLog<Msg> log = logs.get(session);
+            return log == null ? Flux.empty() : log.forward(range);
+        });
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> replayReverse(@NotNull Session session, @NotNull Range<RecordId> range) {
+        return Flux.defer(() -> {
+            final AppendLog<Msg> log = logs.get(session);
+            return log == null ? Flux.empty() : log.reverse(range);
+        });
+    }
+
+    @NotNull
+    @Override
+    public Flux<List<Msg>> replayBatched(@NotNull Session session, @NotNull Range<RecordId> range,
+                                         int chunkSize, int prefetch) {
+        return PagedReplay.replay(this::page, lastId(session), session, range, chunkSize, prefetch);
+    }
+
+    @NotNull
+    private Mono<RecordId> lastId(@NotNull Session session) {
+        return Mono.fromSupplier(() -> {
+            final AppendLog<Msg> log = logs.get(session);
+            final Msg last = log == null ? null : log.last();
+            return last == null ? null : RecordRanges.idOf(last);
+        });
+    }
+
+    @NotNull
+    private Mono<List<Msg>> page(@NotNull Session session, @NotNull Range<RecordId> range, int limit) {
+        return Mono.fromSupplier(() -> {
+            final AppendLog<Msg> log = logs.get(session);
+            return log == null ? List.of() : log.page(range, limit);
+        });
+    }
+
+    @NotNull
+    private AppendLog<Msg> logOf(@NotNull Session session) {
+        return logs.computeIfAbsent(session, unused -> new AppendLog<>(RecordRanges::idOf));
+    }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.memory;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.services.Session;
+import org.sireum.hamr.inspector.services.SessionService;
+import org.sireum.hamr.inspector.services.SessionStatus;
+import org.sireum.hamr.inspector.services.discovery.SessionChangeFeed;
+import org.sireum.hamr.inspector.services.discovery.SessionChangeSource;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.GroupedFlux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A reference {@link SessionService} which keeps every {@link Session} on the heap and pushes a change for each
+ * {@link #start(Session, long)} and {@link #complete(Session, long)}, standing in for the keyspace notifications of a
+ * real backend.
+ *
+ * Its {@link #liveStatusUpdates()} are those of a {@link SessionChangeFeed} following its own {@link #changes()}.
+ */
+public final class InMemorySessionService implements SessionService, SessionChangeSource {
+
+    private final ConcurrentMap<Session, Times> sessions = new ConcurrentHashMap<>();
+
+    private final List<FluxSink<Session>> listeners = new CopyOnWriteArrayList<>();
+
+    @NotNull
+    private final SessionChangeFeed feed;
+
+    /**
+     * @param coalesceWindow the longest time a change waits for others to batch with.
+     * @param maxBatch the maximum number of sessions in a batch of changes. Must be positive.
+     */
+    public InMemorySessionService(@NotNull Duration coalesceWindow, int maxBatch) {
+        // statuses are read from memory, so there is nothing to gain from reading them concurrently
+        this.feed = new SessionChangeFeed(this, this, coalesceWindow, maxBatch, 1);
+    }
+
+    /**
+     * Creates session as a running {@link Session}.
+     *
+     * @param session the {@link Session} to create.
+     * @param startTime the start time (in millis) of session.
+     * @throws IllegalStateException if session already exists.
+     */
+    public void start(@NotNull Session session, long startTime) {
+        if (sessions.putIfAbsent(session, new Times(startTime)) != null) {
+            throw new IllegalStateException("session " + session + " already exists");
+        }
+        publish(session);
+    }
+
+    /**
+     * Marks session as completed.
+     *
+     * @param session the {@link Session} to complete.
+     * @param stopTime the stop time (in millis) of session.
+     * @throws IllegalArgumentException if session does not exist.
+     * @throws IllegalStateException if session has already been completed.
+     */
+    public void complete(@NotNull Session session, long stopTime) {
+        final Times times = sessions.get(session);
+        if (times == null) {
+            throw new IllegalArgumentException("session " + session + " does not exist");
+        }
+        times.complete(session, stopTime);
+        publish(session);
+    }
+
+    @NotNull
+    @Override
+    public Flux<Session> changes() {
+        return Flux.create(sink -> {
+            listeners.add(sink);
+            sink.onDispose(() -> listeners.remove(sink));
+        });
+    }
+
+    @NotNull
+    @Override
+    public Flux<Session> sessions() {
+        return Flux.defer(() -> Flux.fromIterable(new ArrayList<>(sessions.keySet())));
+    }
+
+    @NotNull
+    @Override
+    public Mono<Long> startTimeOf(@NotNull Session session) {
+        return Mono.fromSupplier(() -> {
+            final Times times = sessions.get(session);
+            return times == null ? null : times.startTime;
+        });
+    }
+
+    @NotNull
+    @Override
+    public Mono<Long> stopTimeOf(@NotNull Session session) {
+        return Mono.fromSupplier(() -> {
+            final Times times = sessions.get(session);
+            return times == null ? null : times.stopTime;
+        });
+    }
+
+    @NotNull
+    @Override
+    public Mono<SessionStatus> statusOf(@NotNull Session session) {
+        return Mono.fromSupplier(() -> {
+            final Times times = sessions.get(session);
+            if (times == null) {
+                return null;
+            }
+            return times.stopTime == null ? SessionStatus.RUNNING : SessionStatus.COMPLETED;
+        });
+    }
+
+    @NotNull
+    @Override
+    public Flux<GroupedFlux<Session, SessionStatus>> liveStatusUpdates() {
+        return feed.liveStatusUpdates();
+    }
+
+    private void publish(@NotNull Session session) {
+        for (FluxSink<Session> listener : listeners) {
+            listener.next(session);
+        }
+    }
+
+    private static final class Times {
+
+        private final long startTime;
+
+        // null while the session is running
+        @Nullable
+        private volatile Long stopTime = null;
+
+        private Times(long startTime) {
+            this.startTime = startTime;
+        }
+
+        private synchronized void complete(@NotNull Session session, long stopTime) {
+            if (this.stopTime != null) {
+                throw new IllegalStateException("session " + session + " has already been completed");
+            }
+            this.stopTime = stopTime;
+        }
+    }
+
+}
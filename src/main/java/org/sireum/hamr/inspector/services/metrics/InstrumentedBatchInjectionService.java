@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.metrics;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.services.Session;
+import org.sireum.hamr.inspector.services.inject.BatchInjectionService;
+import org.sireum.hamr.inspector.services.inject.InjectionAck;
+import org.sireum.hamr.inspector.services.inject.ScheduledInjection;
+import reactor.core.publisher.Flux;
+
+/**
+ * A {@link BatchInjectionService} which records {@link MethodStats} for the acknowledgement streams of another
+ * {@link BatchInjectionService} in a {@link ServiceMetrics}, tagged by the given service name and by
+ * {@link Session}. Single injections go through {@link #injectAll} and are recorded there too.
+ */
+public final class InstrumentedBatchInjectionService implements BatchInjectionService {
+
+    @NotNull
+    private final BatchInjectionService delegate;
+
+    @NotNull
+    private final ServiceMetrics metrics;
+
+    @NotNull
+    private final String name;
+
+    /**
+     * @param delegate the {@link BatchInjectionService} to instrument.
+     * @param metrics the registry to record into.
+     * @param name the service name stats are tagged with.
+     */
+    public InstrumentedBatchInjectionService(@NotNull BatchInjectionService delegate, @NotNull ServiceMetrics metrics,
+                                             @NotNull String name) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.name = name;
+    }
+
+    @NotNull
+    @Override
+    public Flux<InjectionAck> injectAll(@NotNull Session session, @NotNull Flux<ScheduledInjection> injections) {
+        return metrics.of(name, "injectAll", session).instrument(delegate.injectAll(session, injections));
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.metrics;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.common.Injection;
+import org.sireum.hamr.inspector.services.InjectionService;
+import org.sireum.hamr.inspector.services.Session;
+
+/**
+ * An {@link InjectionService} which records {@link MethodStats} for another {@link InjectionService} in a
+ * {@link ServiceMetrics}, tagged by the given service name and by {@link Session}.
+ *
+ * Each {@link #inject} call counts as one subscription whose latency is the time the delegate took to return (and
+ * which errors if the delegate threw). To instrument the acknowledged stream of a
+ * {@link org.sireum.hamr.inspector.services.inject.BatchInjectionService}, use
+ * {@link InstrumentedBatchInjectionService}.
+ */
+public final class InstrumentedInjectionService implements InjectionService {
+
+    @NotNull
+    private final InjectionService delegate;
+
+    @NotNull
+    private final ServiceMetrics metrics;
+
+    @NotNull
+    private final String name;
+
+    /**
+     * @param delegate the {@link InjectionService} to instrument.
+     * @param metrics the registry to record into.
+     * @param name the service name stats are tagged with.
+     */
+    public InstrumentedInjectionService(@NotNull InjectionService delegate, @NotNull ServiceMetrics metrics,
+                                        @NotNull String name) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.name = name;
+    }
+
+    @Override
+    public void inject(@NotNull Session session, @NotNull Injection injection) {
+        final MethodMetrics methodMetrics = metrics.of(name, "inject", session);
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            delegate.inject(session, injection);
+            failed = false;
+        } finally {
+            methodMetrics.recordCall(start, failed);
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.metrics;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.MsgService;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.Session;
+import org.springframework.data.domain.Range;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * A {@link MsgService} which records {@link MethodStats} for every method of another {@link MsgService} in a
+ * {@link ServiceMetrics}, tagged by the given service name and by {@link Session}.
+ *
+ * In addition to the common stats, {@link #live} records each delivered msg's lag behind the live tail.
+ */
+public final class InstrumentedMsgService implements MsgService {
+
+    @NotNull
+    private final MsgService delegate;
+
+    @NotNull
+    private final ServiceMetrics metrics;
+
+    @NotNull
+    private final String name;
+
+    /**
+     * @param delegate the {@link MsgService} to instrument.
+     * @param metrics the registry to record into.
+     * @param name the service name stats are tagged with.
+     */
+    public InstrumentedMsgService(@NotNull MsgService delegate, @NotNull ServiceMetrics metrics,
+                                  @NotNull String name) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.name = name;
+    }
+
+    @NotNull
+    @Override
+    public Mono<Long> count(@NotNull Session session) {
+        return metrics.of(name, "count", session).instrument(delegate.count(session));
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> live(@NotNull Session session, @NotNull Range<RecordId> range) {
+        return metrics.of(name, "live", session).instrumentLive(delegate.live(session, range));
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> replay(@NotNull Session session, @NotNull Range<RecordId> range) {
+        return metrics.of(name, "replay", session).instrument(delegate.replay(session, range));
+    }
+
+    @NotNull
+    @Override
+    public Flux<List<Msg>> replayBatched(@NotNull Session session, @NotNull Range<RecordId> range,
+                                         int chunkSize, int prefetch) {
+        return metrics.of(name, "replayBatched", session)
+                .instrument(delegate.replayBatched(session, range, chunkSize, prefetch));
+    }
+
+    @NotNull
+    @Override
+    public Mono<RecordId> seekTime(@NotNull Session session, long millis) {
+        return metrics.of(name, "seekTime", session).instrument(delegate.seekTime(session, millis));
+    }
+
+    @NotNull
+    @Override
+    public Mono<RecordId> seekOrdinal(@NotNull Session session, long ordinal) {
+        return metrics.of(name, "seekOrdinal", session).instrument(delegate.seekOrdinal(session, ordinal));
+    }
+
+    @NotNull
+    @Override
+    public Flux<Msg> replayReverse(@NotNull Session session, @NotNull Range<RecordId> range) {
+        return metrics.of(name, "replayReverse", session).instrument(delegate.replayReverse(session, range));
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.metrics;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.services.Session;
+import org.sireum.hamr.inspector.services.SessionService;
+import org.sireum.hamr.inspector.services.SessionStatus;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.GroupedFlux;
+import reactor.core.publisher.Mono;
+
+/**
+ * A {@link SessionService} which records {@link MethodStats} for every method of another {@link SessionService} in
+ * a {@link ServiceMetrics}, tagged by the given service name and by {@link Session}. {@link #sessions()} and
+ * {@link #liveStatusUpdates()} are not tied to a session, so their stats have none.
+ */
+public final class InstrumentedSessionService implements SessionService {
+
+    @NotNull
+    private final SessionService delegate;
+
+    @NotNull
+    private final ServiceMetrics metrics;
+
+    @NotNull
+    private final String name;
+
+    /**
+     * @param delegate the {@link SessionService} to instrument.
+     * @param metrics the registry to record into.
+     * @param name the service name stats are tagged with.
+     */
+    public InstrumentedSessionService(@NotNull SessionService delegate, @NotNull ServiceMetrics metrics,
+                                      @NotNull String name) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.name = name;
+    }
+
+    @NotNull
+    @Override
+    public Flux<Session> sessions() {
+        return metrics.of(name, "sessions", null).instrument(delegate.sessions());
+    }
+
+    @NotNull
+    @Override
+    public Mono<Long> startTimeOf(@NotNull Session session) {
+        return metrics.of(name, "startTimeOf", session).instrument(delegate.startTimeOf(session));
+    }
+
+    @NotNull
+    @Override
+    public Mono<Long> stopTimeOf(@NotNull Session session) {
+        return metrics.of(name, "stopTimeOf", session).instrument(delegate.stopTimeOf(session));
+    }
+
+    @NotNull
+    @Override
+    public Mono<SessionStatus> statusOf(@NotNull Session session) {
+        return metrics.of(name, "statusOf", session).instrument(delegate.statusOf(session));
+    }
+
+    @NotNull
+    @Override
+    public Flux<GroupedFlux<Session, SessionStatus>> liveStatusUpdates() {
+        return metrics.of(name, "liveStatusUpdates", null).instrument(delegate.liveStatusUpdates());
+    }
+
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.metrics;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.reactivestreams.Subscription;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.Session;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+import reactor.util.context.Context;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters of one method of one service for one {@link Session}, and the operators which feed them.
+ *
+ * Every subscription to an instrumented publisher is observed by a single {@link Probe} allocated on subscribe;
+ * elements only touch {@link LongAdder}s and {@link Histogram}s, so nothing is allocated per element.
+ */
+final class MethodMetrics {
+
+    @NotNull
+    private final String service;
+
+    @NotNull
+    private final String method;
+
+    @Nullable
+    private final Session session;
+
+    private final LongAdder subscriptions = new LongAdder();
+    private final LongAdder completions = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder cancellations = new LongAdder();
+    private final LongAdder elements = new LongAdder();
+    private final LongAdder requested = new LongAdder();
+    private final LongAdder unboundedRequests = new LongAdder();
+    private final LongAdder stalls = new LongAdder();
+    private final LongAdder stallNanos = new LongAdder();
+
+    private final Histogram latencyNanos = new Histogram();
+    private final Histogram firstElementNanos = new Histogram();
+    private final Histogram lagMillis = new Histogram();
+    private final Histogram wallClockLagMillis = new Histogram();
+
+    // the newest msg timestamp delivered to any live subscription, which lag in RecordId time is measured against
+    private final AtomicLong liveHead = new AtomicLong(Long.MIN_VALUE);
+
+    MethodMetrics(@NotNull String service, @NotNull String method, @Nullable Session session) {
+        this.service = service;
+        this.method = method;
+        this.session = session;
+    }
+
+    @NotNull
+    <T> Flux<T> instrument(@NotNull Flux<T> source) {
+        return source.transform(Operators.<T, T>lift((scannable, actual) -> new Probe<>(actual, false)));
+    }
+
+    @NotNull
+    <T> Mono<T> instrument(@NotNull Mono<T> source) {
+        return source.transform(Operators.<T, T>lift((scannable, actual) -> new Probe<>(actual, false)));
+    }
+
+    /**
+     * Like {@link #instrument(Flux)}, but also records how far each delivered msg trails the live tail.
+     */
+    @NotNull
+    Flux<Msg> instrumentLive(@NotNull Flux<Msg> source) {
+        return source.transform(Operators.<Msg, Msg>lift((scannable, actual) -> new Probe<>(actual, true)));
+    }
+
+    /**
+     * Records a call of a method which does not return a publisher.
+     */
+    void recordCall(long startNanos, boolean failed) {
+        subscriptions.increment();
+        if (failed) {
+            errors.increment();
+        } else {
+            completions.increment();
+        }
+        latencyNanos.record(System.nanoTime() - startNanos);
+    }
+
+    @NotNull
+    MethodStats snapshot() {
+        return new MethodStats(service, method, session, subscriptions.sum(), completions.sum(), errors.sum(),
+                cancellations.sum(), elements.sum(), requested.sum(), unboundedRequests.sum(), stalls.sum(),
+                stallNanos.sum(), latencyNanos.snapshot(), firstElementNanos.snapshot(), lagMillis.snapshot(),
+                wallClockLagMillis.snapshot());
+    }
+
+    private void recordLive(@NotNull Msg msg) {
+        final long timestamp = msg.timestamp();
+        final long head = liveHead.accumulateAndGet(timestamp, Math::max);
+        lagMillis.record(head - timestamp);
+        wallClockLagMillis.record(System.currentTimeMillis() - timestamp);
+    }
+
+    /**
+     * Observes one subscription. Stalls are measured from the moment every requested element has been delivered
+     * until downstream requests more, i.e. time the stream spent waiting on its subscriber. Since the probe cannot
+     * see whether the source had anything left to emit, stalls are approximate.
+     */
+    private final class Probe<T> implements CoreSubscriber<T>, Subscription {
+
+        @NotNull
+        private final CoreSubscriber<? super T> actual;
+
+        private final boolean live;
+
+        private final AtomicLong outstanding = new AtomicLong();
+
+        private final AtomicBoolean done = new AtomicBoolean(false);
+
+        private Subscription upstream;
+
+        private long subscribedAt;
+
+        private boolean emitted = false;
+
+        // 0 if not stalled
+        private volatile long stalledSince = 0L;
+
+        private Probe(@NotNull CoreSubscriber<? super T> actual, boolean live) {
+            this.actual = actual;
+            this.live = live;
+        }
+
+        @Override
+        public void onSubscribe(@NotNull Subscription s) {
+            upstream = s;
+            subscribedAt = System.nanoTime();
+            subscriptions.increment();
+            actual.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(T t) {
+            elements.increment();
+            if (!emitted) {
+                emitted = true;
+                firstElementNanos.record(System.nanoTime() - subscribedAt);
+            }
+            if (live) {
+                recordLive((Msg) t);
+            }
+            if (outstanding.get() != Long.MAX_VALUE && outstanding.decrementAndGet() == 0L) {
+                stalledSince = System.nanoTime();
+            }
+            actual.onNext(t);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (finish()) {
+                errors.increment();
+            }
+            actual.onError(t);
+        }
+
+        @Override
+        public void onComplete() {
+            if (finish()) {
+                completions.increment();
+            }
+            actual.onComplete();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n == Long.MAX_VALUE) {
+                unboundedRequests.increment();
+                outstanding.set(Long.MAX_VALUE);
+            } else if (n > 0L) {
+                requested.add(n);
+                outstanding.accumulateAndGet(n, Operators::addCap);
+            }
+            final long since = stalledSince;
+            if (since != 0L) {
+                stalledSince = 0L;
+                stalls.increment();
+                stallNanos.add(System.nanoTime() - since);
+            }
+            upstream.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            if (finish()) {
+                cancellations.increment();
+            }
+            upstream.cancel();
+        }
+
+        @NotNull
+        @Override
+        public Context currentContext() {
+            return actual.currentContext();
+        }
+
+        private boolean finish() {
+            if (!done.compareAndSet(false, true)) {
+                return false;
+            }
+            latencyNanos.record(System.nanoTime() - subscribedAt);
+            return true;
+        }
+    }
+
+}
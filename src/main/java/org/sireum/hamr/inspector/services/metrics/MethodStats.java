@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.metrics;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.services.Session;
+
+/**
+ * An immutable snapshot of the metrics of one method of one instrumented service for one {@link Session}.
+ *
+ * Counts are totals since the service was instrumented; rates are obtained by comparing two snapshots (see
+ * {@link MetricsSnapshot#elementRate(MetricsSnapshot, MethodStats)}). Calls of methods which do not return a
+ * publisher (such as {@link org.sireum.hamr.inspector.services.InjectionService#inject}) count as one subscription
+ * which completes or errors immediately.
+ */
+public final class MethodStats {
+
+    @NotNull
+    private final String service;
+
+    @NotNull
+    private final String method;
+
+    @Nullable
+    private final Session session;
+
+    private final long subscriptions;
+    private final long completions;
+    private final long errors;
+    private final long cancellations;
+    private final long elements;
+    private final long requested;
+    private final long unboundedRequests;
+    private final long stalls;
+    private final long stallNanos;
+
+    @NotNull
+    private final HistogramSnapshot latencyNanos;
+
+    @NotNull
+    private final HistogramSnapshot firstElementNanos;
+
+    @NotNull
+    private final HistogramSnapshot lagMillis;
+
+    @NotNull
+    private final HistogramSnapshot wallClockLagMillis;
+
+    MethodStats(@NotNull String service, @NotNull String method, @Nullable Session session, long subscriptions,
+                long completions, long errors, long cancellations, long elements, long requested,
+                long unboundedRequests, long stalls, long stallNanos, @NotNull HistogramSnapshot latencyNanos,
+                @NotNull HistogramSnapshot firstElementNanos, @NotNull HistogramSnapshot lagMillis,
+                @NotNull HistogramSnapshot wallClockLagMillis) {
+        this.service = service;
+        this.method = method;
+        this.session = session;
+        this.subscriptions = subscriptions;
+        this.completions = completions;
+        this.errors = errors;
+        this.cancellations = cancellations;
+        this.elements = elements;
+        this.requested = requested;
+        this.unboundedRequests = unboundedRequests;
+        this.stalls = stalls;
+        this.stallNanos = stallNanos;
+        this.latencyNanos = latencyNanos;
+        this.firstElementNanos = firstElementNanos;
+        this.lagMillis = lagMillis;
+        this.wallClockLagMillis = wallClockLagMillis;
+    }
+
+    /**
+     * @return the name given to the instrumented service.
+     */
+    @NotNull
+    public String getService() {
+        return service;
+    }
+
+    /**
+     * @return the name of the instrumented method.
+     */
+    @NotNull
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the {@link Session} the method was called with, or null for methods not taking one.
+     */
+    @Nullable
+    public Session getSession() {
+        return session;
+    }
+
+    public long getSubscriptions() {
+        return subscriptions;
+    }
+
+    public long getCompletions() {
+        return completions;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getCancellations() {
+        return cancellations;
+    }
+
+    /**
+     * @return the number of elements delivered to subscribers.
+     */
+    public long getElements() {
+        return elements;
+    }
+
+    /**
+     * @return the number of elements requested by subscribers, not counting unbounded requests.
+     */
+    public long getRequested() {
+        return requested;
+    }
+
+    /**
+     * @return the number of unbounded ({@link Long#MAX_VALUE}) requests.
+     */
+    public long getUnboundedRequests() {
+        return unboundedRequests;
+    }
+
+    /**
+     * @return the number of times a stream delivered everything requested and then waited for more demand.
+     */
+    public long getStalls() {
+        return stalls;
+    }
+
+    /**
+     * @return the total time (in nanos) streams spent waiting for demand.
+     */
+    public long getStallNanos() {
+        return stallNanos;
+    }
+
+    /**
+     * @return the time (in nanos) from subscription to completion, error or cancellation.
+     */
+    @NotNull
+    public HistogramSnapshot getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    /**
+     * @return the time (in nanos) from subscription to the first element, for subscriptions which had one.
+     */
+    @NotNull
+    public HistogramSnapshot getFirstElementNanos() {
+        return firstElementNanos;
+    }
+
+    /**
+     * @return for live streams, the timestamp of the newest msg delivered to any live subscriber of the session
+     *  minus the timestamp of each delivered msg, in {@link org.sireum.hamr.inspector.services.RecordId} time.
+     */
+    @NotNull
+    public HistogramSnapshot getLagMillis() {
+        return lagMillis;
+    }
+
+    /**
+     * @return for live streams, the wall-clock time of delivery minus the timestamp of each delivered msg.
+     */
+    @NotNull
+    public HistogramSnapshot getWallClockLagMillis() {
+        return wallClockLagMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "MethodStats{" +
+                "service='" + service + '\'' +
+                ", method='" + method + '\'' +
+                ", session=" + session +
+                ", subscriptions=" + subscriptions +
+                ", completions=" + completions +
+                ", errors=" + errors +
+                ", cancellations=" + cancellations +
+                ", elements=" + elements +
+                ", requested=" + requested +
+                ", unboundedRequests=" + unboundedRequests +
+                ", stalls=" + stalls +
+                ", stallNanos=" + stallNanos +
+                ", latencyNanos=" + latencyNanos +
+                ", firstElementNanos=" + firstElementNanos +
+                ", lagMillis=" + lagMillis +
+                ", wallClockLagMillis=" + wallClockLagMillis +
+                '}';
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.metrics;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.services.Session;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An immutable snapshot of every {@link MethodStats} of a {@link ServiceMetrics}.
+ */
+public final class MetricsSnapshot {
+
+    private final long takenAtNanos;
+
+    @NotNull
+    private final List<MethodStats> stats;
+
+    MetricsSnapshot(long takenAtNanos, @NotNull List<MethodStats> stats) {
+        this.takenAtNanos = takenAtNanos;
+        this.stats = stats;
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} at which the snapshot was taken.
+     */
+    public long getTakenAtNanos() {
+        return takenAtNanos;
+    }
+
+    /**
+     * @return an immutable list of the stats of every method that has been called.
+     */
+    @NotNull
+    public List<MethodStats> getStats() {
+        return stats;
+    }
+
+    /**
+     * @return the stats of method of service for session, or null if it has not been called.
+     */
+    @Nullable
+    public MethodStats find(@NotNull String service, @NotNull String method, @Nullable Session session) {
+        for (MethodStats candidate : stats) {
+            if (candidate.getService().equals(service) && candidate.getMethod().equals(method)
+                    && Objects.equals(candidate.getSession(), session)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of elements per second delivered by the method of current (a member of this snapshot)
+     * between earlier and this snapshot.
+     */
+    public double elementRate(@NotNull MetricsSnapshot earlier, @NotNull MethodStats current) {
+        final MethodStats before = earlier.find(current.getService(), current.getMethod(), current.getSession());
+        final long elements = current.getElements() - (before == null ? 0L : before.getElements());
+        final long nanos = takenAtNanos - earlier.takenAtNanos;
+        return nanos <= 0L ? 0.0 : elements * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsSnapshot{" +
+                "takenAtNanos=" + takenAtNanos +
+                ", stats=" + stats +
+                '}';
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.metrics;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.services.Session;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The registry shared by instrumented services (see {@link InstrumentedMsgService},
+ * {@link InstrumentedSessionService}, {@link InstrumentedInjectionService} and
+ * {@link InstrumentedBatchInjectionService}), which holds one set of counters per service, method and
+ * {@link Session}.
+ *
+ * Counters are lock-free and are read without stopping writers, so a snapshot taken under load may be off by the
+ * few updates in flight while it was taken.
+ */
+public final class ServiceMetrics {
+
+    private final ConcurrentMap<Key, MethodMetrics> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * @return a snapshot of the metrics of every method called so far.
+     */
+    @NotNull
+    public MetricsSnapshot snapshot() {
+        final List<MethodStats> stats = new ArrayList<>(metrics.size());
+        for (MethodMetrics methodMetrics : metrics.values()) {
+            stats.add(methodMetrics.snapshot());
+        }
+        return new MetricsSnapshot(System.nanoTime(), Collections.unmodifiableList(stats));
+    }
+
+    /**
+     * Passes a single snapshot to exporter.
+     */
+    public void export(@NotNull MetricsExporter exporter) {
+        exporter.export(snapshot());
+    }
+
+    /**
+     * Passes a snapshot to exporter once every interval until the returned {@link Disposable} is disposed.
+     */
+    @NotNull
+    public Disposable exportEvery(@NotNull Duration interval, @NotNull MetricsExporter exporter) {
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("interval must be positive but was " + interval);
+        }
+        return Flux.interval(interval)
+                .onBackpressureDrop()
+                .subscribe(unused -> export(exporter));
+    }
+
+    @NotNull
+    MethodMetrics of(@NotNull String service, @NotNull String method, @Nullable Session session) {
+        return metrics.computeIfAbsent(new Key(service, method, session),
+                key -> new MethodMetrics(service, method, session));
+    }
+
+    private static final class Key {
+
+        @NotNull
+        private final String service;
+
+        @NotNull
+        private final String method;
+
+        @Nullable
+        private final Session session;
+
+        private Key(@NotNull String service, @NotNull String method, @Nullable Session session) {
+            this.service = service;
+            this.method = method;
+            this.session = session;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Key key = (Key) o;
+            return service.equals(key.service) && method.equals(key.method) && Objects.equals(session, key.session);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(service, method, session);
+        }
+    }
+
+}
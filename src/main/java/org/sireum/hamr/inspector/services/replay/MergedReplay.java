@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.replay;
+
+import org.jetbrains.annotations.NotNull;
+import org.reactivestreams.Subscription;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.MsgService;
+import org.sireum.hamr.inspector.services.Session;
+import org.sireum.hamr.inspector.services.SessionService;
+import org.springframework.data.domain.Range;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.util.concurrent.Queues;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replays several {@link Session}s side by side, aligned on the time since each session's
+ * {@link SessionService#startTimeOf(Session) start}.
+ *
+ * The sessions are replayed concurrently and merged with a heap keyed by each session's next msg, so emitting a msg
+ * costs O(log N) for N sessions. Msgs are ordered by relative time, then by
+ * {@link org.sireum.hamr.inspector.services.RecordId}, then by the position of their session in the given list. Every
+ * session is read at most prefetch msgs ahead of the merge, so memory stays O(N * prefetch) however long the sessions
+ * are. Since a msg can only be emitted once every unfinished session has a msg waiting, the merge runs at the pace of
+ * its slowest source.
+ */
+public final class MergedReplay {
+
+    @NotNull
+    private final MsgService msgService;
+
+    @NotNull
+    private final SessionService sessionService;
+
+    private final int prefetch;
+
+    /**
+     * @param msgService the source of every session's msgs.
+     * @param sessionService the source of every session's start time.
+     * @param prefetch the maximum number of msgs buffered per session. Must be positive.
+     */
+    public MergedReplay(@NotNull MsgService msgService, @NotNull SessionService sessionService, int prefetch) {
+        if (prefetch <= 0) {
+            throw new IllegalArgumentException("prefetch must be positive but was " + prefetch);
+        }
+        this.msgService = msgService;
+        this.sessionService = sessionService;
+        this.prefetch = prefetch;
+    }
+
+    /**
+     * Returns a cold {@link Flux} of every msg of sessions (as of the time of the call) in relative time order, each
+     * tagged with its {@link Session}. Sessions without a start time (such as unknown sessions) are skipped.
+     *
+     * @param sessions the sessions to replay.
+     * @return a {@link Flux} of the merged msgs of sessions.
+     */
+    @NotNull
+    public Flux<SessionMsg> replay(@NotNull List<Session> sessions) {
+        return Flux.fromIterable(sessions)
+                .flatMapSequential(session -> sessionService.startTimeOf(session)
+                        .map(start -> Tuples.of(session, start)))
+                .collectList()
+                .flatMapMany(sources -> sources.isEmpty()
+                        ? Flux.empty()
+                        : Flux.<SessionMsg>create(sink -> new Merge(sources, sink).start()));
+    }
+
+    /**
+     * The state of one merge. The heap and the heads of the sources are only touched inside {@link #drain()}, which
+     * never runs concurrently with itself.
+     */
+    private final class Merge {
+
+        @NotNull
+        private final FluxSink<SessionMsg> sink;
+
+        @NotNull
+        private final Source[] sources;
+
+        // a binary min-heap of the indices of the sources whose head is set
+        @NotNull
+        private final int[] heap;
+
+        private int heapSize = 0;
+
+        // the indices of the unfinished sources whose head is not set
+        @NotNull
+        private final int[] pending;
+
+        private int pendingSize;
+
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private volatile boolean cancelled = false;
+
+        private Merge(@NotNull List<Tuple2<Session, Long>> sessions, @NotNull FluxSink<SessionMsg> sink) {
+            this.sink = sink;
+            this.sources = new Source[sessions.size()];
+            this.heap = new int[sources.length];
+            this.pending = new int[sources.length];
+            for (int i = 0; i < sources.length; i++) {
+                sources[i] = new Source(sessions.get(i).getT1(), sessions.get(i).getT2());
+                pending[i] = i;
+            }
+            this.pendingSize = sources.length;
+        }
+
+        private void start() {
+            sink.onDispose(() -> {
+                cancelled = true;
+                cancelAll();
+            });
+            sink.onRequest(unused -> drain());
+            for (Source source : sources) {
+                if (cancelled) {
+                    return;
+                }
+                msgService.replay(source.session, Range.unbounded()).subscribe(source);
+            }
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                while (!cancelled && fillHeads()) {
+                    if (heapSize == 0) {
+                        cancelled = true;
+                        sink.complete();
+                        break;
+                    }
+                    if (sink.requestedFromDownstream() == 0L) {
+                        break;
+                    }
+                    final int index = removeMin();
+                    final Source source = sources[index];
+                    final Msg msg = source.head;
+                    source.head = null;
+                    pending[pendingSize++] = index;
+                    sink.next(new SessionMsg(source.session, msg, msg.timestamp() - source.start));
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Moves the next msg of every pending source to its head and onto the heap, and drops finished sources.
+         *
+         * @return true if no unfinished source is still waiting for its next msg.
+         */
+        private boolean fillHeads() {
+            int i = 0;
+            while (i < pendingSize) {
+                final int index = pending[i];
+                final Source source = sources[index];
+                final boolean done = source.done;
+                final Msg next = source.poll();
+                if (next != null) {
+                    source.head = next;
+                    insert(index);
+                } else if (!done) {
+                    i++;
+                    continue;
+                }
+                pending[i] = pending[--pendingSize];
+            }
+            return pendingSize == 0;
+        }
+
+        private void insert(int index) {
+            int child = heapSize++;
+            while (child > 0) {
+                final int parent = (child - 1) >>> 1;
+                if (compare(heap[parent], index) <= 0) {
+                    break;
+                }
+                heap[child] = heap[parent];
+                child = parent;
+            }
+            heap[child] = index;
+        }
+
+        private int removeMin() {
+            final int min = heap[0];
+            final int last = heap[--heapSize];
+            int parent = 0;
+            while (true) {
+                int child = 2 * parent + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && compare(heap[child + 1], heap[child]) < 0) {
+                    child++;
+                }
+                if (compare(last, heap[child]) <= 0) {
+                    break;
+                }
+                heap[parent] = heap[child];
+                parent = child;
+            }
+            if (heapSize > 0) {
+                heap[parent] = last;
+            }
+            return min;
+        }
+
+        private int compare(int a, int b) {
+            final Source left = sources[a];
+            final Source right = sources[b];
+            final Msg l = left.head;
+            final Msg r = right.head;
+            int c = Long.compare(l.timestamp() - left.start, r.timestamp() - right.start);
+            if (c == 0) {
+                c = Long.compare(l.timestamp(), r.timestamp());
+            }
+            if (c == 0) {
+                c = Long.compare(l.sequence(), r.sequence());
+            }
+            return c != 0 ? c : Integer.compare(a, b);
+        }
+
+        private void cancelAll() {
+            for (Source source : sources) {
+                source.dispose();
+            }
+        }
+
+        /**
+         * One session's replay, buffered up to prefetch msgs ahead of the merge.
+         */
+        private final class Source extends BaseSubscriber<Msg> {
+
+            @NotNull
+            private final Session session;
+
+            private final long start;
+
+            private final Queue<Msg> queue = Queues.<Msg>get(prefetch).get();
+
+            private final int limit = Math.max(1, prefetch - (prefetch >> 2));
+
+            // the number of msgs taken from queue since the last replenishing request, only touched by drain()
+            private int consumed = 0;
+
+            private volatile boolean done = false;
+
+            // the msg of this source on the heap, or null if this source is pending
+            private Msg head = null;
+
+            private Source(@NotNull Session session, long start) {
+                this.session = session;
+                this.start = start;
+            }
+
+            private Msg poll() {
+                final Msg msg = queue.poll();
+                if (msg != null && ++consumed == limit) {
+                    consumed = 0;
+                    request(limit);
+                }
+                return msg;
+            }
+
+            @Override
+            protected void hookOnSubscribe(@NotNull Subscription subscription) {
+                request(prefetch);
+            }
+
+            @Override
+            protected void hookOnNext(@NotNull Msg msg) {
+                queue.offer(msg);
+                drain();
+            }
+
+            @Override
+            protected void hookOnComplete() {
+                done = true;
+                drain();
+            }
+
+            @Override
+            protected void hookOnError(@NotNull Throwable throwable) {
+                if (!cancelled) {
+                    cancelled = true;
+                    cancelAll();
+                    sink.error(throwable);
+                }
+            }
+        }
+    }
+
+}
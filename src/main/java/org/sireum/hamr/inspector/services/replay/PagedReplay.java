@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.replay;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.MsgService;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.RecordRanges;
+import org.sireum.hamr.inspector.services.Session;
+import org.springframework.data.domain.Range;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Reference implementation of {@link MsgService#replayBatched(Session, Range, int, int)} for backends that can
+ * answer bounded range queries (such as a redis XRANGE with a COUNT).
+ *
+ * Each chunk is exactly one backend page. The next page always starts directly after the last {@link RecordId} of
+ * the previous page, so chunk boundaries can neither drop nor duplicate a {@link Msg}.
+ */
+public final class PagedReplay {
+
+    private PagedReplay() { }
+
+    /**
+     * A backend capable of returning one page of a {@link Session}'s {@link Msg}s.
+     */
+    @FunctionalInterface
+    public interface PageSource {
+
+        /**
+         * Fetches (in order) the first limit {@link Msg}s of session that lie within range.
+         *
+         * @param session the {@link Session} to read from.
+         * @param range the range to read. Has the same semantics as {@link MsgService#replay(Session, Range)}.
+         * @param limit the maximum number of {@link Msg}s to return.
+         * @return a {@link Mono} of at most limit {@link Msg}s. Fewer than limit {@link Msg}s means the range is
+         *  exhausted.
+         */
+        @NotNull
+        Mono<List<Msg>> fetch(@NotNull Session session, @NotNull Range<RecordId> range, int limit);
+    }
+
+    /**
+     * Walks range forward one page at a time.
+     *
+     * The right-bound of range is evaluated by every page fetch, so it must be bounded. Use
+     * {@link #replay(PageSource, Mono, Session, Range, int, int)} to replay a range without a right-bound.
+     *
+     * @param source the backend to fetch pages from.
+     * @param session the {@link Session} whose {@link Msg}s will be replayed.
+     * @param range the range to replay. Has the same semantics as {@link MsgService#replay(Session, Range)}, but
+     *              must have a right-bound.
+     * @param chunkSize the number of {@link Msg}s fetched per page (and therefore the maximum chunk size).
+     * @param prefetch the maximum number of pages fetched ahead of downstream demand.
+     * @return a {@link Flux} of non-empty, ordered chunks.
+     * @throws IllegalArgumentException if range has no right-bound.
+     */
+    @NotNull
+    public static Flux<List<Msg>> replay(@NotNull PageSource source, @NotNull Session session,
+                                         @NotNull Range<RecordId> range, int chunkSize, int prefetch) {
+        checkArguments(chunkSize, prefetch);
+        if (!range.getUpperBound().isBounded()) {
+            throw new IllegalArgumentException("range must have a right-bound but was " + range);
+        }
+        return pages(source, session, range, chunkSize).limitRate(prefetch);
+    }
+
+    /**
+     * Walks range forward one page at a time.
+     *
+     * If range has no right-bound, it is pinned to the last {@link RecordId} of the session at subscription, so that
+     * (like {@link MsgService#replay(Session, Range)}) a session which is still running does not return the
+     * {@link Msg}s that arrive while the pages are read.
+     *
+     * @param source the backend to fetch pages from.
+     * @param lastId a {@link Mono} of the {@link RecordId} of the last {@link Msg} of session, or an empty
+     *               {@link Mono} if session has none. Subscribed once per subscription, and only if range has no
+     *               right-bound.
+     * @param session the {@link Session} whose {@link Msg}s will be replayed.
+     * @param range the range to replay. Has the same semantics as {@link MsgService#replay(Session, Range)}.
+     * @param chunkSize the number of {@link Msg}s fetched per page (and therefore the maximum chunk size).
+     * @param prefetch the maximum number of pages fetched ahead of downstream demand.
+     * @return a {@link Flux} of non-empty, ordered chunks.
+     */
+    @NotNull
+    public static Flux<List<Msg>> replay(@NotNull PageSource source, @NotNull Mono<RecordId> lastId,
+                                         @NotNull Session session, @NotNull Range<RecordId> range,
+                                         int chunkSize, int prefetch) {
+        checkArguments(chunkSize, prefetch);
+
+        final Mono<Range<RecordId>> pinned = range.getUpperBound().isBounded()
+                ? Mono.just(range)
+                : lastId.map(last -> Range.of(range.getLowerBound(), Range.Bound.inclusive(last)));
+        return pinned.flatMapMany(bounded -> pages(source, session, bounded, chunkSize)).limitRate(prefetch);
+    }
+
+    @NotNull
+    private static Flux<List<Msg>> pages(@NotNull PageSource source, @NotNull Session session,
+                                         @NotNull Range<RecordId> range, int chunkSize) {
+        return Mono.defer(() -> source.fetch(session, range, chunkSize))
+                .expand(page -> {
+                    if (page.size() < chunkSize) {
+                        return Mono.empty();
+                    }
+                    final RecordId last = RecordRanges.idOf(page.get(page.size() - 1));
+                    return source.fetch(session, RecordRanges.after(range, last), chunkSize);
+                })
+                .filter(page -> !page.isEmpty());
+    }
+
+    static void checkArguments(int chunkSize, int prefetch) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive but was " + chunkSize);
+        }
+        if (prefetch <= 0) {
+            throw new IllegalArgumentException("prefetch must be positive but was " + prefetch);
+        }
+    }
+
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.replay;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.MsgService;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.RecordRanges;
+import org.sireum.hamr.inspector.services.Session;
+import org.springframework.data.domain.Range;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Implements {@link MsgService#replayReverse(Session, Range)} on top of a backend that is only fast at forward reads.
+ *
+ * The range is walked backward in windows of {@link RecordId} time. Each window is read forward (page by page, see
+ * {@link PagedReplay}) and emitted in reverse, and the next window is fetched while the previous one drains. The
+ * first window is small, so the first screen arrives after a handful of cheap reads no matter how long the session
+ * is. After every window, the engine adapts:
+ *  (1) the target page size, which doubles while downstream is waiting on pages and the backend answers well
+ *      within targetLatency, and halves whenever a page takes longer than targetLatency; and
+ *  (2) the time span of the next window, which is rescaled by the msg density of the last one so that windows
+ *      hold about one target page.
+ *
+ * Consecutive windows share a bound (the lower bound of one is the exclusive upper bound of the next), so pages can
+ * neither drop nor duplicate a {@link Msg}.
+ */
+public final class ReversePagedReplay {
+
+    /**
+     * A backend which can read forward and can locate the end of a range.
+     */
+    public interface ReversePageSource extends PagedReplay.PageSource {
+
+        /**
+         * Returns the {@link RecordId} of the last {@link Msg} of session within range, which most backends can
+         * answer from metadata or with a single reverse seek (such as a redis XREVRANGE with a COUNT of 1).
+         *
+         * @return a {@link Mono} of the last {@link RecordId}, or an empty {@link Mono} if range holds no msgs.
+         */
+        @NotNull
+        Mono<RecordId> lastId(@NotNull Session session, @NotNull Range<RecordId> range);
+    }
+
+    // the maximum factor by which a window's span changes from one window to the next
+    private static final long MAX_SPAN_STEP = 8L;
+
+    @NotNull
+    private final ReversePageSource source;
+
+    private final int minPageSize;
+
+    private final int maxPageSize;
+
+    private final int prefetch;
+
+    private final long targetLatencyNanos;
+
+    /**
+     * @param source the backend to read from.
+     * @param minPageSize the target size of the first page, and the smallest target page size. Must be positive.
+     * @param maxPageSize the largest target page size, and the size of each forward read. Must be at least
+     *                    minPageSize.
+     * @param prefetch the maximum number of pages fetched ahead of downstream demand. Must be positive.
+     * @param targetLatency the latency of a single page read above which pages are made smaller. Must be positive.
+     */
+    public ReversePagedReplay(@NotNull ReversePageSource source, int minPageSize, int maxPageSize, int prefetch,
+                              @NotNull Duration targetLatency) {
+        if (minPageSize <= 0) {
+            throw new IllegalArgumentException("minPageSize must be positive but was " + minPageSize);
+        }
+        if (maxPageSize < minPageSize) {
+            throw new IllegalArgumentException("maxPageSize must be at least minPageSize (" + minPageSize
+                    + ") but was " + maxPageSize);
+        }
+        if (prefetch <= 0) {
+            throw new IllegalArgumentException("prefetch must be positive but was " + prefetch);
+        }
+        if (targetLatency.isNegative() || targetLatency.isZero()) {
+            throw new IllegalArgumentException("targetLatency must be positive but was " + targetLatency);
+        }
+        this.source = source;
+        this.minPageSize = minPageSize;
+        this.maxPageSize = maxPageSize;
+        this.prefetch = prefetch;
+        this.targetLatencyNanos = targetLatency.toNanos();
+    }
+
+    /**
+     * Replays range in reverse order. Has the same semantics as {@link MsgService#replayReverse(Session, Range)}.
+     */
+    @NotNull
+    public Flux<Msg> replayReverse(@NotNull Session session, @NotNull Range<RecordId> range) {
+        return pages(session, range).concatMapIterable(page -> page, 1);
+    }
+
+    /**
+     * Replays range in reverse order one page at a time. Every page is non-empty and in reverse order, and each
+     * page precedes the one before it.
+     */
+    @NotNull
+    public Flux<List<Msg>> pages(@NotNull Session session, @NotNull Range<RecordId> range) {
+        final Mono<RecordId> first = Mono.defer(() -> source.fetch(session, range, 1))
+                .flatMap(page -> page.isEmpty() ? Mono.empty() : Mono.just(RecordRanges.idOf(page.get(0))));
+        final Mono<RecordId> last = Mono.defer(() -> source.lastId(session, range));
+        return Mono.zip(first, last)
+                .flatMapMany(ends -> Flux.create(sink ->
+                        new Walk(session, range, ends.getT1(), ends.getT2(), sink).start()));
+    }
+
+    /**
+     * The state of one reverse replay. Only one window is read at a time and all adaptive state is updated from that
+     * read's callback, so it is never written concurrently.
+     */
+    private final class Walk {
+
+        @NotNull
+        private final Session session;
+
+        @NotNull
+        private final Range<RecordId> range;
+
+        private final long firstMillis;
+
+        @NotNull
+        private final FluxSink<List<Msg>> sink;
+
+        private final Queue<List<Msg>> ready = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger wip = new AtomicInteger();
+
+        // the upper bound of the next window
+        @NotNull
+        private volatile Range.Bound<RecordId> upper;
+
+        private volatile long span = 1L;
+
+        private volatile int pageSize = minPageSize;
+
+        private volatile boolean fetching = false;
+
+        private volatile boolean exhausted = false;
+
+        private volatile boolean cancelled = false;
+
+        @Nullable
+        private volatile Disposable read = null;
+
+        private Walk(@NotNull Session session, @NotNull Range<RecordId> range, @NotNull RecordId first,
+                     @NotNull RecordId last, @NotNull FluxSink<List<Msg>> sink) {
+            this.session = session;
+            this.range = range;
+            this.firstMillis = first.timestamp();
+            this.upper = Range.Bound.inclusive(last);
+            this.sink = sink;
+        }
+
+        private void start() {
+            // register for disposal first, as a synchronous source may serve (and be cancelled by) the first request
+            // before onRequest returns
+            sink.onDispose(() -> {
+                cancelled = true;
+                final Disposable current = read;
+                if (current != null) {
+                    current.dispose();
+                }
+                drain();
+            });
+            sink.onRequest(unused -> drain());
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (cancelled) {
+                    ready.clear();
+                } else {
+                    while (sink.requestedFromDownstream() > 0L && !ready.isEmpty()) {
+                        sink.next(ready.poll());
+                    }
+                    if (!fetching && !cancelled) {
+                        if (exhausted) {
+                            if (ready.isEmpty()) {
+                                cancelled = true;
+                                sink.complete();
+                            }
+                        } else if (ready.size() < prefetch) {
+                            fetching = true;
+                            fetch();
+                        }
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void fetch() {
+            final Range.Bound<RecordId> hi = upper;
+            final long hiMillis = hi.getValue().orElseThrow().timestamp();
+            final boolean last = span >= hiMillis - firstMillis;
+            final Range.Bound<RecordId> lo = last
+                    ? range.getLowerBound()
+                    : Range.Bound.inclusive(RecordId.of(hiMillis - span, Long.MIN_VALUE));
+            final long start = System.nanoTime();
+            read = PagedReplay.replay(source, session, Range.of(lo, hi), maxPageSize, 1)
+                    .collect(ArrayList<Msg>::new, List::addAll)
+                    .subscribe(window -> onWindow(window, lo, last, System.nanoTime() - start), sink::error);
+        }
+
+        private void onWindow(@NotNull List<Msg> window, @NotNull Range.Bound<RecordId> lo, boolean last,
+                              long latencyNanos) {
+            final boolean starving = sink.requestedFromDownstream() > 0L && ready.isEmpty();
+            adapt(window.size(), latencyNanos, starving);
+            if (!window.isEmpty()) {
+                Collections.reverse(window);
+                ready.add(window);
+            }
+            if (last) {
+                exhausted = true;
+            } else {
+                upper = Range.Bound.exclusive(lo.getValue().orElseThrow());
+            }
+            fetching = false;
+            drain();
+        }
+
+        private void adapt(int size, long latencyNanos, boolean starving) {
+            if (size > 0 && latencyNanos > targetLatencyNanos) {
+                pageSize = Math.max(minPageSize, pageSize / 2);
+            } else if (starving && latencyNanos < targetLatencyNanos / 2) {
+                pageSize = (int) Math.min(maxPageSize, 2L * pageSize);
+            }
+            final long current = span;
+            final long next = size == 0
+                    ? current * MAX_SPAN_STEP
+                    : Math.max(current / MAX_SPAN_STEP, Math.min(current * MAX_SPAN_STEP, current * pageSize / size));
+            span = Math.max(1L, Math.min(next, Long.MAX_VALUE / (MAX_SPAN_STEP * maxPageSize)));
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.replay;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.Session;
+
+/**
+ * A {@link Msg} tagged with the {@link Session} it belongs to, as emitted by {@link MergedReplay}.
+ */
+public final class SessionMsg {
+
+    @NotNull
+    private final Session session;
+
+    @NotNull
+    private final Msg msg;
+
+    private final long relativeMillis;
+
+    SessionMsg(@NotNull Session session, @NotNull Msg msg, long relativeMillis) {
+        this.session = session;
+        this.msg = msg;
+        this.relativeMillis = relativeMillis;
+    }
+
+    @NotNull
+    public Session getSession() {
+        return session;
+    }
+
+    @NotNull
+    public Msg getMsg() {
+        return msg;
+    }
+
+    /**
+     * @return the timestamp of the msg minus the start time of its session (in millis).
+     */
+    public long getRelativeMillis() {
+        return relativeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "SessionMsg{" +
+                "session=" + session +
+                ", msg=" + msg +
+                ", relativeMillis=" + relativeMillis +
+                '}';
+    }
+
+}
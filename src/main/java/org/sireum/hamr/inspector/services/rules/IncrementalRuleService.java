@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.rules;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.MsgService;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.RecordRanges;
+import org.sireum.hamr.inspector.services.RuleStatus;
+import org.sireum.hamr.inspector.services.Session;
+import org.sireum.hamr.inspector.services.SessionService;
+import org.sireum.hamr.inspector.services.SessionStatus;
+import org.springframework.data.domain.Range;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A {@link RuleService} which feeds every msg of a {@link Session} through the {@link RuleMachine}s of all rules of
+ * an evaluation in a single pass.
+ *
+ * The session's history is read in chunks with {@link MsgService#replayBatched} and shared between up to parallelism
+ * rails, each of which steps its own subset of the rules on its own core, so evaluating many rules over a completed
+ * session scales with the number of cores while the session is read only once. If the session is still running, the
+ * undecided rules then follow {@link MsgService#live} from the last replayed msg onwards. A rail stops as soon as all
+ * of its rules have reached a verdict, and the session stops being read once every rail has.
+ *
+ * To share the backend's live subscription between evaluations, pass a
+ * {@link org.sireum.hamr.inspector.services.live.LiveTailHub} as the {@link MsgService}.
+ */
+public final class IncrementalRuleService implements RuleService {
+
+    @NotNull
+    private final MsgService msgService;
+
+    @NotNull
+    private final SessionService sessionService;
+
+    private final int chunkSize;
+
+    private final int parallelism;
+
+    /**
+     * @param msgService the source of msgs.
+     * @param sessionService used to tell running and completed sessions apart.
+     * @param chunkSize the number of msgs read at once while replaying history. Must be positive.
+     * @param parallelism the maximum number of rails history is evaluated on. Must be positive.
+     */
+    public IncrementalRuleService(@NotNull MsgService msgService, @NotNull SessionService sessionService,
+                                  int chunkSize, int parallelism) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive but was " + chunkSize);
+        }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive but was " + parallelism);
+        }
+        this.msgService = msgService;
+        this.sessionService = sessionService;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+    }
+
+    @NotNull
+    @Override
+    public Flux<RuleUpdate> evaluate(@NotNull Session session, @NotNull List<Rule> rules) {
+        if (rules.isEmpty()) {
+            return Flux.empty();
+        }
+        return sessionService.statusOf(session).flatMapMany(status -> {
+            final List<Slot> slots = new ArrayList<>(rules.size());
+            for (Rule rule : rules) {
+                slots.add(new Slot(rule));
+            }
+            final AtomicReference<RecordId> last = new AtomicReference<>();
+            return Flux.fromIterable(slots)
+                    .map(slot -> new RuleUpdate(slot.rule, RuleStatus.RUNNING, null))
+                    .concatWith(history(session, slots, last))
+                    .concatWith(Flux.defer(() -> {
+                        final Rail remaining = new Rail(undecided(slots));
+                        if (remaining.undecided == 0) {
+                            return Flux.empty();
+                        }
+                        return status == SessionStatus.COMPLETED
+                                ? end(remaining)
+                                : live(session, remaining, last.get());
+                    }));
+        });
+    }
+
+    /**
+     * Evaluates slots over the history of session on parallel rails, recording the id of the last msg read in last.
+     */
+    @NotNull
+    private Flux<RuleUpdate> history(@NotNull Session session, @NotNull List<Slot> slots,
+                                     @NotNull AtomicReference<RecordId> last) {
+        final int railCount = Math.min(parallelism, slots.size());
+        final List<Rail> rails = new ArrayList<>(railCount);
+        for (int i = 0; i < railCount; i++) {
+            final List<Slot> share = new ArrayList<>();
+            for (int j = i; j < slots.size(); j += railCount) {
+                share.add(slots.get(j));
+            }
+            rails.add(new Rail(share));
+        }
+        final Flux<List<Msg>> chunks = msgService.replayBatched(session, Range.unbounded(), chunkSize, 2)
+                .doOnNext(chunk -> last.set(RecordRanges.idOf(chunk.get(chunk.size() - 1))))
+                .publish()
+                .autoConnect(railCount);
+        final List<Flux<RuleUpdate>> evaluations = new ArrayList<>(railCount);
+        for (Rail rail : rails) {
+            evaluations.add(chunks.publishOn(Schedulers.parallel())
+                    .concatMapIterable(rail::step)
+                    .takeUntil(unused -> rail.undecided == 0));
+        }
+        return Flux.merge(evaluations);
+    }
+
+    /**
+     * Evaluates rail over session live, starting after the msg with id resume (or from the start if it is null).
+     */
+    @NotNull
+    private Flux<RuleUpdate> live(@NotNull Session session, @NotNull Rail rail, RecordId resume) {
+        final Range<RecordId> range = resume == null
+                ? Range.unbounded()
+                : RecordRanges.after(Range.unbounded(), resume);
+        return msgService.live(session, range)
+                .concatMapIterable(rail::step)
+                .takeUntil(unused -> rail.undecided == 0)
+                .concatWith(Flux.defer(() -> end(rail)));
+    }
+
+    /**
+     * Ends every undecided rule of rail, as its session has completed.
+     */
+    @NotNull
+    private static Flux<RuleUpdate> end(@NotNull Rail rail) {
+        return Flux.defer(() -> {
+            final List<RuleUpdate> updates = new ArrayList<>(rail.undecided);
+            for (Slot slot : rail.slots) {
+                if (!slot.decided) {
+                    final RuleStatus status = slot.machine.end();
+                    if (status == RuleStatus.RUNNING) {
+                        throw new IllegalStateException("rule " + slot.rule.getName() + " did not reach a verdict");
+                    }
+                    slot.decided = true;
+                    rail.undecided--;
+                    updates.add(new RuleUpdate(slot.rule, status, null));
+                }
+            }
+            return Flux.fromIterable(updates);
+        });
+    }
+
+    @NotNull
+    private static List<Slot> undecided(@NotNull List<Slot> slots) {
+        final List<Slot> undecided = new ArrayList<>();
+        for (Slot slot : slots) {
+            if (!slot.decided) {
+                undecided.add(slot);
+            }
+        }
+        return undecided;
+    }
+
+    /**
+     * A rule being evaluated. Confined to the thread of whichever {@link Rail} currently owns it.
+     */
+    private static final class Slot {
+
+        @NotNull
+        private final Rule rule;
+
+        @NotNull
+        private final RuleMachine machine;
+
+        private boolean decided = false;
+
+        private Slot(@NotNull Rule rule) {
+            this.rule = rule;
+            this.machine = rule.newMachine();
+        }
+    }
+
+    /**
+     * A group of rules stepped together on one thread.
+     */
+    private static final class Rail {
+
+        @NotNull
+        private final List<Slot> slots;
+
+        private int undecided;
+
+        private Rail(@NotNull List<Slot> slots) {
+            this.slots = slots;
+            this.undecided = slots.size();
+        }
+
+        /**
+         * Steps every undecided rule through msgs.
+         *
+         * @return the updates of the rules which reached a verdict (usually none, which allocates nothing).
+         */
+        @NotNull
+        private List<RuleUpdate> step(@NotNull List<Msg> msgs) {
+            List<RuleUpdate> updates = List.of();
+            for (Slot slot : slots) {
+                if (slot.decided) {
+                    continue;
+                }
+                for (Msg msg : msgs) {
+                    final RuleStatus status = slot.machine.step(msg);
+                    if (status != RuleStatus.RUNNING) {
+                        updates = decide(updates, slot, status, msg);
+                        break;
+                    }
+                }
+            }
+            return updates;
+        }
+
+        /**
+         * Steps every undecided rule through a single msg, as {@link #step(List)} does without wrapping msg in a list.
+         *
+         * @return the updates of the rules which reached a verdict (usually none, which allocates nothing).
+         */
+        @NotNull
+        private List<RuleUpdate> step(@NotNull Msg msg) {
+            List<RuleUpdate> updates = List.of();
+            for (int i = 0; i < slots.size(); i++) {
+                final Slot slot = slots.get(i);
+                if (!slot.decided) {
+                    final RuleStatus status = slot.machine.step(msg);
+                    if (status != RuleStatus.RUNNING) {
+                        updates = decide(updates, slot, status, msg);
+                    }
+                }
+            }
+            return updates;
+        }
+
+        /**
+         * Marks slot as decided with status at msg, adding its update to updates (which is allocated on first use).
+         */
+        @NotNull
+        private List<RuleUpdate> decide(@NotNull List<RuleUpdate> updates, @NotNull Slot slot,
+                                        @NotNull RuleStatus status, @NotNull Msg msg) {
+            slot.decided = true;
+            undecided--;
+            if (updates.isEmpty()) {
+                updates = new ArrayList<>();
+            }
+            updates.add(new RuleUpdate(slot.rule, status, RecordRanges.idOf(msg)));
+            return updates;
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.rules;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.RuleStatus;
+
+/**
+ * The mutable evaluation state of one {@link Rule} over one {@link org.sireum.hamr.inspector.services.Session}.
+ *
+ * A machine is fed every msg of its session in {@link org.sireum.hamr.inspector.services.RecordId} order, from a
+ * single thread at a time, until it reports {@link RuleStatus#SUCCESS} or {@link RuleStatus#FAILURE}. Since it is
+ * stepped once per msg, implementations should keep their state in primitive fields and avoid allocating.
+ */
+public interface RuleMachine {
+
+    /**
+     * Advances the machine past msg.
+     *
+     * @return the status of the rule after msg. Once SUCCESS or FAILURE is returned the machine is not stepped again.
+     */
+    @NotNull
+    RuleStatus step(@NotNull Msg msg);
+
+    /**
+     * Called instead of {@link #step(Msg)} once the session has completed without the rule reaching a verdict.
+     *
+     * @return the final status of the rule, either {@link RuleStatus#SUCCESS} or {@link RuleStatus#FAILURE}.
+     */
+    @NotNull
+    RuleStatus end();
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.rules;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.services.RuleStatus;
+import org.sireum.hamr.inspector.services.Session;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+public interface RuleService {
+
+    /**
+     * Returns a cold {@link Flux} which evaluates every rule over session in a single pass and emits a
+     * {@link RuleUpdate} each time a rule's status changes.
+     *
+     * Every rule first reports {@link RuleStatus#RUNNING} and then at most one of {@link RuleStatus#SUCCESS} or
+     * {@link RuleStatus#FAILURE}, after which it is no longer evaluated. Rules of a running session are caught up
+     * from its history and then follow it live. The {@link Flux} completes once every rule has reached a verdict
+     * (which, at the latest, happens when the session completes), and completes empty if session is not recognized.
+     *
+     * @param session the {@link Session} to evaluate rules over.
+     * @param rules the rules to evaluate.
+     * @return a {@link Flux} of status changes of rules.
+     */
+    @NotNull
+    Flux<RuleUpdate> evaluate(@NotNull Session session, @NotNull List<Rule> rules);
+
+    /**
+     * Returns a cold {@link Flux} of the {@link RuleStatus}es of rule over session, which completes after
+     * {@link RuleStatus#SUCCESS} or {@link RuleStatus#FAILURE}. Prefer {@link #evaluate(Session, List)} when
+     * evaluating several rules over the same session so that they share one pass.
+     */
+    @NotNull
+    default Flux<RuleStatus> evaluate(@NotNull Session session, @NotNull Rule rule) {
+        return evaluate(session, List.of(rule)).map(RuleUpdate::getStatus);
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.rules;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.RuleStatus;
+
+/**
+ * A change in the {@link RuleStatus} of one {@link Rule}, emitted by {@link RuleService#evaluate}.
+ */
+public final class RuleUpdate {
+
+    @NotNull
+    private final Rule rule;
+
+    @NotNull
+    private final RuleStatus status;
+
+    @Nullable
+    private final RecordId recordId;
+
+    RuleUpdate(@NotNull Rule rule, @NotNull RuleStatus status, @Nullable RecordId recordId) {
+        this.rule = rule;
+        this.status = status;
+        this.recordId = recordId;
+    }
+
+    @NotNull
+    public Rule getRule() {
+        return rule;
+    }
+
+    @NotNull
+    public RuleStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the id of the msg which caused this update, or null if it was caused by the evaluation starting or the
+     *  session ending.
+     */
+    @Nullable
+    public RecordId getRecordId() {
+        return recordId;
+    }
+
+    public boolean isFinal() {
+        return status != RuleStatus.RUNNING;
+    }
+
+    @Override
+    public String toString() {
+        return "RuleUpdate{" +
+                "rule=" + rule.getName() +
+                ", status=" + status +
+                ", recordId=" + recordId +
+                '}';
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.rules;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.RuleStatus;
+
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Factories for the common temporal properties, each compiled to a {@link RuleMachine} whose state is a few
+ * primitive fields. Predicates are evaluated once per msg, so they should not allocate either.
+ */
+public final class Rules {
+
+    private Rules() { }
+
+    /**
+     * @return a rule which fails at the first msg not matching predicate, and succeeds if the session completes
+     *  first.
+     */
+    @NotNull
+    public static Rule always(@NotNull String name, @NotNull Predicate<Msg> predicate) {
+        return of(name, () -> new RuleMachine() {
+            @NotNull
+            @Override
+            public RuleStatus step(@NotNull Msg msg) {
+                return predicate.test(msg) ? RuleStatus.RUNNING : RuleStatus.FAILURE;
+            }
+
+            @NotNull
+            @Override
+            public RuleStatus end() {
+                return RuleStatus.SUCCESS;
+            }
+        });
+    }
+
+    /**
+     * @return a rule which fails at the first msg matching predicate, and succeeds if the session completes first.
+     */
+    @NotNull
+    public static Rule never(@NotNull String name, @NotNull Predicate<Msg> predicate) {
+        return always(name, predicate.negate());
+    }
+
+    /**
+     * @return a rule which succeeds at the first msg matching predicate, and fails if the session completes first.
+     */
+    @NotNull
+    public static Rule eventually(@NotNull String name, @NotNull Predicate<Msg> predicate) {
+        return of(name, () -> new RuleMachine() {
+            @NotNull
+            @Override
+            public RuleStatus step(@NotNull Msg msg) {
+                return predicate.test(msg) ? RuleStatus.SUCCESS : RuleStatus.RUNNING;
+            }
+
+            @NotNull
+            @Override
+            public RuleStatus end() {
+                return RuleStatus.FAILURE;
+            }
+        });
+    }
+
+    /**
+     * Returns a rule requiring every msg matching trigger to be followed by a msg matching response whose timestamp
+     * is at most millis later. A single response answers every trigger before it. The rule fails as soon as a
+     * deadline is missed (or the session completes with a trigger unanswered) and otherwise succeeds when the
+     * session completes.
+     *
+     * @param millis the maximum time (in millis) between a trigger and its response. Must not be negative.
+     */
+    @NotNull
+    public static Rule respondsWithin(@NotNull String name, @NotNull Predicate<Msg> trigger,
+                                      @NotNull Predicate<Msg> response, long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("millis must not be negative but was " + millis);
+        }
+        return of(name, () -> new RuleMachine() {
+
+            private boolean pending = false;
+
+            // the deadline of the earliest unanswered trigger, which is the only one that can be missed first
+            private long deadline = 0L;
+
+            @NotNull
+            @Override
+            public RuleStatus step(@NotNull Msg msg) {
+                if (pending && msg.timestamp() > deadline) {
+                    return RuleStatus.FAILURE;
+                }
+                if (response.test(msg)) {
+                    pending = false;
+                } else if (!pending && trigger.test(msg)) {
+                    pending = true;
+                    deadline = msg.timestamp() + millis;
+                }
+                return RuleStatus.RUNNING;
+            }
+
+            @NotNull
+            @Override
+            public RuleStatus end() {
+                return pending ? RuleStatus.FAILURE : RuleStatus.SUCCESS;
+            }
+        });
+    }
+
+    /**
+     * @return a rule named name whose machines are created by factory.
+     */
+    @NotNull
+    public static Rule of(@NotNull String name, @NotNull Supplier<RuleMachine> factory) {
+        return new Rule() {
+            @NotNull
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @NotNull
+            @Override
+            public RuleMachine newMachine() {
+                return factory.get();
+            }
+
+            @Override
+            public String toString() {
+                return name;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.stats;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.MsgCodec;
+import org.sireum.hamr.inspector.services.MsgService;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.RecordRanges;
+import org.sireum.hamr.inspector.services.Session;
+import org.sireum.hamr.inspector.services.SessionService;
+import org.sireum.hamr.inspector.services.SessionStatus;
+import org.springframework.data.domain.Range;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link MsgStatsService} which counts each {@link Session}'s msgs exactly once.
+ *
+ * The first query for a {@link Session} replays its history and, if it is still running, follows
+ * {@link MsgService#live(Session, Range)} from the last replayed msg onwards. Every msg updates a set of counters in
+ * constant time, so the cost of a query does not grow with the length of the session. Snapshots are cached until the
+ * next msg arrives, and the snapshot of a completed session is computed once and kept forever.
+ *
+ * To share the backend subscription with other live readers, pass a
+ * {@link org.sireum.hamr.inspector.services.live.LiveTailHub} as the {@link MsgService}.
+ */
+public final class IncrementalMsgStatsService implements MsgStatsService {
+
+    @NotNull
+    private final MsgService msgService;
+
+    @NotNull
+    private final SessionService sessionService;
+
+    @NotNull
+    private final MsgCodec codec;
+
+    private final long bucketWidthMillis;
+
+    private final ConcurrentMap<Session, Accumulator> accumulators = new ConcurrentHashMap<>();
+
+    /**
+     * @param msgService the source of msgs.
+     * @param sessionService used to tell running and completed sessions apart.
+     * @param codec used to read port ids and sizes of msgs.
+     * @param bucketWidth the width of each time bucket of {@link SessionStats}.
+     */
+    public IncrementalMsgStatsService(@NotNull MsgService msgService, @NotNull SessionService sessionService,
+                                      @NotNull MsgCodec codec, @NotNull Duration bucketWidth) {
+        if (bucketWidth.toMillis() <= 0) {
+            throw new IllegalArgumentException("bucketWidth must be at least one millisecond but was " + bucketWidth);
+        }
+        this.msgService = msgService;
+        this.sessionService = sessionService;
+        this.codec = codec;
+        this.bucketWidthMillis = bucketWidth.toMillis();
+    }
+
+    @NotNull
+    @Override
+    public Mono<SessionStats> stats(@NotNull Session session) {
+        return accumulator(session).flatMap(accumulator ->
+                Mono.fromFuture(accumulator.caughtUp).then(Mono.fromSupplier(accumulator::snapshot)));
+    }
+
+    @NotNull
+    @Override
+    public Flux<SessionStatsDelta> statsUpdates(@NotNull Session session, @NotNull Duration interval) {
+        return stats(session).flatMapMany(initial -> {
+            final Accumulator accumulator = accumulators.get(session);
+            if (initial.isFinal() || accumulator == null) {
+                return Flux.empty();
+            }
+            final SessionStats[] previous = { initial };
+            return Flux.interval(interval)
+                    .onBackpressureDrop()
+                    .map(unused -> accumulator.snapshot())
+                    .filter(current -> current != previous[0])
+                    .map(current -> {
+                        final SessionStatsDelta delta = new SessionStatsDelta(previous[0], current);
+                        previous[0] = current;
+                        return delta;
+                    })
+                    .takeUntil(SessionStatsDelta::isFinal);
+        });
+    }
+
+    @NotNull
+    private Mono<Accumulator> accumulator(@NotNull Session session) {
+        return Mono.defer(() -> {
+            final Accumulator existing = accumulators.get(session);
+            if (existing != null) {
+                return Mono.just(existing);
+            }
+            return sessionService.statusOf(session).map(status -> {
+                final Accumulator created = new Accumulator(session);
+                final Accumulator raced = accumulators.putIfAbsent(session, created);
+                if (raced != null) {
+                    return raced;
+                }
+                start(created, status);
+                return created;
+            });
+        });
+    }
+
+    private void start(@NotNull Accumulator accumulator, @NotNull SessionStatus status) {
+        final Session session = accumulator.session;
+        msgService.replay(session, Range.unbounded())
+                .doOnNext(accumulator::observe)
+                .then(Mono.fromRunnable(() -> accumulator.caughtUp.complete(null)))
+                .thenMany(Flux.defer(() -> status == SessionStatus.COMPLETED
+                        ? Flux.empty()
+                        : msgService.live(session, accumulator.resumeRange()).doOnNext(accumulator::observe)))
+                .subscribe(null, error -> {
+                    accumulators.remove(session, accumulator);
+                    accumulator.caughtUp.completeExceptionally(error);
+                }, accumulator::finish);
+    }
+
+    /**
+     * The counters of one {@link Session}. All fields are guarded by this.
+     */
+    private final class Accumulator {
+
+        @NotNull
+        private final Session session;
+
+        private final CompletableFuture<Void> caughtUp = new CompletableFuture<>();
+
+        private long count = 0L;
+        private long bytes = 0L;
+
+        @Nullable
+        private RecordId first = null;
+
+        private long lastTimestamp = 0L;
+        private long lastSequence = 0L;
+
+        private long[] srcPortCounts = new long[0];
+        private long[] dstPortCounts = new long[0];
+
+        private long bucketOrigin = 0L;
+        private long[] bucketCounts = new long[0];
+        private int bucketLimit = 0;
+
+        private boolean finished = false;
+
+        // the most recent snapshot, reused until the next msg arrives
+        @Nullable
+        private SessionStats snapshot = null;
+
+        private Accumulator(@NotNull Session session) {
+            this.session = session;
+        }
+
+        private synchronized void observe(@NotNull Msg msg) {
+            final long timestamp = msg.timestamp();
+            if (count == 0L) {
+                first = RecordRanges.idOf(msg);
+                bucketOrigin = Math.floorDiv(timestamp, bucketWidthMillis) * bucketWidthMillis;
+            }
+            count++;
+            bytes += codec.encodedSize(msg);
+            lastTimestamp = timestamp;
+            lastSequence = msg.sequence();
+
+            srcPortCounts = increment(srcPortCounts, codec.srcPortId(msg));
+            dstPortCounts = increment(dstPortCounts, codec.dstPortId(msg));
+
+            final long bucket = Math.floorDiv(timestamp - bucketOrigin, bucketWidthMillis);
+            if (bucket >= bucketCounts.length) {
+                bucketCounts = Arrays.copyOf(bucketCounts, (int) Math.max(bucket + 1, 2L * bucketCounts.length));
+            }
+            bucketCounts[(int) bucket]++;
+            bucketLimit = (int) Math.max(bucketLimit, bucket + 1);
+
+            snapshot = null;
+        }
+
+        @NotNull
+        private synchronized Range<RecordId> resumeRange() {
+            if (count == 0L) {
+                return Range.unbounded();
+            }
+            return Range.of(Range.Bound.exclusive(RecordId.of(lastTimestamp, lastSequence)), Range.Bound.unbounded());
+        }
+
+        private synchronized void finish() {
+            finished = true;
+            snapshot = null;
+        }
+
+        @NotNull
+        private synchronized SessionStats snapshot() {
+            if (snapshot == null) {
+                snapshot = new SessionStats(session, count, bytes, first,
+                        count == 0L ? null : RecordId.of(lastTimestamp, lastSequence),
+                        srcPortCounts.clone(), dstPortCounts.clone(), bucketWidthMillis, bucketOrigin,
+                        Arrays.copyOf(bucketCounts, bucketLimit), finished);
+            }
+            return snapshot;
+        }
+    }
+
+    @NotNull
+    private static long[] increment(@NotNull long[] counts, int portId) {
+        if (portId < 0) {
+            throw new IllegalArgumentException("port ids must not be negative but got " + portId);
+        }
+        final long[] result = portId < counts.length ? counts : Arrays.copyOf(counts, portId + 1);
+        result[portId]++;
+        return result;
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.stats;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.services.Session;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+public interface MsgStatsService {
+
+    /**
+     * Queries a cold {@link Mono} which will return one of the following:
+     *  (1) If session is not recognised, this method will return a {@link Mono} that completes without emitting
+     *      any onNext value.
+     *  (2) If session is recognised, a {@link SessionStats} snapshot covering every msg up to (at least) the time of
+     *      the call.
+     *
+     * @param session the {@link Session} whose statistics will be returned.
+     * @return a {@link Mono} of the current {@link SessionStats} of a valid session. Otherwise just onComplete.
+     */
+    @NotNull
+    Mono<SessionStats> stats(@NotNull Session session);
+
+    /**
+     * Returns a {@link Flux} which emits at most one {@link SessionStatsDelta} per interval, each describing what
+     * changed since the previous emission. Intervals in which nothing changed are skipped. The {@link Flux} emits a
+     * final delta (see {@link SessionStatsDelta#isFinal()}) and completes once the session completes, and completes
+     * immediately if session is not recognised.
+     *
+     * @param session the {@link Session} whose statistics will be followed.
+     * @param interval the minimum time between two emissions.
+     * @return a throttled {@link Flux} of statistic deltas.
+     */
+    @NotNull
+    Flux<SessionStatsDelta> statsUpdates(@NotNull Session session, @NotNull Duration interval);
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.stats;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.Session;
+
+/**
+ * An immutable snapshot of the statistics of a {@link Session}'s msgs.
+ *
+ * Per-port counts are indexed by the port ids of {@link org.sireum.hamr.inspector.services.MsgCodec}. Msgs are also
+ * counted in consecutive time buckets of {@link #getBucketWidthMillis()}, the first of which starts at
+ * {@link #getBucketOrigin()}.
+ */
+public final class SessionStats {
+
+    @NotNull
+    private final Session session;
+
+    private final long count;
+    private final long bytes;
+
+    @Nullable
+    private final RecordId first;
+
+    @Nullable
+    private final RecordId last;
+
+    private final long[] srcPortCounts;
+    private final long[] dstPortCounts;
+
+    private final long bucketWidthMillis;
+    private final long bucketOrigin;
+    private final long[] bucketCounts;
+
+    private final boolean isFinal;
+
+    SessionStats(@NotNull Session session, long count, long bytes, @Nullable RecordId first, @Nullable RecordId last,
+                 long[] srcPortCounts, long[] dstPortCounts, long bucketWidthMillis, long bucketOrigin,
+                 long[] bucketCounts, boolean isFinal) {
+        this.session = session;
+        this.count = count;
+        this.bytes = bytes;
+        this.first = first;
+        this.last = last;
+        this.srcPortCounts = srcPortCounts;
+        this.dstPortCounts = dstPortCounts;
+        this.bucketWidthMillis = bucketWidthMillis;
+        this.bucketOrigin = bucketOrigin;
+        this.bucketCounts = bucketCounts;
+        this.isFinal = isFinal;
+    }
+
+    @NotNull
+    public Session getSession() {
+        return session;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the total encoded size of all msgs, as given by
+     *  {@link org.sireum.hamr.inspector.services.MsgCodec#encodedSize}.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the {@link RecordId} of the first msg, or null if there are none.
+     */
+    @Nullable
+    public RecordId getFirst() {
+        return first;
+    }
+
+    /**
+     * @return the {@link RecordId} of the last msg, or null if there are none.
+     */
+    @Nullable
+    public RecordId getLast() {
+        return last;
+    }
+
+    /**
+     * @return one more than the greatest port id seen so far.
+     */
+    public int getPortIdLimit() {
+        return Math.max(srcPortCounts.length, dstPortCounts.length);
+    }
+
+    public long getSrcPortCount(int portId) {
+        return portId >= 0 && portId < srcPortCounts.length ? srcPortCounts[portId] : 0L;
+    }
+
+    public long getDstPortCount(int portId) {
+        return portId >= 0 && portId < dstPortCounts.length ? dstPortCounts[portId] : 0L;
+    }
+
+    public long getBucketWidthMillis() {
+        return bucketWidthMillis;
+    }
+
+    /**
+     * @return the start time (in millis) of bucket 0.
+     */
+    public long getBucketOrigin() {
+        return bucketOrigin;
+    }
+
+    public int getBucketCount() {
+        return bucketCounts.length;
+    }
+
+    /**
+     * @return the number of msgs in [origin + bucket * width, origin + (bucket + 1) * width).
+     */
+    public long getBucketMsgCount(int bucket) {
+        return bucket >= 0 && bucket < bucketCounts.length ? bucketCounts[bucket] : 0L;
+    }
+
+    /**
+     * @return true if the session has completed, in which case these statistics will never change again.
+     */
+    public boolean isFinal() {
+        return isFinal;
+    }
+
+    @Override
+    public String toString() {
+        return "SessionStats{" +
+                "session=" + session +
+                ", count=" + count +
+                ", bytes=" + bytes +
+                ", first=" + first +
+                ", last=" + last +
+                ", buckets=" + bucketCounts.length +
+                ", isFinal=" + isFinal +
+                '}';
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.stats;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The change between two {@link SessionStats} snapshots of the same {@link org.sireum.hamr.inspector.services.Session}.
+ * Increments are computed on demand, so creating a delta costs nothing beyond holding both snapshots.
+ */
+public final class SessionStatsDelta {
+
+    @NotNull
+    private final SessionStats previous;
+
+    @NotNull
+    private final SessionStats current;
+
+    SessionStatsDelta(@NotNull SessionStats previous, @NotNull SessionStats current) {
+        this.previous = previous;
+        this.current = current;
+    }
+
+    /**
+     * @return the snapshot this delta leads to.
+     */
+    @NotNull
+    public SessionStats getSnapshot() {
+        return current;
+    }
+
+    public long getCountIncrement() {
+        return current.getCount() - previous.getCount();
+    }
+
+    public long getBytesIncrement() {
+        return current.getBytes() - previous.getBytes();
+    }
+
+    public long getSrcPortCountIncrement(int portId) {
+        return current.getSrcPortCount(portId) - previous.getSrcPortCount(portId);
+    }
+
+    public long getDstPortCountIncrement(int portId) {
+        return current.getDstPortCount(portId) - previous.getDstPortCount(portId);
+    }
+
+    /**
+     * @return the first bucket whose count may have changed. Buckets before it are unchanged since msgs arrive in
+     *  time order.
+     */
+    public int getFirstChangedBucket() {
+        return Math.max(0, previous.getBucketCount() - 1);
+    }
+
+    public long getBucketMsgCountIncrement(int bucket) {
+        return current.getBucketMsgCount(bucket) - previous.getBucketMsgCount(bucket);
+    }
+
+    public boolean isEmpty() {
+        return getCountIncrement() == 0L;
+    }
+
+    /**
+     * @return true if this is the last delta of the session.
+     */
+    public boolean isFinal() {
+        return current.isFinal();
+    }
+
+    @Override
+    public String toString() {
+        return "SessionStatsDelta{" +
+                "session=" + current.getSession() +
+                ", countIncrement=" + getCountIncrement() +
+                ", bytesIncrement=" + getBytesIncrement() +
+                ", isFinal=" + isFinal() +
+                '}';
+    }
+}
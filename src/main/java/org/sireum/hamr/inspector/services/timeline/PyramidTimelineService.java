@@ -0,0 +1,520 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.timeline;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.MsgCodec;
+import org.sireum.hamr.inspector.services.MsgService;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.Session;
+import org.sireum.hamr.inspector.services.SessionService;
+import org.sireum.hamr.inspector.services.SessionStatus;
+import org.springframework.data.domain.Range;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link TimelineService} backed by a precomputed pyramid of per-{@link Session} summaries at several resolutions.
+ *
+ * Level 0 of a pyramid summarizes each baseWidth of the session, and every level above it summarizes fanout cells
+ * of the level below. The first query for a {@link Session} builds its pyramid from a single replay and, if the
+ * session is still running, keeps it current by following {@link MsgService#live(Session, Range)} (updating one cell
+ * per level per msg), until the session completes and the pyramid is finalized. Each level holds one cell per width
+ * from the first to the last msg of the session, where empty cells are left unallocated.
+ *
+ * A query is answered bucket by bucket from the coarsest level whose width divides the bucket width, so it touches
+ * at most width / (level width) cells per bucket, and exactly one cell per bucket when the bucket width is a multiple
+ * of a level's width (see {@link #resolutions()}) and fromMillis is aligned to it. Its cost therefore grows with the
+ * number of buckets rather than the number of msgs. Where a bucket does not start or end on a cell of that level
+ * (such as after an unaligned fromMillis or before an unaligned toMillis), its head and tail are answered from the
+ * coarsest finer level whose cells fit in them, or (if none does) from an exact replay of less than one cell. Queries
+ * for widths which no level divides (such as zoomed-in views finer than baseWidth) replay the range exactly and never
+ * build a pyramid.
+ *
+ * To share the backend subscription with other live readers, pass a
+ * {@link org.sireum.hamr.inspector.services.live.LiveTailHub} as the {@link MsgService}.
+ */
+public final class PyramidTimelineService implements TimelineService {
+
+    @NotNull
+    private final MsgService msgService;
+
+    @NotNull
+    private final SessionService sessionService;
+
+    @NotNull
+    private final MsgCodec codec;
+
+    // the cell width (in millis) of each level, finest first
+    @NotNull
+    private final long[] widths;
+
+    private final ConcurrentMap<Session, Pyramid> pyramids = new ConcurrentHashMap<>();
+
+    /**
+     * @param msgService the source of msgs.
+     * @param sessionService used to tell running and completed sessions apart.
+     * @param codec used to read port ids and sizes of msgs.
+     * @param baseWidth the cell width of the finest level. Must be at least one millisecond.
+     * @param fanout the number of cells of one level summarized by each cell of the level above. Must be at least 2.
+     * @param levels the number of levels. Must be positive.
+     */
+    public PyramidTimelineService(@NotNull MsgService msgService, @NotNull SessionService sessionService,
+                                  @NotNull MsgCodec codec, @NotNull Duration baseWidth, int fanout, int levels) {
+        if (baseWidth.toMillis() <= 0) {
+            throw new IllegalArgumentException("baseWidth must be at least one millisecond but was " + baseWidth);
+        }
+        if (fanout < 2) {
+            throw new IllegalArgumentException("fanout must be at least 2 but was " + fanout);
+        }
+        if (levels <= 0) {
+            throw new IllegalArgumentException("levels must be positive but was " + levels);
+        }
+        this.msgService = msgService;
+        this.sessionService = sessionService;
+        this.codec = codec;
+        this.widths = new long[levels];
+        widths[0] = baseWidth.toMillis();
+        for (int i = 1; i < levels; i++) {
+            try {
+                widths[i] = Math.multiplyExact(widths[i - 1], fanout);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("the width of level " + i + " overflows a long", e);
+            }
+        }
+    }
+
+    /**
+     * @return the cell width of every level, finest first. Bucket widths which are multiples of a coarse level's
+     *  width are the cheapest to query.
+     */
+    @NotNull
+    public List<Duration> resolutions() {
+        final List<Duration> resolutions = new ArrayList<>(widths.length);
+        for (long width : widths) {
+            resolutions.add(Duration.ofMillis(width));
+        }
+        return resolutions;
+    }
+
+    @NotNull
+    @Override
+    public Flux<TimelineBucket> buckets(@NotNull Session session, long fromMillis, long toMillis,
+                                        @NotNull Duration width) {
+        final long widthMillis = width.toMillis();
+        if (widthMillis <= 0) {
+            throw new IllegalArgumentException("width must be at least one millisecond but was " + width);
+        }
+        if (toMillis < fromMillis) {
+            throw new IllegalArgumentException("toMillis (" + toMillis + ") must not be less than fromMillis ("
+                    + fromMillis + ")");
+        }
+        int level = widths.length - 1;
+        while (level >= 0 && widthMillis % widths[level] != 0) {
+            level--;
+        }
+        final List<Span> spans = new ArrayList<>();
+        if (level >= 0) {
+            for (long bucket = fromMillis; bucket < toMillis; bucket += Math.min(widthMillis, toMillis - bucket)) {
+                decompose(bucket, Math.min(bucket + widthMillis, toMillis), level, spans);
+            }
+        }
+        if (spans.stream().allMatch(span -> span.level < 0)) {
+            return Flux.defer(() -> {
+                final Aggregation aggregation = new Aggregation(fromMillis, widthMillis, toMillis);
+                return exact(session, fromMillis, toMillis, aggregation)
+                        .concatWith(Mono.fromSupplier(aggregation::flush));
+            });
+        }
+        return pyramid(session).flatMapMany(pyramid -> Mono.fromFuture(pyramid.caughtUp).thenMany(Flux.defer(() -> {
+            final Aggregation aggregation = new Aggregation(fromMillis, widthMillis, toMillis);
+            return Flux.fromIterable(spans)
+                    .concatMap(span -> {
+                        if (span.level < 0) {
+                            return exact(session, span.fromMillis, span.toMillis, aggregation);
+                        }
+                        final List<TimelineBucket> buckets = new ArrayList<>();
+                        pyramid.collect(span.level, span.fromMillis, span.toMillis, aggregation, buckets);
+                        return Flux.fromIterable(buckets);
+                    }, 1)
+                    .concatWith(Mono.fromSupplier(aggregation::flush));
+        })));
+    }
+
+    /**
+     * Splits the bucket between fromMillis and toMillis into the aligned cells of the coarsest level (no coarser than
+     * maxLevel) which fits in it, and the head and tail around them, which are split in the same way using only finer
+     * levels. What no level fits is replayed exactly. Each span is appended to spans, merged with the last span if it
+     * continues it at the same level.
+     */
+    private void decompose(long fromMillis, long toMillis, int maxLevel, @NotNull List<Span> spans) {
+        if (fromMillis >= toMillis) {
+            return;
+        }
+        for (int level = maxLevel; level >= 0; level--) {
+            final long width = widths[level];
+            final long first = -Math.floorDiv(-fromMillis, width) * width;
+            final long last = Math.floorDiv(toMillis, width) * width;
+            if (first < last) {
+                decompose(fromMillis, first, level - 1, spans);
+                append(spans, level, first, last);
+                decompose(last, toMillis, level - 1, spans);
+                return;
+            }
+        }
+        append(spans, -1, fromMillis, toMillis);
+    }
+
+    private static void append(@NotNull List<Span> spans, int level, long fromMillis, long toMillis) {
+        final Span previous = spans.isEmpty() ? null : spans.get(spans.size() - 1);
+        if (previous != null && previous.level == level && previous.toMillis == fromMillis) {
+            previous.toMillis = toMillis;
+        } else {
+            spans.add(new Span(level, fromMillis, toMillis));
+        }
+    }
+
+    /**
+     * Replays the msgs of session between fromMillis and toMillis into aggregation, emitting each bucket that
+     * completes. The last bucket is left in aggregation.
+     */
+    @NotNull
+    private Flux<TimelineBucket> exact(@NotNull Session session, long fromMillis, long toMillis,
+                                       @NotNull Aggregation aggregation) {
+        if (fromMillis == toMillis) {
+            return Flux.empty();
+        }
+        final Range<RecordId> range = Range.of(Range.Bound.inclusive(RecordId.of(fromMillis, Long.MIN_VALUE)),
+                Range.Bound.exclusive(RecordId.of(toMillis, Long.MIN_VALUE)));
+        return msgService.replay(session, range)
+                .<TimelineBucket>handle((msg, sink) -> {
+                    final TimelineBucket completed = aggregation.advance(msg.timestamp());
+                    if (completed != null) {
+                        sink.next(completed);
+                    }
+                    aggregation.current.observe(msg, codec);
+                });
+    }
+
+    @NotNull
+    private Mono<Pyramid> pyramid(@NotNull Session session) {
+        return Mono.defer(() -> {
+            final Pyramid existing = pyramids.get(session);
+            if (existing != null) {
+                return Mono.just(existing);
+            }
+            return sessionService.statusOf(session).map(status -> {
+                final Pyramid created = new Pyramid();
+                final Pyramid raced = pyramids.putIfAbsent(session, created);
+                if (raced != null) {
+                    return raced;
+                }
+                start(session, created, status);
+                return created;
+            });
+        });
+    }
+
+    private void start(@NotNull Session session, @NotNull Pyramid pyramid, @NotNull SessionStatus status) {
+        msgService.replay(session, Range.unbounded())
+                .doOnNext(pyramid::observe)
+                .then(Mono.fromRunnable(() -> pyramid.caughtUp.complete(null)))
+                .thenMany(Flux.defer(() -> status == SessionStatus.COMPLETED
+                        ? Flux.empty()
+                        : msgService.live(session, pyramid.resumeRange()).doOnNext(pyramid::observe)))
+                .subscribe(null, error -> {
+                    pyramids.remove(session, pyramid);
+                    pyramid.caughtUp.completeExceptionally(error);
+                }, pyramid::finish);
+    }
+
+    /**
+     * The levels of one {@link Session}. All fields are guarded by this.
+     */
+    private final class Pyramid {
+
+        private final CompletableFuture<Void> caughtUp = new CompletableFuture<>();
+
+        @NotNull
+        private final Level[] levels;
+
+        private long count = 0L;
+        private long lastTimestamp = 0L;
+        private long lastSequence = 0L;
+
+        private Pyramid() {
+            this.levels = new Level[widths.length];
+            for (int i = 0; i < levels.length; i++) {
+                levels[i] = new Level(widths[i]);
+            }
+        }
+
+        private synchronized void observe(@NotNull Msg msg) {
+            for (Level level : levels) {
+                level.cellOf(msg.timestamp()).observe(msg, codec);
+            }
+            count++;
+            lastTimestamp = msg.timestamp();
+            lastSequence = msg.sequence();
+        }
+
+        @NotNull
+        private synchronized Range<RecordId> resumeRange() {
+            if (count == 0L) {
+                return Range.unbounded();
+            }
+            return Range.of(Range.Bound.exclusive(RecordId.of(lastTimestamp, lastSequence)), Range.Bound.unbounded());
+        }
+
+        private synchronized void finish() {
+            for (Level level : levels) {
+                level.trim();
+            }
+        }
+
+        /**
+         * Adds the cells of level between fromMillis and toMillis (both multiples of the level's width) to
+         * aggregation, adding each bucket that completes to buckets.
+         */
+        private synchronized void collect(int level, long fromMillis, long toMillis, @NotNull Aggregation aggregation,
+                                          @NotNull List<TimelineBucket> buckets) {
+            final Level cells = levels[level];
+            if (cells.size == 0) {
+                return;
+            }
+            final long start = Math.max(Math.floorDiv(fromMillis, cells.width) - cells.origin, 0L);
+            final long end = Math.min(Math.floorDiv(toMillis, cells.width) - cells.origin, cells.size);
+            for (long i = start; i < end; i++) {
+                final Cell cell = cells.cells[(int) i];
+                if (cell != null) {
+                    final TimelineBucket completed = aggregation.advance((cells.origin + i) * cells.width);
+                    if (completed != null) {
+                        buckets.add(completed);
+                    }
+                    aggregation.current.add(cell);
+                }
+            }
+        }
+    }
+
+    /**
+     * The cells of one resolution from its first to its last msg, indexed by their start time divided by width less
+     * origin. The array is dense, but empty cells are null, so a gap in the session costs one reference per cell.
+     */
+    private static final class Level {
+
+        private final long width;
+
+        private long origin = 0L;
+
+        @NotNull
+        private Cell[] cells = new Cell[16];
+
+        private int size = 0;
+
+        private Level(long width) {
+            this.width = width;
+        }
+
+        @NotNull
+        private Cell cellOf(long timestamp) {
+            final long index = Math.floorDiv(timestamp, width);
+            if (size == 0) {
+                origin = index;
+            }
+            final long position = index - origin;
+            if (position < 0 || position >= Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("msg at " + timestamp + " does not fit in a level of width " + width
+                        + " starting at " + origin * width);
+            }
+            if (position >= cells.length) {
+                cells = Arrays.copyOf(cells, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(position + 1,
+                        2L * cells.length)));
+            }
+            size = (int) Math.max(size, position + 1);
+            Cell cell = cells[(int) position];
+            if (cell == null) {
+                cell = new Cell();
+                cells[(int) position] = cell;
+            }
+            return cell;
+        }
+
+        private void trim() {
+            cells = Arrays.copyOf(cells, size);
+        }
+    }
+
+    /**
+     * A part of a query which is answered from the cells of level, or (if level is negative) from an exact replay.
+     */
+    private static final class Span {
+
+        private final int level;
+
+        private final long fromMillis;
+
+        private long toMillis;
+
+        private Span(int level, long fromMillis, long toMillis) {
+            this.level = level;
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+        }
+    }
+
+    /**
+     * Merges cells and msgs (in order) into the buckets of a query, starting at origin.
+     */
+    private static final class Aggregation {
+
+        private final long origin;
+
+        private final long width;
+
+        private final long toMillis;
+
+        // the index of the bucket current belongs to
+        private long index = -1L;
+
+        @NotNull
+        private Cell current = new Cell();
+
+        private Aggregation(long origin, long width, long toMillis) {
+            this.origin = origin;
+            this.width = width;
+            this.toMillis = toMillis;
+        }
+
+        /**
+         * Moves current to the bucket holding timestamp.
+         *
+         * @return the previous bucket if this completed it, or null.
+         */
+        @Nullable
+        private TimelineBucket advance(long timestamp) {
+            final long next = Math.floorDiv(timestamp - origin, width);
+            if (next == index) {
+                return null;
+            }
+            final TimelineBucket completed = flush();
+            index = next;
+            return completed;
+        }
+
+        @Nullable
+        private TimelineBucket flush() {
+            if (current.count == 0L) {
+                return null;
+            }
+            final long start = origin + index * width;
+            final TimelineBucket bucket = current.toBucket(start, Math.min(start + width, toMillis));
+            current = new Cell();
+            return bucket;
+        }
+    }
+
+    /**
+     * The running summary of some consecutive msgs.
+     */
+    private static final class Cell {
+
+        private long count = 0L;
+        private long bytes = 0L;
+        private long firstTimestamp = 0L;
+        private long firstSequence = 0L;
+        private long lastTimestamp = 0L;
+        private long lastSequence = 0L;
+        private long[] srcPortCounts = new long[0];
+        private long[] dstPortCounts = new long[0];
+
+        private void observe(@NotNull Msg msg, @NotNull MsgCodec codec) {
+            if (count == 0L) {
+                firstTimestamp = msg.timestamp();
+                firstSequence = msg.sequence();
+            }
+            count++;
+            bytes += codec.encodedSize(msg);
+            lastTimestamp = msg.timestamp();
+            lastSequence = msg.sequence();
+            srcPortCounts = increment(srcPortCounts, codec.srcPortId(msg));
+            dstPortCounts = increment(dstPortCounts, codec.dstPortId(msg));
+        }
+
+        /**
+         * Adds other, whose msgs all follow the msgs of this.
+         */
+        private void add(@NotNull Cell other) {
+            if (count == 0L) {
+                firstTimestamp = other.firstTimestamp;
+                firstSequence = other.firstSequence;
+            }
+            count += other.count;
+            bytes += other.bytes;
+            lastTimestamp = other.lastTimestamp;
+            lastSequence = other.lastSequence;
+            srcPortCounts = add(srcPortCounts, other.srcPortCounts);
+            dstPortCounts = add(dstPortCounts, other.dstPortCounts);
+        }
+
+        @NotNull
+        private TimelineBucket toBucket(long startMillis, long endMillis) {
+            return new TimelineBucket(startMillis, endMillis, count, bytes,
+                    RecordId.of(firstTimestamp, firstSequence), RecordId.of(lastTimestamp, lastSequence),
+                    srcPortCounts, dstPortCounts);
+        }
+
+        @NotNull
+        private static long[] add(@NotNull long[] counts, @NotNull long[] other) {
+            final long[] result = other.length <= counts.length ? counts : Arrays.copyOf(counts, other.length);
+            for (int i = 0; i < other.length; i++) {
+                result[i] += other[i];
+            }
+            return result;
+        }
+
+        @NotNull
+        private static long[] increment(@NotNull long[] counts, int portId) {
+            if (portId < 0) {
+                throw new IllegalArgumentException("port ids must not be negative but got " + portId);
+            }
+            final long[] result = portId < counts.length ? counts : Arrays.copyOf(counts, portId + 1);
+            result[portId]++;
+            return result;
+        }
+    }
+
+}
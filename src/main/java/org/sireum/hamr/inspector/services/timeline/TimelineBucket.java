@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.timeline;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.services.RecordId;
+
+/**
+ * An immutable summary of the msgs of one {@link org.sireum.hamr.inspector.services.Session} whose timestamps lie in
+ * [{@link #getStartMillis()}, {@link #getEndMillis()}). A bucket always holds at least one msg.
+ *
+ * Per-port counts are indexed by the port ids of {@link org.sireum.hamr.inspector.services.MsgCodec}.
+ */
+public final class TimelineBucket {
+
+    private final long startMillis;
+    private final long endMillis;
+    private final long count;
+    private final long bytes;
+
+    @NotNull
+    private final RecordId first;
+
+    @NotNull
+    private final RecordId last;
+
+    private final long[] srcPortCounts;
+    private final long[] dstPortCounts;
+
+    TimelineBucket(long startMillis, long endMillis, long count, long bytes, @NotNull RecordId first,
+                   @NotNull RecordId last, long[] srcPortCounts, long[] dstPortCounts) {
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+        this.count = count;
+        this.bytes = bytes;
+        this.first = first;
+        this.last = last;
+        this.srcPortCounts = srcPortCounts;
+        this.dstPortCounts = dstPortCounts;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * @return the (exclusive) end of this bucket.
+     */
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the total encoded size of the msgs, as given by
+     *  {@link org.sireum.hamr.inspector.services.MsgCodec#encodedSize}.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the {@link RecordId} of the first msg, which (made inclusive) is a valid left-bound for replaying the
+     *  msgs of this bucket exactly.
+     */
+    @NotNull
+    public RecordId getFirst() {
+        return first;
+    }
+
+    /**
+     * @return the {@link RecordId} of the last msg.
+     */
+    @NotNull
+    public RecordId getLast() {
+        return last;
+    }
+
+    /**
+     * @return one more than the greatest port id in this bucket.
+     */
+    public int getPortIdLimit() {
+        return Math.max(srcPortCounts.length, dstPortCounts.length);
+    }
+
+    public long getSrcPortCount(int portId) {
+        return portId >= 0 && portId < srcPortCounts.length ? srcPortCounts[portId] : 0L;
+    }
+
+    public long getDstPortCount(int portId) {
+        return portId >= 0 && portId < dstPortCounts.length ? dstPortCounts[portId] : 0L;
+    }
+
+    @Override
+    public String toString() {
+        return "TimelineBucket{" +
+                "startMillis=" + startMillis +
+                ", endMillis=" + endMillis +
+                ", count=" + count +
+                ", bytes=" + bytes +
+                ", first=" + first +
+                ", last=" + last +
+                '}';
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.timeline;
+
+import org.jetbrains.annotations.NotNull;
+import org.sireum.hamr.inspector.services.Session;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+public interface TimelineService {
+
+    /**
+     * Returns a cold {@link Flux} of the activity of session between fromMillis (inclusive) and toMillis (exclusive),
+     * aggregated into consecutive buckets of width, the first of which starts at fromMillis. The last bucket is cut
+     * short at toMillis if width does not divide the range.
+     *
+     * Only buckets holding at least one msg are emitted, in order. A running session is aggregated up to (at least)
+     * the time of the call. If session is not recognised, the {@link Flux} completes empty.
+     *
+     * @param session the {@link Session} whose activity will be returned.
+     * @param fromMillis the start of the range (in millis).
+     * @param toMillis the end of the range (in millis). Must not be less than fromMillis.
+     * @param width the width of each bucket. Must be at least one millisecond; any sub-millisecond part is ignored.
+     * @return a {@link Flux} of the non-empty buckets of the range.
+     */
+    @NotNull
+    Flux<TimelineBucket> buckets(@NotNull Session session, long fromMillis, long toMillis, @NotNull Duration width);
+
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.MsgCodec;
+import org.sireum.hamr.inspector.services.MsgService;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.RecordRanges;
+import org.sireum.hamr.inspector.services.Session;
+import org.sireum.hamr.inspector.services.memory.InMemoryMsgService;
+import org.sireum.hamr.inspector.services.memory.InMemorySessionService;
+import org.springframework.data.domain.Range;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentCachingMsgServiceTest {
+
+    private static final int LENGTH = 100;
+
+    // every msg is sized as MSG_BYTES by the codec
+    private static final int MSG_BYTES = 8;
+
+    private final Session session = new Session("session");
+
+    private InMemoryMsgService msgService;
+
+    private InMemorySessionService sessionService;
+
+    private CountingMsgService backend;
+
+    @BeforeEach
+    void setUp() {
+        msgService = new InMemoryMsgService();
+        sessionService = new InMemorySessionService(Duration.ofMillis(5), 16);
+        sessionService.start(session, 0L);
+        for (int i = 0; i < LENGTH; i++) {
+            msgService.append(session, new Msg(null, null, null, 1000L + i, 0L));
+        }
+        backend = new CountingMsgService(msgService);
+    }
+
+    @Test
+    void repeatedReadsOfACompletedSessionNeverReachTheBackend() {
+        complete();
+        final SegmentCachingMsgService cache = new SegmentCachingMsgService(backend, sessionService, new Codec(),
+                1L << 20);
+        final Range<RecordId> range = closed(10, 20);
+
+        assertEquals(range(10, 21), ids(cache.replay(session, range)));
+        final int calls = backend.calls.get();
+        assertTrue(calls > 0);
+        assertEquals(range(10, 21), ids(cache.replay(session, range)));
+        assertEquals(reversed(range(10, 21)), ids(cache.replayReverse(session, range)));
+        assertEquals(calls, backend.calls.get());
+        assertEquals(3L, cache.stats().getRequests());
+        assertEquals(2L, cache.stats().getHits());
+
+        final Range<RecordId> reverseRange = closed(40, 60);
+        assertEquals(reversed(range(40, 61)), ids(cache.replayReverse(session, reverseRange)));
+        final int reverseCalls = backend.calls.get();
+        assertEquals(reversed(range(40, 61)), ids(cache.replayReverse(session, reverseRange)));
+        assertEquals(reverseCalls, backend.calls.get());
+        assertEquals(3L, cache.stats().getHits());
+    }
+
+    @Test
+    void runningSessionIsCachedOnlyBelowItsTail() {
+        final SegmentCachingMsgService cache = new SegmentCachingMsgService(backend, sessionService, new Codec(),
+                1L << 20);
+        // ends between two msgs, so the gap reaches past its own last msg
+        final Range<RecordId> range = Range.of(Range.Bound.inclusive(RecordId.of(1010L, 0L)),
+                Range.Bound.exclusive(RecordId.of(1020L, 5L)));
+        assertEquals(range(10, 21), ids(cache.replay(session, range)));
+        final int calls = backend.calls.get();
+        assertEquals(range(10, 21), ids(cache.replay(session, range)));
+        assertEquals(calls, backend.calls.get());
+        assertEquals(1L, cache.stats().getHits());
+
+        // the part above the tail is read again, so appended msgs are seen
+        assertEquals(range(0, LENGTH), ids(cache.replay(session, Range.unbounded())));
+        msgService.append(session, new Msg(null, null, null, 1000L + LENGTH, 0L));
+        final int beforeTail = backend.calls.get();
+        assertEquals(range(0, LENGTH + 1), ids(cache.replay(session, Range.unbounded())));
+        assertTrue(backend.calls.get() > beforeTail);
+
+        // everything below the tail stays cached
+        final int belowTail = backend.calls.get();
+        assertEquals(range(0, LENGTH + 1), ids(cache.replay(session, closed(0, LENGTH))));
+        assertEquals(belowTail, backend.calls.get());
+    }
+
+    @Test
+    void cancelledReverseReadCachesOnlyItsUpperPart() {
+        complete();
+        final SegmentCachingMsgService cache = new SegmentCachingMsgService(backend, sessionService, new Codec(),
+                1L << 20);
+        assertEquals(reversed(range(LENGTH - 10, LENGTH)),
+                ids(cache.replayReverse(session, Range.unbounded()).take(10)));
+
+        final int calls = backend.calls.get();
+        final Range<RecordId> upper = Range.of(Range.Bound.inclusive(RecordId.of(1000L + LENGTH - 10, 0L)),
+                Range.Bound.unbounded());
+        assertEquals(range(LENGTH - 10, LENGTH), ids(cache.replay(session, upper)));
+        assertEquals(calls, backend.calls.get());
+
+        assertEquals(range(0, LENGTH), ids(cache.replay(session, Range.unbounded())));
+        assertTrue(backend.calls.get() > calls);
+    }
+
+    @Test
+    void evictionKeepsTheCacheWithinMaxBytes() {
+        complete();
+        final long maxBytes = 25L * MSG_BYTES;
+        final SegmentCachingMsgService cache = new SegmentCachingMsgService(backend, sessionService, new Codec(),
+                maxBytes);
+        for (int from = 0; from < LENGTH; from += 10) {
+            assertEquals(range(from, from + 10), ids(cache.replay(session, closed(from, from + 9))));
+            assertTrue(cache.stats().getBytes() <= maxBytes, "cached " + cache.stats().getBytes() + " bytes");
+        }
+        assertTrue(cache.stats().getEvictions() > 0L);
+
+        // the most recently read range survives
+        final int calls = backend.calls.get();
+        assertEquals(range(LENGTH - 10, LENGTH), ids(cache.replay(session, closed(LENGTH - 10, LENGTH - 1))));
+        assertEquals(calls, backend.calls.get());
+    }
+
+    private void complete() {
+        msgService.complete(session);
+        sessionService.complete(session, 1L);
+    }
+
+    private static Range<RecordId> closed(int from, int to) {
+        return Range.of(Range.Bound.inclusive(RecordId.of(1000L + from, 0L)),
+                Range.Bound.inclusive(RecordId.of(1000L + to, 0L)));
+    }
+
+    private static List<RecordId> ids(Flux<Msg> msgs) {
+        return msgs.map(RecordRanges::idOf).collectList().block(Duration.ofSeconds(10));
+    }
+
+    private static List<RecordId> range(int from, int to) {
+        return LongStream.range(from, to)
+                .mapToObj(i -> RecordId.of(1000L + i, 0L))
+                .collect(Collectors.toList());
+    }
+
+    private static List<RecordId> reversed(List<RecordId> ids) {
+        final List<RecordId> reversed = new ArrayList<>(ids);
+        Collections.reverse(reversed);
+        return reversed;
+    }
+
+    /**
+     * Counts the replays which reach the backend.
+     */
+    private static final class CountingMsgService implements MsgService {
+
+        private final MsgService delegate;
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private CountingMsgService(MsgService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Mono<Long> count(Session session) {
+            return delegate.count(session);
+        }
+
+        @Override
+        public Flux<Msg> live(Session session, Range<RecordId> range) {
+            return delegate.live(session, range);
+        }
+
+        @Override
+        public Flux<Msg> replay(Session session, Range<RecordId> range) {
+            return delegate.replay(session, range).doOnSubscribe(unused -> calls.incrementAndGet());
+        }
+
+        @Override
+        public Flux<Msg> replayReverse(Session session, Range<RecordId> range) {
+            return delegate.replayReverse(session, range).doOnSubscribe(unused -> calls.incrementAndGet());
+        }
+    }
+
+    private static final class Codec implements MsgCodec {
+
+        @Override
+        public int srcPortId(Msg msg) {
+            return 0;
+        }
+
+        @Override
+        public int dstPortId(Msg msg) {
+            return 0;
+        }
+
+        @Override
+        public int componentIdOf(int portId) {
+            return 0;
+        }
+
+        @Override
+        public byte[] encode(Msg msg) {
+            return ByteBuffer.allocate(MSG_BYTES).putLong(msg.timestamp()).array();
+        }
+
+        @Override
+        public Msg decode(ByteBuffer buffer) {
+            return new Msg(null, null, null, buffer.getLong(), 0L);
+        }
+    }
+
+}
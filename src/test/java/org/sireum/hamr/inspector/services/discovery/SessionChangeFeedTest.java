@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.discovery;
+
+import org.junit.jupiter.api.Test;
+import org.sireum.hamr.inspector.services.Session;
+import org.sireum.hamr.inspector.services.SessionService;
+import org.sireum.hamr.inspector.services.SessionStatus;
+import org.sireum.hamr.inspector.services.memory.InMemorySessionService;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.GroupedFlux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionChangeFeedTest {
+
+    private static final Duration WINDOW = Duration.ofMillis(5);
+
+    private static final int MAX_BATCH = 256;
+
+    private static final int STARTED = 50;
+
+    private static final int COMPLETED = 10;
+
+    @Test
+    void costOfChangesDoesNotGrowWithTheNumberOfSessions() throws InterruptedException {
+        final int[] sizes = { 10, 1_000, 100_000 };
+        final long[] elapsed = new long[sizes.length];
+        final long[] cpu = new long[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            final int size = sizes[i];
+            final InMemorySessionService sessions = new InMemorySessionService(WINDOW, MAX_BATCH);
+            for (int j = 0; j < size; j++) {
+                sessions.start(new Session("existing-" + j), j);
+            }
+            final CountingSessionService counting = new CountingSessionService(sessions);
+            final SessionChangeFeed feed = new SessionChangeFeed(counting, sessions, WINDOW, MAX_BATCH, 1);
+
+            // every started session emits RUNNING, and every completed one RUNNING and then COMPLETED
+            final CountDownLatch received = new CountDownLatch(STARTED + 2 * COMPLETED);
+            final Map<Session, List<SessionStatus>> statuses = new ConcurrentHashMap<>();
+            final Disposable subscription = feed.liveStatusUpdates()
+                    .flatMap(group -> group.doOnNext(status -> statuses
+                            .computeIfAbsent(group.key(), unused -> new ArrayList<>()).add(status)))
+                    .subscribe(unused -> received.countDown());
+            try {
+                awaitStatusReads(counting, size);
+
+                final long startNanos = System.nanoTime();
+                final long startCpu = processCpuTime();
+                for (int j = 0; j < STARTED; j++) {
+                    sessions.start(new Session("started-" + j), size + j);
+                }
+                for (int j = 0; j < COMPLETED; j++) {
+                    sessions.complete(new Session("existing-" + j), size + STARTED + j);
+                }
+                assertTrue(received.await(10, TimeUnit.SECONDS), "updates of " + size + " sessions");
+                elapsed[i] = System.nanoTime() - startNanos;
+                cpu[i] = processCpuTime() - startCpu;
+
+                assertEquals(1, counting.listings.get(), "listings of " + size + " sessions");
+                assertEquals(size + STARTED + COMPLETED, counting.statusReads.get(),
+                        "status reads of " + size + " sessions");
+                for (int j = 0; j < STARTED; j++) {
+                    assertEquals(List.of(SessionStatus.RUNNING), statuses.get(new Session("started-" + j)));
+                }
+                for (int j = 0; j < COMPLETED; j++) {
+                    assertEquals(List.of(SessionStatus.RUNNING, SessionStatus.COMPLETED),
+                            statuses.get(new Session("existing-" + j)));
+                }
+            } finally {
+                subscription.dispose();
+            }
+        }
+
+        // generous slack, as the changes take only a few coalesce windows at any size
+        final int last = sizes.length - 1;
+        assertTrue(elapsed[last] <= 4 * elapsed[0] + TimeUnit.MILLISECONDS.toNanos(250),
+                "latency grew from " + elapsed[0] + "ns to " + elapsed[last] + "ns");
+        assertTrue(cpu[last] <= 4 * cpu[0] + TimeUnit.MILLISECONDS.toNanos(500),
+                "cpu time grew from " + cpu[0] + "ns to " + cpu[last] + "ns");
+    }
+
+    @Test
+    void failedLoadIsRetriedByTheNextSubscriber() {
+        final InMemorySessionService sessions = new InMemorySessionService(WINDOW, MAX_BATCH);
+        final Session session = new Session("session");
+        sessions.start(session, 0L);
+        final AtomicInteger listings = new AtomicInteger();
+        final CountingSessionService failingOnce = new CountingSessionService(sessions) {
+            @Override
+            public Flux<Session> sessions() {
+                return listings.getAndIncrement() == 0
+                        ? Flux.error(new IllegalStateException("unavailable"))
+                        : super.sessions();
+            }
+        };
+        final SessionChangeFeed feed = new SessionChangeFeed(failingOnce, sessions, WINDOW, MAX_BATCH, 1);
+
+        StepVerifier.create(feed.liveStatusUpdates())
+                .verifyError(IllegalStateException.class);
+
+        StepVerifier.create(feed.liveStatusUpdates().flatMap(group -> group.map(status -> group.key() + " " + status)))
+                .then(() -> sessions.complete(session, 1L))
+                .expectNext("session RUNNING", "session COMPLETED")
+                .thenCancel()
+                .verify(Duration.ofSeconds(10));
+        assertEquals(2, listings.get());
+    }
+
+    private static void awaitStatusReads(CountingSessionService counting, int reads) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (counting.statusReads.get() < reads) {
+            assertTrue(System.nanoTime() < deadline, "load of " + reads + " sessions");
+            Thread.sleep(1L);
+        }
+    }
+
+    private static long processCpuTime() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                .getProcessCpuTime();
+    }
+
+    /**
+     * Counts the listings and status reads which reach the delegate.
+     */
+    private static class CountingSessionService implements SessionService {
+
+        private final SessionService delegate;
+
+        private final AtomicInteger listings = new AtomicInteger();
+
+        private final AtomicInteger statusReads = new AtomicInteger();
+
+        private CountingSessionService(SessionService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Flux<Session> sessions() {
+            return delegate.sessions().doOnSubscribe(unused -> listings.incrementAndGet());
+        }
+
+        @Override
+        public Mono<Long> startTimeOf(Session session) {
+            return delegate.startTimeOf(session);
+        }
+
+        @Override
+        public Mono<Long> stopTimeOf(Session session) {
+            return delegate.stopTimeOf(session);
+        }
+
+        @Override
+        public Mono<SessionStatus> statusOf(Session session) {
+            return delegate.statusOf(session).doOnSubscribe(unused -> statusReads.incrementAndGet());
+        }
+
+        @Override
+        public Flux<GroupedFlux<Session, SessionStatus>> liveStatusUpdates() {
+            return delegate.liveStatusUpdates();
+        }
+    }
+
+}
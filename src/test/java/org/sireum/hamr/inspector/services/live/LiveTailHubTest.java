@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.live;
+
+import org.junit.jupiter.api.Test;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.MsgService;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.RecordRanges;
+import org.sireum.hamr.inspector.services.Session;
+import org.sireum.hamr.inspector.services.memory.InMemoryMsgService;
+import org.springframework.data.domain.Range;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LiveTailHubTest {
+
+    private static final int LENGTH = 1000;
+
+    private final Session session = new Session("session");
+
+    @Test
+    void lateSubscriberAboveTheRingStartsAtItsLowerBound() throws InterruptedException {
+        final InMemoryMsgService msgService = new InMemoryMsgService();
+        for (int i = 0; i < LENGTH; i++) {
+            msgService.append(session, new Msg(null, null, null, 1000L + i, 0L));
+        }
+        msgService.complete(session);
+        final LiveTailHub hub = new LiveTailHub(new SlowLive(msgService), 100, OverflowPolicy.BUFFER, LENGTH);
+
+        final RecordId from = RecordId.of(1900L, 0L);
+        final List<RecordId> expected = LongStream.range(1900L, 1000L + LENGTH)
+                .mapToObj(timestamp -> RecordId.of(timestamp, 0L))
+                .collect(Collectors.toList());
+
+        // the first subscriber starts the shared upstream, which is still far below from when the second attaches
+        final CountDownLatch started = new CountDownLatch(50);
+        final Disposable first = hub.live(session, Range.unbounded()).subscribe(unused -> started.countDown());
+        try {
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            final List<RecordId> actual = hub.live(session, Range.of(Range.Bound.inclusive(from),
+                    Range.Bound.unbounded()))
+                    .map(RecordRanges::idOf)
+                    .collectList()
+                    .block(Duration.ofSeconds(10));
+            assertEquals(expected, actual);
+        } finally {
+            first.dispose();
+        }
+    }
+
+    /**
+     * Delays every live msg, so that the ring lags far behind the end of the session.
+     */
+    private static final class SlowLive implements MsgService {
+
+        private final MsgService delegate;
+
+        private SlowLive(MsgService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Mono<Long> count(Session session) {
+            return delegate.count(session);
+        }
+
+        @Override
+        public Flux<Msg> live(Session session, Range<RecordId> range) {
+            return delegate.live(session, range).delayElements(Duration.ofMillis(1));
+        }
+
+        @Override
+        public Flux<Msg> replay(Session session, Range<RecordId> range) {
+            return delegate.replay(session, range);
+        }
+
+        @Override
+        public Flux<Msg> replayReverse(Session session, Range<RecordId> range) {
+            return delegate.replayReverse(session, range);
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.live;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.MsgService;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.RecordRanges;
+import org.sireum.hamr.inspector.services.Session;
+import org.sireum.hamr.inspector.services.memory.InMemoryMsgService;
+import org.springframework.data.domain.Range;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ResumableLiveTest {
+
+    private static final int LENGTH = 100;
+
+    private static final int FAIL_AFTER = 40;
+
+    private final Session session = new Session("session");
+
+    private FailingLive msgService;
+
+    private ResumableLive live;
+
+    @BeforeEach
+    void setUp() {
+        final InMemoryMsgService delegate = new InMemoryMsgService();
+        for (int i = 0; i < LENGTH; i++) {
+            delegate.append(session, new Msg(null, null, null, 1000L + i, 0L));
+        }
+        delegate.complete(session);
+        msgService = new FailingLive(delegate);
+        live = new ResumableLive(msgService, Duration.ofMillis(1), Duration.ofMillis(10), 3);
+    }
+
+    @Test
+    void resumesAfterTheLastAckWithoutGapsOrDuplicatesAcrossABackendError() {
+        final LiveCursor cursor = live.open(session);
+        final List<RecordId> first = ids(cursor.msgs().take(60).collectList().block(Duration.ofSeconds(10)));
+        assertEquals(range(0, 60), first);
+        assertEquals(2, msgService.subscriptions.get());
+
+        cursor.ack(first.get(49));
+        final LiveCursor resumed = live.resume(cursor.token());
+        // the token's own position has been acknowledged already
+        resumed.ack(first.get(49));
+        resumed.ack(first.get(10));
+        assertEquals(range(50, LENGTH), ids(resumed.msgs().collectList().block(Duration.ofSeconds(10))));
+    }
+
+    @Test
+    void msgsDeliveredBeforeAReSubscriptionCanStillBeAcknowledged() {
+        final LiveCursor cursor = live.open(session);
+        final List<RecordId> first = ids(cursor.msgs().take(60).collectList().block(Duration.ofSeconds(10)));
+        cursor.ack(first.get(29));
+
+        assertEquals(range(30, 31), ids(cursor.msgs().take(1).collectList().block(Duration.ofSeconds(10))));
+        cursor.ack(first.get(49));
+        assertEquals(range(50, LENGTH), ids(live.resume(cursor.token()).msgs().collectList()
+                .block(Duration.ofSeconds(10))));
+    }
+
+    private static List<RecordId> ids(List<Msg> msgs) {
+        return msgs.stream().map(RecordRanges::idOf).collect(Collectors.toList());
+    }
+
+    private static List<RecordId> range(int from, int to) {
+        return LongStream.range(from, to)
+                .mapToObj(i -> RecordId.of(1000L + i, 0L))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Fails the first live stream after {@link #FAIL_AFTER} msgs, like a backend connection dropping mid-session.
+     */
+    private static final class FailingLive implements MsgService {
+
+        private final MsgService delegate;
+
+        private final AtomicInteger subscriptions = new AtomicInteger();
+
+        private FailingLive(MsgService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Mono<Long> count(Session session) {
+            return delegate.count(session);
+        }
+
+        @Override
+        public Flux<Msg> live(Session session, Range<RecordId> range) {
+            return Flux.defer(() -> subscriptions.getAndIncrement() == 0
+                    ? delegate.live(session, range).take(FAIL_AFTER)
+                            .concatWith(Flux.error(new IOException("connection reset")))
+                    : delegate.live(session, range));
+        }
+
+        @Override
+        public Flux<Msg> replay(Session session, Range<RecordId> range) {
+            return delegate.replay(session, range);
+        }
+
+        @Override
+        public Flux<Msg> replayReverse(Session session, Range<RecordId> range) {
+            return delegate.replayReverse(session, range);
+        }
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.replay;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.RecordRanges;
+import org.sireum.hamr.inspector.services.Session;
+import org.sireum.hamr.inspector.services.memory.InMemoryMsgService;
+import org.springframework.data.domain.Range;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PagedReplayTest {
+
+    private static final int LENGTH = 12;
+
+    private final Session session = new Session("session");
+
+    private InMemoryMsgService msgService;
+
+    private List<Msg> msgs;
+
+    @BeforeEach
+    void setUp() {
+        msgService = new InMemoryMsgService();
+        msgs = new ArrayList<>();
+        for (int i = 0; i < LENGTH; i++) {
+            // two msgs per millisecond, so that bounds also fall between sequences of the same timestamp
+            final Msg msg = new Msg(null, null, null, 1000L + i / 2, i);
+            msgs.add(msg);
+            msgService.append(session, msg);
+        }
+    }
+
+    @Test
+    void chunkBoundariesNeverDropOrDuplicateARecordId() {
+        final List<Range<RecordId>> ranges = new ArrayList<>();
+        ranges.add(Range.unbounded());
+        for (int from : new int[] { 0, 3, 6 }) {
+            for (int to : new int[] { 6, 9, LENGTH - 1 }) {
+                ranges.add(Range.of(Range.Bound.inclusive(idOf(from)), Range.Bound.inclusive(idOf(to))));
+                ranges.add(Range.of(Range.Bound.exclusive(idOf(from)), Range.Bound.exclusive(idOf(to))));
+                ranges.add(Range.of(Range.Bound.inclusive(idOf(from)), Range.Bound.exclusive(idOf(to))));
+                ranges.add(Range.of(Range.Bound.exclusive(idOf(from)), Range.Bound.inclusive(idOf(to))));
+            }
+            ranges.add(Range.of(Range.Bound.exclusive(idOf(from)), Range.Bound.unbounded()));
+            ranges.add(Range.of(Range.Bound.unbounded(), Range.Bound.inclusive(idOf(from))));
+        }
+
+        // one, a divisor of the session length, a non-divisor, the session length and more than the session length
+        for (int chunkSize : new int[] { 1, 4, 5, LENGTH, LENGTH + 1 }) {
+            for (Range<RecordId> range : ranges) {
+                final List<RecordId> expected = ids(msgService.replay(session, range).collectList().block());
+                final List<List<Msg>> chunks = msgService.replayBatched(session, range, chunkSize, 2)
+                        .collectList().block();
+
+                final List<RecordId> actual = new ArrayList<>();
+                for (List<Msg> chunk : chunks) {
+                    assertFalse(chunk.isEmpty(), "empty chunk for " + range);
+                    assertTrue(chunk.size() <= chunkSize, "oversized chunk for " + range);
+                    actual.addAll(ids(chunk));
+                }
+                assertEquals(expected, actual, "chunkSize " + chunkSize + ", range " + range);
+            }
+        }
+    }
+
+    @Test
+    void runningSessionIsPinnedAtSubscription() {
+        StepVerifier.create(msgService.replayBatched(session, Range.unbounded(), 5, 1), 1)
+                .expectNextCount(1)
+                .then(() -> {
+                    for (int i = LENGTH; i < 2 * LENGTH; i++) {
+                        msgService.append(session, new Msg(null, null, null, 2000L + i, i));
+                    }
+                })
+                .thenRequest(Long.MAX_VALUE)
+                .expectNext(msgs.subList(5, 10), msgs.subList(10, LENGTH))
+                .verifyComplete();
+    }
+
+    @Test
+    void emptySessionHasNoChunks() {
+        StepVerifier.create(msgService.replayBatched(new Session("empty"), Range.unbounded(), 5, 1))
+                .verifyComplete();
+    }
+
+    @Test
+    void rightBoundIsRequiredWithoutLastId() {
+        final PagedReplay.PageSource source = (s, range, limit) -> Mono.just(List.of());
+        assertThrows(IllegalArgumentException.class,
+                () -> PagedReplay.replay(source, session, Range.unbounded(), 5, 1));
+    }
+
+    private static List<RecordId> ids(List<Msg> msgs) {
+        return msgs.stream().map(RecordRanges::idOf).collect(Collectors.toList());
+    }
+
+    private RecordId idOf(int index) {
+        return RecordRanges.idOf(msgs.get(index));
+    }
+
+}
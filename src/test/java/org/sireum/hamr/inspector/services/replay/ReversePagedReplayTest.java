@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2020, Matthew Weis, Kansas State University
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.sireum.hamr.inspector.services.replay;
+
+import org.junit.jupiter.api.Test;
+import org.sireum.hamr.inspector.common.Msg;
+import org.sireum.hamr.inspector.services.RecordId;
+import org.sireum.hamr.inspector.services.RecordRanges;
+import org.sireum.hamr.inspector.services.Session;
+import org.springframework.data.domain.Range;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReversePagedReplayTest {
+
+    private static final int FIRST_SCREEN = 50;
+
+    private final Session session = new Session("session");
+
+    @Test
+    void reversedOutputEqualsReversedReplay() {
+        final ArraySource source = new ArraySource();
+        long timestamp = 1000L;
+        for (int i = 0; i < 20; i++) {
+            source.add(timestamp++, 0L);
+        }
+        // a burst of many msgs in a single millisecond
+        for (int i = 0; i < 500; i++) {
+            source.add(timestamp, i);
+        }
+        // a long empty gap, then sparse msgs separated by shorter gaps
+        timestamp += 1_000_000_000L;
+        for (int i = 0; i < 50; i++) {
+            source.add(timestamp, 0L);
+            timestamp += 1 + i * 1000L;
+        }
+        for (int i = 0; i < 3; i++) {
+            source.add(timestamp, i);
+        }
+
+        final List<Range<RecordId>> ranges = new ArrayList<>();
+        ranges.add(Range.unbounded());
+        final RecordId[] bounds = {
+                source.idAt(0), source.idAt(19), source.idAt(20), source.idAt(270), source.idAt(519),
+                source.idAt(520), source.idAt(545), source.idAt(source.size() - 1)
+        };
+        for (RecordId from : bounds) {
+            ranges.add(Range.of(Range.Bound.exclusive(from), Range.Bound.unbounded()));
+            ranges.add(Range.of(Range.Bound.unbounded(), Range.Bound.exclusive(from)));
+            for (RecordId to : bounds) {
+                if (from.compareTo(to) <= 0) {
+                    ranges.add(Range.of(Range.Bound.inclusive(from), Range.Bound.inclusive(to)));
+                    ranges.add(Range.of(Range.Bound.exclusive(from), Range.Bound.exclusive(to)));
+                }
+            }
+        }
+
+        for (int[] pages : new int[][] { { 1, 1 }, { 4, 16 }, { 16, 256 } }) {
+            final ReversePagedReplay replay = new ReversePagedReplay(source, pages[0], pages[1], 2,
+                    Duration.ofSeconds(10));
+            for (Range<RecordId> range : ranges) {
+                final List<RecordId> expected = source.ids(range);
+                Collections.reverse(expected);
+                final List<List<Msg>> actual = replay.pages(session, range).collectList()
+                        .block(Duration.ofSeconds(10));
+                final List<RecordId> flattened = new ArrayList<>();
+                for (List<Msg> page : actual) {
+                    assertFalse(page.isEmpty(), "empty page of " + range);
+                    flattened.addAll(ids(page));
+                }
+                assertEquals(expected, flattened, "pages " + pages[0] + ".." + pages[1] + ", range " + range);
+            }
+        }
+    }
+
+    @Test
+    void firstScreenCostDoesNotGrowWithSessionLength() {
+        final int small = firstScreenFetches(1_000);
+        final int large = firstScreenFetches(1_000_000);
+        assertTrue(small <= 16, small + " fetches for the first screen of 1k msgs");
+        assertTrue(large <= small + 2, large + " fetches for the first screen of 1M msgs, but " + small + " of 1k");
+    }
+
+    private int firstScreenFetches(int length) {
+        final ArraySource source = new ArraySource();
+        for (int i = 0; i < length; i++) {
+            // a few msgs per millisecond
+            source.add(1000L + i / 3, i % 3);
+        }
+        final ReversePagedReplay replay = new ReversePagedReplay(source, 8, 1024, 2, Duration.ofSeconds(10));
+        final List<RecordId> actual = ids(replay.replayReverse(session, Range.unbounded()).take(FIRST_SCREEN)
+                .collectList().block(Duration.ofSeconds(10)));
+
+        final List<RecordId> expected = new ArrayList<>();
+        for (int i = length - 1; i >= length - FIRST_SCREEN; i--) {
+            expected.add(source.idAt(i));
+        }
+        assertEquals(expected, actual);
+        return source.fetches.get();
+    }
+
+    private static List<RecordId> ids(List<Msg> msgs) {
+        return msgs.stream().map(RecordRanges::idOf).collect(Collectors.toList());
+    }
+
+    /**
+     * A forward-only backend over sorted arrays of ids, which counts its fetches.
+     */
+    private static final class ArraySource implements ReversePagedReplay.ReversePageSource {
+
+        private long[] timestamps = new long[16];
+
+        private long[] sequences = new long[16];
+
+        private int size = 0;
+
+        private final AtomicInteger fetches = new AtomicInteger();
+
+        private void add(long timestamp, long sequence) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, 2 * size);
+                sequences = Arrays.copyOf(sequences, 2 * size);
+            }
+            timestamps[size] = timestamp;
+            sequences[size] = sequence;
+            size++;
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private RecordId idAt(int index) {
+            return RecordId.of(timestamps[index], sequences[index]);
+        }
+
+        private List<RecordId> ids(Range<RecordId> range) {
+            final List<RecordId> ids = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                if (RecordRanges.contains(range, idAt(i))) {
+                    ids.add(idAt(i));
+                }
+            }
+            return ids;
+        }
+
+        @Override
+        public Mono<List<Msg>> fetch(Session session, Range<RecordId> range, int limit) {
+            return Mono.fromSupplier(() -> {
+                fetches.incrementAndGet();
+                final List<Msg> page = new ArrayList<>();
+                for (int i = fromIndex(range); i < size && page.size() < limit; i++) {
+                    if (!RecordRanges.isBelowUpperBound(range, idAt(i))) {
+                        break;
+                    }
+                    page.add(new Msg(null, null, null, timestamps[i], sequences[i]));
+                }
+                return page;
+            });
+        }
+
+        @Override
+        public Mono<RecordId> lastId(Session session, Range<RecordId> range) {
+            return Mono.fromSupplier(() -> {
+                // the first index above the upper bound
+                int lo = 0;
+                int hi = size;
+                while (lo < hi) {
+                    final int mid = (lo + hi) >>> 1;
+                    if (RecordRanges.isBelowUpperBound(range, idAt(mid))) {
+                        lo = mid + 1;
+                    } else {
+                        hi = mid;
+                    }
+                }
+                return lo > 0 && RecordRanges.contains(range, idAt(lo - 1)) ? idAt(lo - 1) : null;
+            });
+        }
+
+        /**
+         * @return the first index not below the lower bound of range.
+         */
+        private int fromIndex(Range<RecordId> range) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                final int mid = (lo + hi) >>> 1;
+                if (RecordRanges.isAboveLowerBound(range, idAt(mid))) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            return lo;
+        }
+    }
+
+}